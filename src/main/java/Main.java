@@ -1,57 +1,264 @@
-import discountRules.*;
+import inputAndOutput.ChannelResultSink;
+import inputAndOutput.DiscountCheckpointStore;
 import inputAndOutput.FileReader;
+import inputAndOutput.PricingFileWatcher;
+import inputAndOutput.ResultSink;
+import inputAndOutput.ResumableShipmentInput;
+import inputAndOutput.RuleFileReader;
+import inputAndOutput.ShipmentArchiveWriter;
+import inputAndOutput.ShipmentFileFollower;
 import service.*;
 import shipmentModel.BasicShipment;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
 
 /**
  * Main application class that sets up the shipping discount system and processes shipments.
+ * Usage: Main [inputFile] [--mapped | --parallel | --pipelined | --by-month | --batch | --follow | --convert-to=archiveFile
+ *             | --checkpoint=directory] [--output=outputFile] [--prices=pricingFile] [--rules=rulesFile] [--metrics]
+ * Input files ending in .vtsa are read as binary shipment archives.
+ * Prices are loaded from the pricing file first and reloaded whenever it changes while shipments are processed.
+ * Discount rules are compiled from the rules file at startup; their sizes and providers must have prices.
+ * With --pipelined text input is read, parsed, calculated and written on separate threads connected by bounded queues.
+ * With --by-month text or archive input is processed in parallel one calendar month per task.
+ * With --batch text or archive input is processed in columnar blocks, each rule running over a whole block.
+ * With --checkpoint sequential text or archive processing keeps its discount state in the directory
+ * and a rerun after a crash resumes reading the input after the last logged record; an --output file, which must not be
+ * gzip-compressed, is then continued from the results of that record, while standard output only gets
+ * the results from there on.
+ * With --metrics per-rule and per-stage counters and latencies are reported to standard error at the end.
+ * With --follow the input file is processed and then tailed for appended lines until the process is stopped.
+ * At most one of the processing modes may be given; --mapped, --parallel, --pipelined, --follow and
+ * --convert-to need text input, and --follow cannot tail a gzip file. Conflicting or unknown options
+ * are rejected with a usage message.
  */
 public class Main {
+    private static final String DEFAULT_INPUT_FILE = "src/main/resources/input.txt";
+    private static final String DEFAULT_PRICING_FILE = "src/main/resources/pricing.txt";
+    private static final String DEFAULT_RULES_FILE = "src/main/resources/rules.txt";
+    private static final long FOLLOW_POLL_INTERVAL_MILLIS = 250;
+    private static final String USAGE = "Usage: Main [inputFile]"
+            + " [--mapped | --parallel | --pipelined | --by-month | --batch | --follow | --convert-to=archiveFile"
+            + " | --checkpoint=directory] [--output=outputFile] [--prices=pricingFile] [--rules=rulesFile] [--metrics]";
+
     public static void main(String[] args) {
-        // Initialize pricing for each provider
-        ShippingProviderPricing shippingProviderPricingLp = new ShippingProviderPricing(1.5, 4.9, 6.9);
-        ShippingProviderPricing shippingProviderPricingMr = new ShippingProviderPricing(2.0, 3.0, 4.0);
+        String filePath = DEFAULT_INPUT_FILE;
+        boolean mapped = false;
+        boolean parallel = false;
+        boolean pipelined = false;
+        boolean byMonth = false;
+        boolean batch = false;
+        boolean follow = false;
+        boolean recordMetrics = false;
+        String archiveFilePath = null;
+        String outputFilePath = null;
+        String pricingFilePath = DEFAULT_PRICING_FILE;
+        String rulesFilePath = DEFAULT_RULES_FILE;
+        String checkpointDirectory = null;
+        List<String> modes = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.equals("--mapped")) {
+                mapped = true;
+                modes.add(arg);
+            } else if (arg.equals("--parallel")) {
+                parallel = true;
+                modes.add(arg);
+            } else if (arg.equals("--pipelined")) {
+                pipelined = true;
+                modes.add(arg);
+            } else if (arg.equals("--by-month")) {
+                byMonth = true;
+                modes.add(arg);
+            } else if (arg.equals("--batch")) {
+                batch = true;
+                modes.add(arg);
+            } else if (arg.equals("--follow")) {
+                follow = true;
+                modes.add(arg);
+            } else if (arg.equals("--metrics")) {
+                recordMetrics = true;
+            } else if (arg.startsWith("--convert-to=")) {
+                archiveFilePath = arg.substring("--convert-to=".length());
+                modes.add("--convert-to");
+            } else if (arg.startsWith("--output=")) {
+                outputFilePath = arg.substring("--output=".length());
+            } else if (arg.startsWith("--prices=")) {
+                pricingFilePath = arg.substring("--prices=".length());
+            } else if (arg.startsWith("--rules=")) {
+                rulesFilePath = arg.substring("--rules=".length());
+            } else if (arg.startsWith("--checkpoint=")) {
+                checkpointDirectory = arg.substring("--checkpoint=".length());
+                modes.add("--checkpoint");
+            } else if (arg.startsWith("--")) {
+                usageError("Unknown option " + arg);
+                return;
+            } else {
+                filePath = arg;
+            }
+        }
+
+        // Reject modes that would otherwise silently override each other
+        boolean archiveInput = filePath.endsWith(ShipmentArchiveWriter.FILE_EXTENSION);
+        if (modes.size() > 1) {
+            usageError("Conflicting processing modes " + String.join(", ", modes));
+            return;
+        }
+        if (checkpointDirectory != null && outputFilePath != null && FileReader.isGzip(outputFilePath)) {
+            usageError("--checkpoint cannot resume gzip output");
+            return;
+        }
+        if (archiveInput && (mapped || parallel || pipelined || follow || archiveFilePath != null)) {
+            usageError(modes.get(0) + " needs text input, not an archive");
+            return;
+        }
+        if (follow && FileReader.isGzip(filePath)) {
+            usageError("--follow needs uncompressed text input, not a gzip file");
+            return;
+        }
 
-        // Set up price service with provider pricing
+        // Load prices first, so every size tier and provider they define is known to the readers below
         ShipmentPriceService shipmentPriceService = new ShipmentPriceService();
-        shipmentPriceService.addProviderAndPrices("LP", shippingProviderPricingLp);
-        shipmentPriceService.addProviderAndPrices("MR", shippingProviderPricingMr);
+        PipelineMetrics metrics = null;
+        try (PricingFileWatcher pricingFileWatcher = new PricingFileWatcher(Paths.get(pricingFilePath), shipmentPriceService)) {
+            // Convert text input to a binary archive for later runs
+            FileReader fileReader = new FileReader(shipmentPriceService);
+            if (archiveFilePath != null) {
+                if (!fileReader.convertToArchive(filePath, archiveFilePath)) {
+                    runError("Could not convert " + filePath + " to " + archiveFilePath);
+                }
+                return;
+            }
+
+            // Compile discount rules from the rules file, checked against the loaded prices
+            List<DiscountContractRule> rules = new RuleFileReader().readRules(Paths.get(rulesFilePath), shipmentPriceService);
+
+            // Set monthly discount cap
+            double monthlyDiscountCap = 10.0;
+
+            // Create discount tracker
+            DiscountStateTracker discountStateTracker = new DiscountStateTracker(monthlyDiscountCap);
 
-        // Configure discount rules
-        List<DiscountContractRule> rules = new ArrayList<>();
-        rules.add(new SmallestPackageRule(shipmentPriceService));
-        rules.add(new ThirdLargeLPFreeRule());
+            // Create discount calculator with rules, recording metrics if asked
+            metrics = recordMetrics ? new PipelineMetrics(rules) : null;
+            ShipmentDiscountCalculator shipmentDiscountCalculator = new ShipmentDiscountCalculator(
+                    shipmentPriceService,
+                    discountStateTracker,
+                    rules,
+                    metrics);
 
-        // Set monthly discount cap
-        double monthlyDiscountCap = 10.0;
+            // Create shipment manager
+            ShipmentManager shipmentManager = new ShipmentManager(shipmentDiscountCalculator);
 
-        // Create discount tracker
-        DiscountStateTracker discountStateTracker = new DiscountStateTracker(monthlyDiscountCap);
+            // Keep prices up to date, and read shipment data from file writing each result as it is calculated
+            pricingFileWatcher.start();
+            try (ResultSink resultSink = openResultSink(outputFilePath, checkpointDirectory != null)) {
+                if (follow) {
+                    followFile(filePath, shipmentManager, shipmentPriceService, resultSink);
+                } else if (checkpointDirectory != null) {
+                    try (ResumableShipmentInput input = fileReader.openResumable(filePath);
+                         DiscountCheckpointStore checkpointStore = new DiscountCheckpointStore(Paths.get(checkpointDirectory))) {
+                        shipmentManager.manageShipments(input, resultSink, checkpointStore,
+                                DiscountCheckpointStore.DEFAULT_CHECKPOINT_INTERVAL);
+                    }
+                } else if (archiveInput) {
+                    try (Stream<BasicShipment> shipments = fileReader.streamArchive(filePath)) {
+                        manageShipments(shipmentManager, shipments, resultSink, byMonth, batch);
+                    }
+                } else if (parallel) {
+                    fileReader.readShipmentsParallel(filePath,
+                            shipment -> shipmentManager.manageShipment(shipment, resultSink));
+                } else if (mapped) {
+                    fileReader.readShipmentsMapped(filePath,
+                            shipment -> shipmentManager.manageShipment(shipment, resultSink));
+                } else if (pipelined) {
+                    try (Stream<String> lines = fileReader.streamLines(filePath)) {
+                        shipmentManager.manageShipmentsPipelined(lines, fileReader::parseLine, resultSink);
+                    }
+                } else {
+                    try (Stream<BasicShipment> shipments = fileReader.streamShipments(filePath)) {
+                        manageShipments(shipmentManager, shipments, resultSink, byMonth, batch);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            runError(e.toString());
+        } catch (UncheckedIOException e) {
+            runError(e.getCause().toString());
+        }
 
-        // Create discount calculator with rules
-        ShipmentDiscountCalculator shipmentDiscountCalculator = new ShipmentDiscountCalculator(
-                shipmentPriceService,
-                discountStateTracker,
-                rules);
+        if (metrics != null) {
+            System.err.print(metrics.snapshot());
+        }
+    }
+
+    /**
+     * Reports a command line error together with the usage and exits with status 2.
+     */
+    private static void usageError(String message) {
+        System.err.println(message);
+        System.err.println(USAGE);
+        System.exit(2);
+    }
 
-        // Create shipment manager
-        ShipmentManager shipmentManager = new ShipmentManager(shipmentDiscountCalculator);
+    /**
+     * Reports a failed run and exits with status 1, so scripts can tell it from a successful one.
+     */
+    private static void runError(String message) {
+        System.err.println(message);
+        System.exit(1);
+    }
 
-        // Read shipment data from file
-        String filePath = "src/main/resources/input.txt";
-        FileReader fileReader = new FileReader();
-        List<String> lines = fileReader.extractEachLine(filePath);
-        List<BasicShipment> shipments = fileReader.createShipments(lines);
+    /**
+     * Opens standard output, or the output file if one is given. A checkpointed job keeps
+     * the file's content so it can continue the output of the run it resumes.
+     */
+    private static ResultSink openResultSink(String outputFilePath, boolean checkpointed) throws IOException {
+        if (outputFilePath == null) {
+            return ChannelResultSink.toStdout();
+        }
+        return checkpointed
+                ? ChannelResultSink.toResumableFile(Paths.get(outputFilePath))
+                : ChannelResultSink.toFile(Paths.get(outputFilePath));
+    }
 
-        // Process shipments and get results
-        List<String> results = shipmentManager.manageShipments(shipments);
+    /**
+     * Processes a stream of shipments sequentially, month by month on the common fork-join pool
+     * or in columnar blocks. At most one of the modes is selected.
+     */
+    private static void manageShipments(ShipmentManager shipmentManager, Stream<BasicShipment> shipments, ResultSink resultSink,
+                                        boolean byMonth, boolean batch) {
+        if (byMonth) {
+            shipmentManager.manageShipmentsByMonth(shipments, resultSink, ForkJoinPool.commonPool());
+        } else if (batch) {
+            shipmentManager.manageShipmentsInBlocks(shipments, resultSink);
+        } else {
+            shipmentManager.manageShipments(shipments, resultSink);
+        }
+    }
 
-        // Output results
-        for (String result : results) {
-            System.out.println(result);
+    /**
+     * Processes a file and then keeps processing lines appended to it,
+     * flushing results after every batch so they appear promptly.
+     * Runs until the thread is interrupted or the process is stopped.
+     */
+    private static void followFile(String filePath, ShipmentManager shipmentManager, ShipmentPriceProvider shipmentPriceProvider,
+                                   ResultSink resultSink) throws IOException {
+        try (ShipmentFileFollower follower = new ShipmentFileFollower(Paths.get(filePath), 0,
+                shipmentPriceProvider::findProviderId)) {
+            while (!Thread.currentThread().isInterrupted()) {
+                if (follower.poll(shipment -> shipmentManager.manageShipment(shipment, resultSink)) > 0) {
+                    resultSink.flush();
+                }
+                follower.awaitChange(FOLLOW_POLL_INTERVAL_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,127 @@
+package discountRules;
+
+import service.DiscountContractRule;
+import service.DiscountStateTracker;
+import service.Money;
+import service.RuleScope;
+import service.ShipmentBlock;
+import service.ShipmentPriceProvider;
+import shipmentModel.PackageSize;
+import shipmentModel.Shipment;
+import shipmentModel.ShipmentDates;
+
+/**
+ * Discount rule that makes all shipments of one package size match the
+ * lowest price available for that size across all providers.
+ */
+public class LowestPriceMatchRule implements DiscountContractRule {
+    private final ShipmentPriceProvider shipmentPriceProvider;
+    private final PackageSize size;
+    private final int sizeId;
+
+    /**
+     * Creates a new rule for a package size with the specified price provider.
+     *
+     * @param shipmentPriceProvider Provider for looking up prices
+     * @param size Package size whose price is matched
+     */
+    public LowestPriceMatchRule(ShipmentPriceProvider shipmentPriceProvider, PackageSize size) {
+        this.shipmentPriceProvider = shipmentPriceProvider;
+        this.size = size;
+        this.sizeId = size.getId();
+    }
+
+    /**
+     * The rule in the syntax of the rules file.
+     *
+     * @return Definition such as "lowest-price S"
+     */
+    @Override
+    public String getDefinition() {
+        return "lowest-price " + size.getCode();
+    }
+
+    /**
+     * Rule applies only to packages of its size.
+     *
+     * @param shipment Shipment to check
+     * @return true for packages of the rule's size, false otherwise
+     */
+    @Override
+    public boolean applies(Shipment shipment) {
+        return shipment.getPackageSize() == size;
+    }
+
+    /**
+     * Packages of the rule's size from every provider, the same shipments applies accepts.
+     *
+     * @return Scope of the rule
+     */
+    @Override
+    public RuleScope getScope() {
+        return RuleScope.ofSize(size);
+    }
+
+    /**
+     * Calculates discount to match the lowest price of the size.
+     *
+     * @param shipment Shipment of the rule's size
+     * @param originalPrice Original price of the shipment
+     * @param discountStateTracker Discount state tracker
+     * @return Discount amount (difference between original and lowest price)
+     */
+    @Override
+    public double calculateDiscount(Shipment shipment, double originalPrice, DiscountStateTracker discountStateTracker) {
+        return Money.toAmount(calculateDiscountCents(shipment, Money.toCents(originalPrice), discountStateTracker));
+    }
+
+    /**
+     * Calculates discount in cents to match the lowest price of the size
+     * in force on the shipment date.
+     *
+     * @param shipment Shipment of the rule's size
+     * @param originalPriceCents Original price of the shipment in cents
+     * @param discountStateTracker Discount state tracker
+     * @return Discount in cents (difference between original and lowest price)
+     */
+    @Override
+    public long calculateDiscountCents(Shipment shipment, long originalPriceCents, DiscountStateTracker discountStateTracker) {
+        long lowestPriceCents = shipmentPriceProvider.getLowestPriceCents(size, shipment.getPackedDate());
+
+        if (lowestPriceCents != Money.NO_PRICE) {
+            return Math.max(0, originalPriceCents - lowestPriceCents);
+        } else {
+            return 0;
+        }
+    }
+
+    /**
+     * Calculates discounts in cents for the packages of the rule's size in a block.
+     * The lowest price is looked up once per run of equal dates.
+     *
+     * @param block Block of shipments
+     * @param discountsCents Discount column to fill
+     * @param discountStateTracker Discount state tracker
+     */
+    @Override
+    public void calculateDiscountsCents(ShipmentBlock block, long[] discountsCents, DiscountStateTracker discountStateTracker) {
+        boolean[] active = block.getActive();
+        int[] sizeIds = block.getSizeIds();
+        int[] dates = block.getDates();
+        long[] originalPrices = block.getOriginalPrices();
+
+        int lastDate = ShipmentDates.INVALID;
+        long lowestPriceCents = Money.NO_PRICE;
+        for (int i = 0; i < block.size(); i++) {
+            if (active[i] && sizeIds[i] == sizeId) {
+                if (dates[i] != lastDate) {
+                    lastDate = dates[i];
+                    lowestPriceCents = shipmentPriceProvider.getLowestPriceCents(size, lastDate);
+                }
+                if (lowestPriceCents != Money.NO_PRICE) {
+                    discountsCents[i] = Math.max(0, originalPrices[i] - lowestPriceCents);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package discountRules;
+
+import service.DiscountContractRule;
+import service.DiscountStateTracker;
+import service.Money;
+import service.RuleCounter;
+import service.RuleScope;
+import service.ShipmentBlock;
+import shipmentModel.PackageSize;
+import shipmentModel.ProviderRegistry;
+import shipmentModel.Shipment;
+
+import java.util.List;
+
+/**
+ * Discount rule that makes the Nth shipment of one package size by one
+ * provider in a calendar month free. The free shipment is applied only
+ * once per month. Every rule instance counts shipments in a rule counter
+ * of its own, so two rules with the same definition never share a count.
+ * The counter's slot is looked up once per tracker and cached, so counting
+ * a shipment does not depend on the number of configured rules.
+ */
+public class NthShipmentFreeRule implements DiscountContractRule {
+    private final int nth;
+    private final PackageSize size;
+    private final int sizeId;
+    private final int providerId;
+    private final String definition;
+    private final RuleCounter counter;
+    private volatile CounterSlot counterSlot;
+
+    /**
+     * Creates a new rule counting in a counter of its own, named after the rule.
+     *
+     * @param nth Number of the shipment in the month that is free
+     * @param size Package size of the counted shipments
+     * @param provider Provider code of the counted shipments
+     */
+    public NthShipmentFreeRule(int nth, PackageSize size, String provider) {
+        if (nth <= 0) {
+            throw new IllegalArgumentException("Free shipment number must be positive: " + nth);
+        }
+        this.nth = nth;
+        this.size = size;
+        this.sizeId = size.getId();
+        this.providerId = ProviderRegistry.idOf(provider);
+        this.definition = "nth-free " + nth + " " + size.getCode() + " " + provider;
+        this.counter = new RuleCounter(definition);
+    }
+
+    /**
+     * The rule in the syntax of the rules file.
+     *
+     * @return Definition such as "nth-free 3 L LP"
+     */
+    @Override
+    public String getDefinition() {
+        return definition;
+    }
+
+    /**
+     * The counter of this rule instance.
+     *
+     * @return Rule counter
+     */
+    @Override
+    public List<RuleCounter> getCounters() {
+        return List.of(counter);
+    }
+
+    /**
+     * Rule applies only to shipments of its size and provider.
+     *
+     * @param shipment Shipment to check
+     * @return true for shipments of the rule's size and provider, false otherwise
+     */
+    @Override
+    public boolean applies(Shipment shipment) {
+        return shipment.getPackageSize() == size && shipment.getProviderId() == providerId;
+    }
+
+    /**
+     * Shipments of the rule's size and provider, the same shipments applies accepts.
+     *
+     * @return Scope of the rule
+     */
+    @Override
+    public RuleScope getScope() {
+        return RuleScope.of(providerId, size);
+    }
+
+    /**
+     * Calculates discount for the Nth counted shipment in a month.
+     * Counts the shipments and marks when the free shipment is applied.
+     *
+     * @param shipment Shipment of the rule's size and provider
+     * @param originalPrice Original price of the shipment
+     * @param discountStateTracker Discount state tracker
+     * @return Full price as discount for the Nth shipment, 0 otherwise
+     */
+    @Override
+    public double calculateDiscount(Shipment shipment, double originalPrice, DiscountStateTracker discountStateTracker) {
+        return Money.toAmount(calculateDiscountCents(shipment, Money.toCents(originalPrice), discountStateTracker));
+    }
+
+    /**
+     * Calculates discount in cents for the Nth counted shipment in a month.
+     *
+     * @param shipment Shipment of the rule's size and provider
+     * @param originalPriceCents Original price of the shipment in cents
+     * @param discountStateTracker Discount state tracker
+     * @return Full price in cents as discount for the Nth shipment, 0 otherwise
+     */
+    @Override
+    public long calculateDiscountCents(Shipment shipment, long originalPriceCents, DiscountStateTracker discountStateTracker) {
+        int month = shipment.getMonthKey();
+        int counter = counterSlot(discountStateTracker);
+
+        int count = discountStateTracker.incrementAndGetCount(month, counter);
+
+        if (count == nth && discountStateTracker.tryMarkApplied(month, counter)) {
+            return originalPriceCents;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Calculates discounts in cents for the counted shipments of a block,
+     * counting them per month in block order.
+     *
+     * @param block Block of shipments
+     * @param discountsCents Discount column to fill
+     * @param discountStateTracker Discount state tracker
+     */
+    @Override
+    public void calculateDiscountsCents(ShipmentBlock block, long[] discountsCents, DiscountStateTracker discountStateTracker) {
+        boolean[] active = block.getActive();
+        int[] sizeIds = block.getSizeIds();
+        int[] providerIds = block.getProviderIds();
+        int[] monthKeys = block.getMonthKeys();
+        long[] originalPrices = block.getOriginalPrices();
+        int counter = counterSlot(discountStateTracker);
+
+        for (int i = 0; i < block.size(); i++) {
+            if (active[i] && sizeIds[i] == sizeId && providerIds[i] == providerId) {
+                int count = discountStateTracker.incrementAndGetCount(monthKeys[i], counter);
+                if (count == nth && discountStateTracker.tryMarkApplied(monthKeys[i], counter)) {
+                    discountsCents[i] = originalPrices[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the slot of this rule's counter in a tracker, looking it up only
+     * when the tracker differs from the one of the previous call.
+     */
+    private int counterSlot(DiscountStateTracker discountStateTracker) {
+        CounterSlot cached = counterSlot;
+        if (cached == null || cached.tracker != discountStateTracker) {
+            cached = new CounterSlot(discountStateTracker, discountStateTracker.counterSlot(counter));
+            counterSlot = cached;
+        }
+        return cached.slot;
+    }
+
+    /**
+     * Slot of the rule's counter in one tracker.
+     */
+    private static final class CounterSlot {
+        private final DiscountStateTracker tracker;
+        private final int slot;
+
+        CounterSlot(DiscountStateTracker tracker, int slot) {
+            this.tracker = tracker;
+            this.slot = slot;
+        }
+    }
+}
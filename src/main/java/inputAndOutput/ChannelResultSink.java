@@ -0,0 +1,227 @@
+package inputAndOutput;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Result sink that encodes lines into a large byte buffer and writes the
+ * buffer to a channel in batches, only when it is full or on flush and close.
+ * ASCII lines are copied into the buffer char by char without creating
+ * intermediate strings or byte arrays. The sink counts the bytes it has
+ * accepted as its position; a sink on a plain file can be cut back to a
+ * position to resume a checkpointed job's output. Not thread-safe.
+ */
+public class ChannelResultSink implements ResultSink {
+    static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    private final WritableByteChannel channel;
+    private final boolean closeChannel;
+    private final ByteBuffer buffer;
+    private final Charset charset;
+    private final byte[] lineSeparator;
+    private long written;
+
+    /**
+     * Creates a sink writing to a channel.
+     *
+     * @param channel Channel to write to
+     * @param bufferSize Number of bytes buffered before they are written
+     * @param charset Charset for lines that are not plain ASCII
+     * @param closeChannel Whether closing the sink also closes the channel
+     */
+    public ChannelResultSink(WritableByteChannel channel, int bufferSize, Charset charset, boolean closeChannel) {
+        this.channel = channel;
+        this.closeChannel = closeChannel;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        this.charset = charset;
+        this.lineSeparator = System.lineSeparator().getBytes(charset);
+    }
+
+    /**
+     * Creates a sink writing to standard output.
+     * Closing the sink flushes it but leaves standard output open.
+     *
+     * @return Sink for standard output
+     */
+    public static ChannelResultSink toStdout() {
+        System.out.flush();
+        WritableByteChannel channel = Channels.newChannel(new FileOutputStream(FileDescriptor.out));
+        return new ChannelResultSink(channel, DEFAULT_BUFFER_SIZE, Charset.defaultCharset(), false);
+    }
+
+    /**
+     * Creates a sink writing to a file, replacing any existing content.
+     * Files ending in .gz are written gzip-compressed.
+     *
+     * @param file File to write to
+     * @return Sink for the file
+     * @throws IOException If the file cannot be opened
+     */
+    public static ChannelResultSink toFile(Path file) throws IOException {
+        if (FileReader.isGzip(file.toString())) {
+            GZIPOutputStream out = new GZIPOutputStream(Files.newOutputStream(file), DEFAULT_BUFFER_SIZE);
+            return new ChannelResultSink(Channels.newChannel(out), DEFAULT_BUFFER_SIZE, Charset.defaultCharset(), true);
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        return new ChannelResultSink(channel, DEFAULT_BUFFER_SIZE, Charset.defaultCharset(), true);
+    }
+
+    /**
+     * Creates a sink writing to a file, keeping its existing content until
+     * the sink is resumed at a position. Used by checkpointed jobs, which
+     * cut the file back to the output position of their restored state.
+     * Gzip-compressed files cannot be resumed.
+     *
+     * @param file Plain file to write to
+     * @return Sink for the file
+     * @throws IOException If the file cannot be opened
+     * @throws IllegalArgumentException If the file is gzip-compressed
+     */
+    public static ChannelResultSink toResumableFile(Path file) throws IOException {
+        if (FileReader.isGzip(file.toString())) {
+            throw new IllegalArgumentException("Gzip output cannot be resumed: " + file);
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        return new ChannelResultSink(channel, DEFAULT_BUFFER_SIZE, Charset.defaultCharset(), true);
+    }
+
+    @Override
+    public void write(CharSequence line) {
+        int length = line.length();
+        if (buffer.remaining() < length + lineSeparator.length) {
+            flush();
+        }
+
+        if (buffer.remaining() >= length + lineSeparator.length && putAscii(line, length)) {
+            buffer.put(lineSeparator);
+            return;
+        }
+
+        // Lines with non-ASCII characters or longer than the buffer are encoded as a whole
+        writeBytes(line.toString().getBytes(charset));
+        writeBytes(lineSeparator);
+    }
+
+    @Override
+    public void flush() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    @Override
+    public void force() {
+        flush();
+        if (channel instanceof FileChannel) {
+            try {
+                ((FileChannel) channel).force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of bytes accepted so far, written out or still buffered.
+     */
+    @Override
+    public long position() {
+        return written + buffer.position();
+    }
+
+    /**
+     * Cuts a file back to the given number of bytes and continues writing
+     * after them. Other channels cannot be cut back, so their output simply
+     * continues.
+     *
+     * @throws UncheckedIOException If the file is shorter than the position or cannot be truncated
+     */
+    @Override
+    public void resumeAt(long position) {
+        flush();
+        if (channel instanceof FileChannel) {
+            FileChannel fileChannel = (FileChannel) channel;
+            try {
+                if (fileChannel.size() < position) {
+                    throw new IOException("Output holds " + fileChannel.size()
+                            + " bytes, fewer than the " + position + " bytes to resume after");
+                }
+                fileChannel.truncate(position);
+                fileChannel.position(position);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        written = position;
+    }
+
+    @Override
+    public void close() {
+        try {
+            flush();
+        } finally {
+            if (closeChannel) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies a line into the buffer if every character is ASCII.
+     * Leaves the buffer unchanged otherwise.
+     */
+    private boolean putAscii(CharSequence line, int length) {
+        int start = buffer.position();
+        for (int i = 0; i < length; i++) {
+            char c = line.charAt(i);
+            if (c >= 0x80) {
+                buffer.position(start);
+                return false;
+            }
+            buffer.put((byte) c);
+        }
+        return true;
+    }
+
+    private void writeBytes(byte[] bytes) {
+        if (buffer.remaining() < bytes.length) {
+            flush();
+        }
+        if (bytes.length <= buffer.remaining()) {
+            buffer.put(bytes);
+            return;
+        }
+
+        try {
+            ByteBuffer wrapped = ByteBuffer.wrap(bytes);
+            while (wrapped.hasRemaining()) {
+                written += channel.write(wrapped);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
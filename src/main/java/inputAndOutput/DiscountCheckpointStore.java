@@ -0,0 +1,336 @@
+package inputAndOutput;
+
+import service.DiscountStateTracker;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Keeps the discount state of a running job durable so it can resume after a crash.
+ * The store is a directory holding a binary snapshot of the tracker and an
+ * append-only log of the months changed since that snapshot. Every snapshot
+ * and log entry records the input position, i.e. the number of input records
+ * processed, the offset of the job's input after those records and the
+ * output position of the job's result sink at which it was taken, so the
+ * input and output can be resumed together with the state. Both
+ * files start with the names of the tracker's rule counters in slot order.
+ * Restoring needs a tracker with the same counters, i.e. one whose
+ * calculator was built from the same rules, and rejects files written for
+ * other rules. A log entry holds the complete state of each month changed
+ * since the previous entry, so replaying the entries in order is enough to
+ * restore the tracker, and a torn last entry is simply dropped. Snapshots
+ * and log entries are forced to storage before their writing returns, so
+ * they survive a crash of the machine as well as of the job. Restoring reads
+ * the snapshot and the log and returns the position to continue from;
+ * the input is positioned at the recorded offset, so only records after it
+ * are read and processed again. Not thread-safe.
+ */
+public class DiscountCheckpointStore implements Closeable {
+    public static final long DEFAULT_CHECKPOINT_INTERVAL = 100_000;
+    public static final long DEFAULT_LOG_INTERVAL = 10_000;
+
+    static final String SNAPSHOT_FILE = "discount-state.snapshot";
+    static final String LOG_FILE = "discount-state.log";
+    static final int SNAPSHOT_MAGIC = 0x56545353;
+    static final int LOG_MAGIC = 0x5654534C;
+    static final short VERSION = 4;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path directory;
+    private final Path snapshotFile;
+    private final Path logFile;
+    private FileChannel logChannel;
+    private DataOutputStream log;
+    private int logCounterCount;
+    private long inputOffset;
+    private long outputPosition;
+
+    /**
+     * Opens a checkpoint store, creating its directory if needed.
+     *
+     * @param directory Directory holding the snapshot and log files
+     * @throws IOException If the directory cannot be created
+     */
+    public DiscountCheckpointStore(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        this.directory = directory;
+        this.snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        this.logFile = directory.resolve(LOG_FILE);
+    }
+
+    /**
+     * Restores the tracker from the snapshot and the log, then takes a fresh
+     * snapshot so that new changes are logged after it. A store without
+     * files restores nothing and continues from position 0.
+     *
+     * @param tracker Tracker to restore into, normally new
+     * @return Input position to continue from
+     * @throws IOException If the snapshot cannot be read or the store cannot be written
+     */
+    public long restore(DiscountStateTracker tracker) throws IOException {
+        long position = 0;
+        inputOffset = 0;
+        outputPosition = 0;
+        if (Files.exists(snapshotFile)) {
+            position = readSnapshot(tracker);
+        }
+        if (Files.exists(logFile)) {
+            position = replayLog(tracker, position);
+        }
+        checkpoint(tracker, position, inputOffset, outputPosition);
+        return position;
+    }
+
+    /**
+     * Gets the input offset recorded with the restored state, where the
+     * job's input continues.
+     *
+     * @return Input offset of the restored state, 0 before restoring
+     */
+    public long getInputOffset() {
+        return inputOffset;
+    }
+
+    /**
+     * Gets the output position recorded with the restored state, where the
+     * job's output continues.
+     *
+     * @return Output position of the restored state, 0 before restoring
+     */
+    public long getOutputPosition() {
+        return outputPosition;
+    }
+
+    /**
+     * Appends the current state of the months changed since the previous
+     * entry to the log and forces it to storage. If rule counters were
+     * registered since the log was started, a snapshot is taken instead.
+     *
+     * @param tracker Tracker holding the months
+     * @param monthKeys Months whose state changed; only the first monthCount are used
+     * @param monthCount Number of changed months
+     * @param position Input position after the last record that was processed
+     * @param inputOffset Offset of the job's input after that record
+     * @param outputPosition Position of the job's output after that record, already forced to storage
+     * @throws IOException If the log cannot be written
+     */
+    public void appendMonths(DiscountStateTracker tracker, int[] monthKeys, int monthCount,
+                             long position, long inputOffset, long outputPosition) throws IOException {
+        if (log == null) {
+            throw new IllegalStateException("Checkpoint store must be restored before logging");
+        }
+        if (tracker.counterCount() != logCounterCount) {
+            // The log header does not name the new counters, so start over from a snapshot
+            checkpoint(tracker, position, inputOffset, outputPosition);
+            return;
+        }
+        log.writeLong(position);
+        log.writeLong(inputOffset);
+        log.writeLong(outputPosition);
+        log.writeInt(monthCount);
+        for (int i = 0; i < monthCount; i++) {
+            writeMonth(log, tracker, monthKeys[i], logCounterCount);
+        }
+        log.flush();
+        logChannel.force(false);
+    }
+
+    /**
+     * Writes a snapshot of the whole tracker and starts a new, empty log.
+     * The snapshot is forced to storage and then replaces the previous one atomically.
+     *
+     * @param tracker Tracker to snapshot
+     * @param position Input position the snapshot belongs to
+     * @param inputOffset Offset of the job's input at that input position
+     * @param outputPosition Position of the job's output at that input position, already forced to storage
+     * @throws IOException If the snapshot or log cannot be written
+     */
+    public void checkpoint(DiscountStateTracker tracker, long position, long inputOffset, long outputPosition) throws IOException {
+        closeLog();
+
+        Path temporaryFile = snapshotFile.resolveSibling(SNAPSHOT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeShort(VERSION);
+            out.writeLong(position);
+            out.writeLong(inputOffset);
+            out.writeLong(outputPosition);
+            int counterCount = writeCounterNames(out, tracker);
+            out.writeInt(tracker.getWatermark());
+            int[] monthKeys = tracker.getOpenMonthKeys();
+            out.writeInt(monthKeys.length);
+            for (int monthKey : monthKeys) {
+                writeMonth(out, tracker, monthKey, counterCount);
+            }
+            out.flush();
+            channel.force(false);
+        }
+        Files.move(temporaryFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory();
+
+        logChannel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        log = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(logChannel), BUFFER_SIZE));
+        log.writeInt(LOG_MAGIC);
+        log.writeShort(VERSION);
+        log.writeLong(position);
+        logCounterCount = writeCounterNames(log, tracker);
+        log.flush();
+        logChannel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeLog();
+    }
+
+    private void closeLog() throws IOException {
+        if (log != null) {
+            log.close();
+            log = null;
+            logChannel = null;
+        }
+    }
+
+    /**
+     * Forces the directory entry of a moved snapshot to storage where the
+     * platform allows it.
+     */
+    private void forceDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Some platforms cannot open or force a directory; the snapshot's content is forced already
+        }
+    }
+
+    private long readSnapshot(DiscountStateTracker tracker) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile), BUFFER_SIZE))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readShort() != VERSION) {
+                throw new IOException("Not a discount state snapshot: " + snapshotFile);
+            }
+            long position = in.readLong();
+            inputOffset = in.readLong();
+            outputPosition = in.readLong();
+            int counterCount = readCounterNames(in, tracker, snapshotFile);
+            int watermark = in.readInt();
+            if (watermark != Integer.MIN_VALUE) {
+                tracker.closeMonthsBefore(watermark);
+            }
+            int monthCount = in.readInt();
+            for (int i = 0; i < monthCount; i++) {
+                int monthKey = in.readInt();
+                long discountCents = in.readLong();
+                int[] counts = new int[counterCount];
+                boolean[] applied = new boolean[counterCount];
+                readCounters(in, counts, applied);
+                tracker.restoreMonth(monthKey, discountCents, counts, applied);
+            }
+            return position;
+        }
+    }
+
+    /**
+     * Applies the log entries taken after the snapshot position. Entries of an
+     * older log, left behind by a crash right after a snapshot, are skipped.
+     */
+    private long replayLog(DiscountStateTracker tracker, long position) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(logFile), BUFFER_SIZE))) {
+            if (in.readInt() != LOG_MAGIC || in.readShort() != VERSION) {
+                throw new IOException("Not a discount state log: " + logFile);
+            }
+            in.readLong();
+            int counterCount = readCounterNames(in, tracker, logFile);
+            while (true) {
+                long entryPosition = in.readLong();
+                long entryInputOffset = in.readLong();
+                long entryOutputPosition = in.readLong();
+                int monthCount = in.readInt();
+                boolean newer = entryPosition > position;
+                int[] monthKeys = new int[monthCount];
+                long[] discountCents = new long[monthCount];
+                int[][] counts = new int[monthCount][];
+                boolean[][] applied = new boolean[monthCount][];
+                for (int i = 0; i < monthCount; i++) {
+                    monthKeys[i] = in.readInt();
+                    discountCents[i] = in.readLong();
+                    counts[i] = new int[counterCount];
+                    applied[i] = new boolean[counterCount];
+                    readCounters(in, counts[i], applied[i]);
+                }
+                // Only a completely read entry is applied
+                if (newer) {
+                    for (int i = 0; i < monthCount; i++) {
+                        tracker.restoreMonth(monthKeys[i], discountCents[i], counts[i], applied[i]);
+                    }
+                    position = entryPosition;
+                    inputOffset = entryInputOffset;
+                    outputPosition = entryOutputPosition;
+                }
+            }
+        } catch (EOFException e) {
+            // End of the log, possibly in the middle of an entry that was never completely written
+            return position;
+        }
+    }
+
+    private static void writeMonth(DataOutputStream out, DiscountStateTracker tracker, int monthKey, int counterCount) throws IOException {
+        out.writeInt(monthKey);
+        out.writeLong(tracker.getTotalMonthDiscountCents(monthKey));
+        for (int counter = 0; counter < counterCount; counter++) {
+            out.writeInt(tracker.getCount(monthKey, counter));
+            out.writeBoolean(tracker.isApplied(monthKey, counter));
+        }
+    }
+
+    private static int writeCounterNames(DataOutputStream out, DiscountStateTracker tracker) throws IOException {
+        int counterCount = tracker.counterCount();
+        out.writeShort(counterCount);
+        for (int counter = 0; counter < counterCount; counter++) {
+            out.writeUTF(tracker.counterName(counter));
+        }
+        return counterCount;
+    }
+
+    /**
+     * Reads the counter names of a file header and checks them against the
+     * tracker's counters, slot by slot.
+     *
+     * @return Number of counters in the file
+     */
+    private static int readCounterNames(DataInputStream in, DiscountStateTracker tracker, Path file) throws IOException {
+        int counterCount = in.readUnsignedShort();
+        for (int counter = 0; counter < counterCount; counter++) {
+            String name = in.readUTF();
+            if (counter >= tracker.counterCount() || !name.equals(tracker.counterName(counter))) {
+                throw new IOException("Discount state in " + file + " was written for other rules: counter "
+                        + counter + " is " + name);
+            }
+        }
+        return counterCount;
+    }
+
+    /**
+     * Reads the counts and applied flags of a month's counters.
+     */
+    private static void readCounters(DataInputStream in, int[] counts, boolean[] applied) throws IOException {
+        for (int counter = 0; counter < counts.length; counter++) {
+            counts[counter] = in.readInt();
+            applied[counter] = in.readBoolean();
+        }
+    }
+}
@@ -1,19 +1,67 @@
 package inputAndOutput;
 
+import service.ShipmentPriceProvider;
 import shipmentModel.BasicShipment;
+import shipmentModel.PackageSize;
+import shipmentModel.ProviderRegistry;
 import shipmentModel.Shipment;
+import shipmentModel.ShipmentDates;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Utility class for reading shipment data from files and creating shipment objects.
+ * Files ending in .gz are decompressed transparently on a background thread.
+ * Providers are looked up through a provider id lookup; lines whose date,
+ * size or provider is unknown become BasicShipments that are reported as
+ * ignored, and unknown provider codes are never interned.
  */
 public class FileReader {
+    public static final String GZIP_EXTENSION = ".gz";
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+
+    private final ToIntFunction<String> providerIds;
+
+    /**
+     * Creates a file reader that accepts every provider.
+     */
     public FileReader() {
+        this(ProviderRegistry::idOf);
+    }
+
+    /**
+     * Creates a file reader that only accepts providers with prices.
+     *
+     * @param shipmentPriceProvider Price provider deciding which providers are known
+     */
+    public FileReader(ShipmentPriceProvider shipmentPriceProvider) {
+        this(shipmentPriceProvider::findProviderId);
+    }
+
+    /**
+     * Creates a file reader with a provider id lookup.
+     *
+     * @param providerIds Lookup of a provider id by code, returning -1 for unknown providers
+     */
+    public FileReader(ToIntFunction<String> providerIds) {
+        this.providerIds = providerIds;
     }
 
     /**
@@ -24,9 +72,14 @@ public class FileReader {
      */
     public List<String> extractEachLine(String fileName) {
         try {
+            if (isGzip(fileName)) {
+                try (BufferedReader reader = openReader(fileName)) {
+                    return reader.lines().collect(Collectors.toList());
+                }
+            }
             List<String> lines = Files.readAllLines(Paths.get(fileName));
             return lines;
-        } catch (IOException e) {
+        } catch (IOException | UncheckedIOException e) {
             e.printStackTrace();
             return null;
         }
@@ -42,20 +95,224 @@ public class FileReader {
     public List<BasicShipment> createShipments(List<String> lines) {
         List<BasicShipment> shipments = new ArrayList<>();
         for (String line : lines) {
-            String[] lineParts = line.split(" ");
-            if (lineParts.length == 3) {
-                String date = lineParts[0].trim();
-                String size = lineParts[1].trim();
-                String provider = lineParts[2].trim();
-                Shipment shipment = new Shipment(date, size, provider);
-                shipments.add(shipment);
-            } else if (lineParts.length == 2) {
-                String date = lineParts[0];
-                String provider = lineParts[1];
-                BasicShipment shipment = new BasicShipment(date, provider);
+            BasicShipment shipment = parseLine(line);
+            if (shipment != null) {
                 shipments.add(shipment);
             }
         }
         return shipments;
     }
-}
\ No newline at end of file
+
+    /**
+     * Streams shipments from a file one record at a time.
+     * Lines are read through a buffered reader and parsed lazily, so memory use
+     * does not depend on the size of the file. The stream must be closed to
+     * release the underlying file.
+     *
+     * @param fileName Path to the file to read
+     * @return Stream of shipments in file order, or an empty stream if the file cannot be opened
+     */
+    public Stream<BasicShipment> streamShipments(String fileName) {
+        return streamLines(fileName)
+                .map(this::parseLine)
+                .filter(Objects::nonNull);
+    }
+
+    /**
+     * Streams the lines of a file without parsing them, for callers that
+     * parse on another thread. The stream must be closed to release the
+     * underlying file.
+     *
+     * @param fileName Path to the file to read
+     * @return Stream of lines in file order, or an empty stream if the file cannot be opened
+     */
+    public Stream<String> streamLines(String fileName) {
+        BufferedReader reader;
+        try {
+            reader = openReader(fileName);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return Stream.empty();
+        }
+
+        return reader.lines()
+                .onClose(() -> {
+                    try {
+                        reader.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    /**
+     * Reads shipments from a file through a memory-mapped, byte-level parser.
+     * Intended for large files, where it avoids splitting every line into
+     * intermediate strings. Shipments are handed to the consumer in file order.
+     * Compressed files cannot be mapped and are streamed instead.
+     *
+     * @param fileName Path to the file to read
+     * @param consumer Receiver of parsed shipments
+     */
+    public void readShipmentsMapped(String fileName, Consumer<BasicShipment> consumer) {
+        if (isGzip(fileName)) {
+            readShipmentsStreamed(fileName, consumer);
+            return;
+        }
+        try {
+            new MappedShipmentParser(providerIds).parse(Paths.get(fileName), consumer);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Reads shipments from a file by parsing newline-aligned byte ranges of the
+     * memory-mapped file in parallel on the common fork-join pool.
+     * Shipments are still handed to the consumer in file order, on the calling thread.
+     * Compressed files cannot be mapped and are streamed instead.
+     *
+     * @param fileName Path to the file to read
+     * @param consumer Receiver of parsed shipments
+     */
+    public void readShipmentsParallel(String fileName, Consumer<BasicShipment> consumer) {
+        if (isGzip(fileName)) {
+            readShipmentsStreamed(fileName, consumer);
+            return;
+        }
+        try {
+            new ParallelShipmentParser(ForkJoinPool.commonPool(), providerIds).parse(Paths.get(fileName), consumer);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Converts a text shipment file into a binary columnar archive once, so
+     * that later runs can skip text decoding and parsing entirely.
+     *
+     * @param fileName Path to the text file to read
+     * @param archiveFileName Path to the archive file to write
+     * @return true if the archive was written, false otherwise
+     */
+    public boolean convertToArchive(String fileName, String archiveFileName) {
+        try (Stream<BasicShipment> shipments = streamShipments(fileName);
+             ShipmentArchiveWriter writer = new ShipmentArchiveWriter(Paths.get(archiveFileName))) {
+            for (BasicShipment shipment : (Iterable<BasicShipment>) shipments::iterator) {
+                writer.write(shipment);
+            }
+            return true;
+        } catch (IOException | UncheckedIOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Streams shipments from a binary archive written by convertToArchive.
+     * The stream must be closed to release the underlying file.
+     *
+     * @param archiveFileName Path to the archive file to read
+     * @return Stream of shipments in archive order, or an empty stream if the archive cannot be opened
+     */
+    public Stream<BasicShipment> streamArchive(String archiveFileName) {
+        try {
+            return new ShipmentArchiveReader(Paths.get(archiveFileName), providerIds).stream();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return Stream.empty();
+        }
+    }
+
+    /**
+     * Opens a file as resumable input for a checkpointed job: a binary
+     * archive if its name ends in .vtsa, a text file otherwise.
+     *
+     * @param fileName Path to the file to read
+     * @return Input positioned at the start of the file
+     * @throws IOException If the file cannot be opened
+     */
+    public ResumableShipmentInput openResumable(String fileName) throws IOException {
+        Path file = Paths.get(fileName);
+        if (fileName.endsWith(ShipmentArchiveWriter.FILE_EXTENSION)) {
+            return new ShipmentArchiveReader(file, providerIds);
+        }
+        return new TextShipmentInput(file, this::parseLine);
+    }
+
+    /**
+     * Opens a buffered UTF-8 reader for a file. Files ending in .gz are
+     * decompressed on a background thread that reads ahead of the caller.
+     *
+     * @param fileName Path to the file to read
+     * @return Reader positioned at the start of the file
+     * @throws IOException If the file cannot be opened
+     */
+    public BufferedReader openReader(String fileName) throws IOException {
+        return new BufferedReader(new InputStreamReader(openInputStream(Paths.get(fileName)), StandardCharsets.UTF_8),
+                READ_BUFFER_SIZE);
+    }
+
+    /**
+     * Checks whether a file name denotes a gzip-compressed file.
+     *
+     * @param fileName File name to check
+     * @return true if the name ends in .gz
+     */
+    public static boolean isGzip(String fileName) {
+        return fileName.endsWith(GZIP_EXTENSION);
+    }
+
+    private static InputStream openInputStream(Path file) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        if (!isGzip(file.toString())) {
+            return in;
+        }
+        try {
+            return new ReadAheadInputStream(new GZIPInputStream(in, READ_BUFFER_SIZE));
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    private void readShipmentsStreamed(String fileName, Consumer<BasicShipment> consumer) {
+        try (Stream<BasicShipment> shipments = streamShipments(fileName)) {
+            shipments.forEachOrdered(consumer);
+        } catch (UncheckedIOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Parses a single line of text into a shipment.
+     * Lines with 3 parts and a valid date and size become ShipmentModel.Shipment objects.
+     * Lines with 2 parts, and 3 part lines with an invalid date, an unknown size or
+     * an unknown provider, become ShipmentModel.BasicShipment objects that keep
+     * the text after the date as provider, so they are reported as ignored.
+     *
+     * @param line Line of text representing a shipment
+     * @return Parsed shipment, or null if the line has any other format
+     */
+    public BasicShipment parseLine(String line) {
+        String[] lineParts = line.split(" ");
+        if (lineParts.length == 3) {
+            String date = lineParts[0].trim();
+            String size = lineParts[1].trim();
+            String provider = lineParts[2].trim();
+
+            int packedDate = ShipmentDates.parse(date);
+            PackageSize packageSize = PackageSize.fromCode(size);
+            int providerId = packedDate == ShipmentDates.INVALID || packageSize == null ? -1 : providerIds.applyAsInt(provider);
+            if (providerId < 0) {
+                return new BasicShipment(date, size + " " + provider);
+            }
+            return new Shipment(packedDate, packageSize, providerId);
+        } else if (lineParts.length == 2) {
+            String date = lineParts[0];
+            String provider = lineParts[1];
+            return new BasicShipment(date, provider);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,48 @@
+package inputAndOutput;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Renders amounts in whole cents with two decimals straight into a StringBuilder.
+ * Produces exactly the same text as String.format("%.2f") without
+ * creating a Formatter or any intermediate strings. Locales that do not
+ * use '.' and ASCII digits fall back to String.format.
+ */
+public final class FixedPointFormat {
+    private static final boolean PLAIN_LOCALE = isPlainLocale();
+
+    private FixedPointFormat() {
+    }
+
+    /**
+     * Appends a whole number of cents as an amount with two decimals.
+     *
+     * @param out Builder to append to
+     * @param cents Amount in cents
+     * @return The same builder
+     */
+    public static StringBuilder appendCents(StringBuilder out, long cents) {
+        if (!PLAIN_LOCALE || cents == Long.MIN_VALUE) {
+            return out.append(String.format("%.2f", cents / 100.0));
+        }
+        if (cents < 0) {
+            out.append('-');
+            cents = -cents;
+        }
+        return appendPlainCents(out, cents);
+    }
+
+    private static StringBuilder appendPlainCents(StringBuilder out, long cents) {
+        int fraction = (int) (cents % 100);
+        return out.append(cents / 100)
+                .append('.')
+                .append((char) ('0' + fraction / 10))
+                .append((char) ('0' + fraction % 10));
+    }
+
+    private static boolean isPlainLocale() {
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT));
+        return symbols.getDecimalSeparator() == '.' && symbols.getZeroDigit() == '0';
+    }
+}
@@ -0,0 +1,53 @@
+package inputAndOutput;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Result sink that collects lines in memory.
+ * Intended for small inputs and tests.
+ */
+public class ListResultSink implements ResultSink {
+    private final List<String> lines = new ArrayList<>();
+
+    @Override
+    public void write(CharSequence line) {
+        lines.add(line.toString());
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Gets the number of lines written so far.
+     */
+    @Override
+    public long position() {
+        return lines.size();
+    }
+
+    /**
+     * Drops the lines written after the given number of lines.
+     */
+    @Override
+    public void resumeAt(long position) {
+        if (position > lines.size()) {
+            throw new IllegalStateException("Cannot resume at line " + position + " of " + lines.size());
+        }
+        lines.subList((int) position, lines.size()).clear();
+    }
+
+    /**
+     * Gets the lines written so far.
+     *
+     * @return Lines in the order they were written
+     */
+    public List<String> getLines() {
+        return lines;
+    }
+}
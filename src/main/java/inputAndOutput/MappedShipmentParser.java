@@ -0,0 +1,312 @@
+package inputAndOutput;
+
+import shipmentModel.BasicShipment;
+import shipmentModel.PackageSize;
+import shipmentModel.ProviderRegistry;
+import shipmentModel.Shipment;
+import shipmentModel.ShipmentDates;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Parses shipment files by memory-mapping them and scanning the raw bytes
+ * for line breaks and spaces. Produces the same shipments as
+ * FileReader.parseLine without splitting lines into intermediate strings:
+ * dates are decoded from their digits into packed ints, sizes from their
+ * code byte and providers into registry ids through a cache of known
+ * provider bytes. Only lines that cannot be priced are decoded into text;
+ * like FileReader, lines with an unknown provider are reported as ignored.
+ * Instances keep decoding caches and are not thread-safe.
+ */
+public class MappedShipmentParser {
+    static final long DEFAULT_WINDOW_SIZE = 1L << 28;
+    private static final int PROVIDER_CACHE_SIZE = 32;
+
+    private final long windowSize;
+    private final ToIntFunction<String> providerIds;
+    private final byte[][] providerBytes = new byte[PROVIDER_CACHE_SIZE][];
+    private final int[] cachedProviderIds = new int[PROVIDER_CACHE_SIZE];
+    private int providerCount;
+
+    /**
+     * Creates a parser that accepts every provider.
+     */
+    public MappedShipmentParser() {
+        this(ProviderRegistry::idOf);
+    }
+
+    /**
+     * Creates a parser with a provider id lookup.
+     *
+     * @param providerIds Lookup of a provider id by code, returning -1 for unknown providers
+     */
+    public MappedShipmentParser(ToIntFunction<String> providerIds) {
+        this(DEFAULT_WINDOW_SIZE, providerIds);
+    }
+
+    /**
+     * Creates a parser that maps files in windows of the given size.
+     *
+     * @param windowSize Maximum number of bytes mapped at once
+     */
+    MappedShipmentParser(long windowSize) {
+        this(windowSize, ProviderRegistry::idOf);
+    }
+
+    private MappedShipmentParser(long windowSize, ToIntFunction<String> providerIds) {
+        this.windowSize = Math.min(windowSize, Integer.MAX_VALUE);
+        this.providerIds = providerIds;
+    }
+
+    /**
+     * Memory-maps a file window by window and hands every parsed shipment
+     * to the consumer in file order.
+     *
+     * @param file File to parse
+     * @param consumer Receiver of parsed shipments
+     * @throws IOException If the file cannot be mapped or a line does not fit in a window
+     */
+    public void parse(Path file, Consumer<BasicShipment> consumer) throws IOException {
+        forEachWindow(file, windowSize, (window, length) -> parseLines(window, 0, length, consumer));
+    }
+
+    /**
+     * Maps a file window by window, cutting every window after its last line
+     * break so that no line is split between two windows.
+     *
+     * @param file File to map
+     * @param windowSize Maximum number of bytes mapped at once
+     * @param handler Handler called for every window in file order
+     * @throws IOException If the file cannot be mapped or a line does not fit in a window
+     */
+    static void forEachWindow(Path file, long windowSize, WindowHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            long position = 0;
+
+            while (position < fileSize) {
+                long length = Math.min(windowSize, fileSize - position);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                boolean lastWindow = position + length == fileSize;
+
+                int end = lastWindow ? (int) length : lastLineBreak(buffer, (int) length) + 1;
+                if (end == 0) {
+                    throw new IOException("Line at offset " + position + " is longer than the mapping window");
+                }
+
+                handler.handle(buffer, end);
+                position += end;
+            }
+        }
+    }
+
+    /**
+     * Parses every line in a byte range of a buffer.
+     *
+     * @param buffer Buffer holding shipment lines
+     * @param from Index of the first byte of the range
+     * @param to Index after the last byte of the range
+     * @param consumer Receiver of parsed shipments
+     */
+    public void parseLines(ByteBuffer buffer, int from, int to, Consumer<BasicShipment> consumer) {
+        int lineStart = from;
+        for (int i = from; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b == '\n' || b == '\r') {
+                parseAndAccept(buffer, lineStart, i, consumer);
+                lineStart = i + 1;
+            }
+        }
+        if (lineStart < to) {
+            parseAndAccept(buffer, lineStart, to, consumer);
+        }
+    }
+
+    /**
+     * Parses a single line held in a byte range of a buffer.
+     * Follows the same rules as FileReader.parseLine: 3 space separated parts
+     * become a ShipmentModel.Shipment, 2 parts a ShipmentModel.BasicShipment,
+     * and anything else is skipped.
+     *
+     * @param buffer Buffer holding the line
+     * @param start Index of the first byte of the line
+     * @param end Index after the last byte of the line, excluding line breaks
+     * @return Parsed shipment, or null if the line has any other format
+     */
+    public BasicShipment parseLine(ByteBuffer buffer, int start, int end) {
+        // Trailing empty parts are dropped, exactly like String.split
+        while (end > start && buffer.get(end - 1) == ' ') {
+            end--;
+        }
+        if (end == start) {
+            return null;
+        }
+
+        int firstSpace = -1;
+        int secondSpace = -1;
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) == ' ') {
+                if (firstSpace < 0) {
+                    firstSpace = i;
+                } else if (secondSpace < 0) {
+                    secondSpace = i;
+                } else {
+                    return null;
+                }
+            }
+        }
+
+        if (secondSpace >= 0) {
+            int dateStart = trimStart(buffer, start, firstSpace);
+            int dateEnd = trimEnd(buffer, start, firstSpace);
+            int sizeStart = trimStart(buffer, firstSpace + 1, secondSpace);
+            int sizeEnd = trimEnd(buffer, firstSpace + 1, secondSpace);
+            int providerStart = trimStart(buffer, secondSpace + 1, end);
+            int providerEnd = trimEnd(buffer, secondSpace + 1, end);
+
+            int date = decodeDate(buffer, dateStart, dateEnd);
+            PackageSize size = sizeEnd - sizeStart == 1
+                    ? PackageSize.fromCode(buffer.get(sizeStart))
+                    : PackageSize.fromCode(decode(buffer, sizeStart, sizeEnd));
+            int providerId = date == ShipmentDates.INVALID || size == null ? -1 : decodeProviderId(buffer, providerStart, providerEnd);
+            if (providerId < 0) {
+                return new BasicShipment(decode(buffer, dateStart, dateEnd),
+                        decode(buffer, sizeStart, sizeEnd) + " " + decode(buffer, providerStart, providerEnd));
+            }
+            return new Shipment(date, size, providerId);
+        } else if (firstSpace >= 0) {
+            return new BasicShipment(decode(buffer, start, firstSpace), decode(buffer, firstSpace + 1, end));
+        }
+        return null;
+    }
+
+    /**
+     * Finds the index of the last line break in the first bytes of a buffer.
+     *
+     * @param buffer Buffer to search
+     * @param length Number of bytes to search
+     * @return Index of the last line break, or -1 if there is none
+     */
+    static int lastLineBreak(ByteBuffer buffer, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            byte b = buffer.get(i);
+            if (b == '\n' || b == '\r') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Receives mapped windows of a file.
+     */
+    interface WindowHandler {
+        /**
+         * Handles one window of whole lines.
+         *
+         * @param window Mapped window starting at a line boundary
+         * @param length Number of bytes in the window that belong to whole lines
+         * @throws IOException If the window cannot be processed
+         */
+        void handle(ByteBuffer window, int length) throws IOException;
+    }
+
+    private void parseAndAccept(ByteBuffer buffer, int start, int end, Consumer<BasicShipment> consumer) {
+        BasicShipment shipment = parseLine(buffer, start, end);
+        if (shipment != null) {
+            consumer.accept(shipment);
+        }
+    }
+
+    private static int trimStart(ByteBuffer buffer, int start, int end) {
+        while (start < end && (buffer.get(start) & 0xFF) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(ByteBuffer buffer, int start, int end) {
+        while (end > start && (buffer.get(end - 1) & 0xFF) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Decodes a date in strict YYYY-MM-DD format straight from its bytes.
+     *
+     * @return Packed date, or ShipmentDates.INVALID
+     */
+    private static int decodeDate(ByteBuffer buffer, int start, int end) {
+        if (end - start != 10 || buffer.get(start + 4) != '-' || buffer.get(start + 7) != '-') {
+            return ShipmentDates.INVALID;
+        }
+        int year = digits(buffer, start, start + 4);
+        int month = digits(buffer, start + 5, start + 7);
+        int day = digits(buffer, start + 8, start + 10);
+        if (year < 0 || month < 0 || day < 0) {
+            return ShipmentDates.INVALID;
+        }
+        return ShipmentDates.of(year, month, day);
+    }
+
+    private static int digits(ByteBuffer buffer, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Decodes a provider code into its registry id, comparing the bytes
+     * against providers seen before so known providers need no string.
+     * Unknown providers are cached as -1 as well.
+     */
+    private int decodeProviderId(ByteBuffer buffer, int start, int end) {
+        int length = end - start;
+        for (int i = 0; i < providerCount; i++) {
+            byte[] cached = providerBytes[i];
+            if (cached.length == length && matches(buffer, start, cached, length)) {
+                return cachedProviderIds[i];
+            }
+        }
+
+        int providerId = providerIds.applyAsInt(decode(buffer, start, end));
+        if (providerCount < PROVIDER_CACHE_SIZE) {
+            byte[] bytes = new byte[length];
+            buffer.get(start, bytes, 0, length);
+            providerBytes[providerCount] = bytes;
+            cachedProviderIds[providerCount] = providerId;
+            providerCount++;
+        }
+        return providerId;
+    }
+
+    private static boolean matches(ByteBuffer buffer, int start, byte[] bytes, int length) {
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(start + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String decode(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes, 0, bytes.length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
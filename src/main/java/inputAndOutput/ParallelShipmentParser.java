@@ -0,0 +1,134 @@
+package inputAndOutput;
+
+import shipmentModel.BasicShipment;
+import shipmentModel.ProviderRegistry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Parses memory-mapped shipment files on a fork-join pool.
+ * Every mapped window is split into byte ranges aligned on line breaks and
+ * each range is parsed independently. Parsed ranges are handed to the
+ * consumer strictly in file order, because discount rules and the monthly
+ * cap depend on shipments arriving chronologically.
+ */
+public class ParallelShipmentParser {
+    static final long DEFAULT_WINDOW_SIZE = 1L << 25;
+    static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    private final ForkJoinPool pool;
+    private final long windowSize;
+    private final int chunkSize;
+    private final ToIntFunction<String> providerIds;
+
+    /**
+     * Creates a parallel parser running on the given pool that accepts every provider.
+     *
+     * @param pool Pool that parses byte ranges
+     */
+    public ParallelShipmentParser(ForkJoinPool pool) {
+        this(pool, ProviderRegistry::idOf);
+    }
+
+    /**
+     * Creates a parallel parser running on the given pool with a provider id lookup.
+     *
+     * @param pool Pool that parses byte ranges
+     * @param providerIds Thread-safe lookup of a provider id by code, returning -1 for unknown providers
+     */
+    public ParallelShipmentParser(ForkJoinPool pool, ToIntFunction<String> providerIds) {
+        this(pool, DEFAULT_WINDOW_SIZE, DEFAULT_CHUNK_SIZE, providerIds);
+    }
+
+    /**
+     * Creates a parallel parser with explicit window and chunk sizes.
+     *
+     * @param pool Pool that parses byte ranges
+     * @param windowSize Maximum number of bytes mapped and held in memory at once
+     * @param chunkSize Approximate number of bytes parsed by a single task
+     */
+    ParallelShipmentParser(ForkJoinPool pool, long windowSize, int chunkSize) {
+        this(pool, windowSize, chunkSize, ProviderRegistry::idOf);
+    }
+
+    private ParallelShipmentParser(ForkJoinPool pool, long windowSize, int chunkSize, ToIntFunction<String> providerIds) {
+        this.pool = pool;
+        this.windowSize = windowSize;
+        this.chunkSize = chunkSize;
+        this.providerIds = providerIds;
+    }
+
+    /**
+     * Parses a file in parallel and hands every shipment to the consumer in file order.
+     * The consumer is always called from the calling thread.
+     *
+     * @param file File to parse
+     * @param consumer Receiver of parsed shipments
+     * @throws IOException If the file cannot be mapped or a line does not fit in a window
+     */
+    public void parse(Path file, Consumer<BasicShipment> consumer) throws IOException {
+        MappedShipmentParser.forEachWindow(file, windowSize, (window, length) -> parseWindow(window, length, consumer));
+    }
+
+    private void parseWindow(ByteBuffer window, int length, Consumer<BasicShipment> consumer) {
+        int[] boundaries = chunkBoundaries(window, length, chunkSize);
+
+        List<ForkJoinTask<List<BasicShipment>>> tasks = new ArrayList<>(boundaries.length - 1);
+        for (int i = 0; i < boundaries.length - 1; i++) {
+            int from = boundaries[i];
+            int to = boundaries[i + 1];
+            tasks.add(pool.submit(() -> parseRange(window, from, to)));
+        }
+
+        // Joining in submission order keeps the original file order
+        for (ForkJoinTask<List<BasicShipment>> task : tasks) {
+            for (BasicShipment shipment : task.join()) {
+                consumer.accept(shipment);
+            }
+        }
+    }
+
+    private List<BasicShipment> parseRange(ByteBuffer window, int from, int to) {
+        List<BasicShipment> shipments = new ArrayList<>((to - from) / 16 + 1);
+        new MappedShipmentParser(providerIds).parseLines(window, from, to, shipments::add);
+        return shipments;
+    }
+
+    /**
+     * Splits a range of whole lines into chunks of roughly equal size.
+     * Every boundary except the first falls right after a line break.
+     *
+     * @param buffer Buffer holding shipment lines
+     * @param length Number of bytes to split
+     * @param chunkSize Approximate number of bytes per chunk
+     * @return Ascending chunk boundaries, starting with 0 and ending with length
+     */
+    static int[] chunkBoundaries(ByteBuffer buffer, int length, int chunkSize) {
+        List<Integer> boundaries = new ArrayList<>();
+        boundaries.add(0);
+
+        int start = 0;
+        while (length - start > chunkSize) {
+            int boundary = start + chunkSize;
+            while (boundary < length && buffer.get(boundary - 1) != '\n' && buffer.get(boundary - 1) != '\r') {
+                boundary++;
+            }
+            if (boundary >= length) {
+                break;
+            }
+            boundaries.add(boundary);
+            start = boundary;
+        }
+        boundaries.add(length);
+
+        return boundaries.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
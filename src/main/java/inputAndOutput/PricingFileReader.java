@@ -0,0 +1,107 @@
+package inputAndOutput;
+
+import service.ShipmentPriceService;
+import service.ShippingProviderPricing;
+import shipmentModel.PackageSize;
+import shipmentModel.ShipmentDates;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Reads provider prices from a pricing file.
+ * Each line holds a provider code, a package size and a price separated by
+ * spaces, e.g. "LP S 1.50", optionally preceded by the date from which the
+ * price is in force, e.g. "2016-03-01 LP S 1.60". Undated prices apply from
+ * the beginning. Each dated change carries forward all earlier prices, so a
+ * change only lists the prices that change. Empty lines and lines starting
+ * with '#' are skipped. Size codes other than S, M and L are added to the
+ * PackageSize catalogue once the whole file has been read and validated, so
+ * a rejected file leaves the catalogue unchanged; a provider only has prices
+ * for the sizes listed for it. A file without any prices is rejected, as it
+ * is usually caught mid-write.
+ */
+public class PricingFileReader {
+
+    /**
+     * Reads the price history from a pricing file.
+     *
+     * @param file Pricing file to read
+     * @return Pricing structure of every provider by provider code in file order, keyed by
+     *         packed effective date or ShipmentPriceService.EFFECTIVE_ALWAYS
+     * @throws IOException If the file cannot be read or is not a valid pricing file
+     */
+    public NavigableMap<Integer, Map<String, ShippingProviderPricing>> readPricing(Path file) throws IOException {
+        NavigableMap<Integer, Map<String, Map<String, Double>>> changes = new TreeMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                parseLine(line, lineNumber, file, changes);
+            }
+        }
+
+        if (changes.isEmpty()) {
+            throw new IOException("No prices in " + file);
+        }
+
+        NavigableMap<Integer, Map<String, ShippingProviderPricing>> priceHistory = new TreeMap<>();
+        Map<String, Map<PackageSize, Double>> prices = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Map<String, Map<String, Double>>> change : changes.entrySet()) {
+            for (Map.Entry<String, Map<String, Double>> providerChange : change.getValue().entrySet()) {
+                Map<PackageSize, Double> sizePrices = new LinkedHashMap<>(prices.getOrDefault(providerChange.getKey(), Collections.emptyMap()));
+                for (Map.Entry<String, Double> sizePrice : providerChange.getValue().entrySet()) {
+                    sizePrices.put(PackageSize.register(sizePrice.getKey()), sizePrice.getValue());
+                }
+                prices.put(providerChange.getKey(), sizePrices);
+            }
+
+            Map<String, ShippingProviderPricing> providerPrices = new LinkedHashMap<>();
+            for (Map.Entry<String, Map<PackageSize, Double>> entry : prices.entrySet()) {
+                providerPrices.put(entry.getKey(), new ShippingProviderPricing(entry.getValue()));
+            }
+            priceHistory.put(change.getKey(), providerPrices);
+        }
+        return priceHistory;
+    }
+
+    private void parseLine(String line, int lineNumber, Path file, Map<Integer, Map<String, Map<String, Double>>> changes) throws IOException {
+        String[] parts = line.split("\\s+");
+        int effectiveDate = ShipmentPriceService.EFFECTIVE_ALWAYS;
+        int first = 0;
+        if (parts.length == 4) {
+            effectiveDate = ShipmentDates.parse(parts[0]);
+            first = 1;
+        }
+        if (parts.length - first != 3 || effectiveDate == ShipmentDates.INVALID) {
+            throw new IOException("Invalid pricing line " + lineNumber + " in " + file + ": " + line);
+        }
+
+        double price;
+        try {
+            price = Double.parseDouble(parts[first + 2]);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid price on line " + lineNumber + " in " + file + ": " + line, e);
+        }
+        if (!(price >= 0)) {
+            throw new IOException("Negative price on line " + lineNumber + " in " + file + ": " + line);
+        }
+
+        changes.computeIfAbsent(effectiveDate, date -> new LinkedHashMap<>())
+                .computeIfAbsent(parts[first], provider -> new LinkedHashMap<>())
+                .put(parts[first + 1], price);
+    }
+}
@@ -0,0 +1,103 @@
+package inputAndOutput;
+
+import service.ShipmentPriceService;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+/**
+ * Loads a pricing file into a price service and, once started, reloads it
+ * whenever the file changes, on a background daemon thread. A file that cannot be read or
+ * parsed is reported and the previous prices stay in effect. Replacing the
+ * file by an atomic rename avoids loading a half-written file.
+ */
+public class PricingFileWatcher implements Closeable {
+    private final Path file;
+    private final ShipmentPriceService shipmentPriceService;
+    private final PricingFileReader pricingFileReader = new PricingFileReader();
+    private final WatchService watchService;
+    private final Thread watchThread;
+
+    /**
+     * Loads the pricing file and registers its directory for changes.
+     * Changes are picked up once the watcher is started.
+     *
+     * @param file Pricing file to load and watch
+     * @param shipmentPriceService Service that receives the prices
+     * @throws IOException If the file cannot be loaded or its directory cannot be watched
+     */
+    public PricingFileWatcher(Path file, ShipmentPriceService shipmentPriceService) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.shipmentPriceService = shipmentPriceService;
+        shipmentPriceService.replacePriceHistory(pricingFileReader.readPricing(this.file));
+
+        this.watchService = FileSystems.getDefault().newWatchService();
+        try {
+            this.file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException | RuntimeException e) {
+            watchService.close();
+            throw e;
+        }
+        this.watchThread = new Thread(this::watch, "pricing-reload");
+        this.watchThread.setDaemon(true);
+    }
+
+    /**
+     * Starts reloading the pricing file in the background whenever it changes.
+     * Changes made since the watcher was created are picked up as well.
+     */
+    public void start() {
+        watchThread.start();
+    }
+
+    /**
+     * Reads the pricing file again and swaps in its prices.
+     *
+     * @return true if the prices were replaced, false if the file could not be loaded
+     */
+    public boolean reload() {
+        try {
+            shipmentPriceService.replacePriceHistory(pricingFileReader.readPricing(file));
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Stops watching the pricing file. The last loaded prices stay in effect.
+     *
+     * @throws IOException If the watch service cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    changed |= event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context());
+                }
+                key.reset();
+
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // Watching stopped
+        }
+    }
+}
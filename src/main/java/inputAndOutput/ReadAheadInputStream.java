@@ -0,0 +1,162 @@
+package inputAndOutput;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Input stream that reads its source on a background thread.
+ * The background thread fills a bounded queue of chunks ahead of the
+ * consumer, so expensive work in the source, such as gzip decompression,
+ * overlaps with parsing and discount calculation instead of running
+ * behind it. Any failure of the background thread, checked or not, is
+ * reported to the consumer once the chunks read before it are consumed.
+ * Closing stops the background thread and waits for it before closing the
+ * source, so the source is never used by two threads at once.
+ * Reading is not thread-safe.
+ */
+public class ReadAheadInputStream extends InputStream {
+    static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+    static final int DEFAULT_QUEUE_CAPACITY = 16;
+    private static final byte[] END = new byte[0];
+
+    private final InputStream source;
+    private final BlockingQueue<byte[]> chunks;
+    private final Thread readerThread;
+    private volatile Throwable failure;
+    private volatile boolean closed;
+
+    private byte[] current = new byte[0];
+    private int position;
+    private boolean finished;
+
+    /**
+     * Starts reading the source ahead with default chunk size and queue capacity.
+     *
+     * @param source Stream to read on the background thread
+     */
+    public ReadAheadInputStream(InputStream source) {
+        this(source, DEFAULT_CHUNK_SIZE, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Starts reading the source ahead.
+     *
+     * @param source Stream to read on the background thread
+     * @param chunkSize Maximum number of bytes per chunk
+     * @param queueCapacity Maximum number of chunks read ahead
+     */
+    public ReadAheadInputStream(InputStream source, int chunkSize, int queueCapacity) {
+        this.source = source;
+        this.chunks = new ArrayBlockingQueue<>(queueCapacity);
+        this.readerThread = new Thread(() -> readAhead(chunkSize), "shipment-read-ahead");
+        this.readerThread.setDaemon(true);
+        this.readerThread.start();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return current[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+
+        int count = Math.min(length, current.length - position);
+        System.arraycopy(current, position, bytes, offset, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return current.length - position;
+    }
+
+    /**
+     * Stops the background thread, waits for it to finish and closes the source.
+     *
+     * @throws IOException If the source cannot be closed or the wait is interrupted
+     */
+    @Override
+    public void close() throws IOException {
+        finished = true;
+        closed = true;
+        readerThread.interrupt();
+        try {
+            readerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while stopping read-ahead");
+        }
+        source.close();
+    }
+
+    /**
+     * Makes sure the current chunk has unread bytes.
+     *
+     * @return true if bytes are available, false at the end of the source
+     * @throws IOException If the source failed or the wait was interrupted
+     */
+    private boolean fill() throws IOException {
+        while (position == current.length) {
+            if (finished) {
+                return false;
+            }
+            try {
+                current = chunks.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for input");
+            }
+            position = 0;
+
+            if (current == END) {
+                finished = true;
+                if (failure instanceof IOException) {
+                    throw (IOException) failure;
+                }
+                if (failure != null) {
+                    throw new IOException("Reading ahead failed", failure);
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void readAhead(int chunkSize) {
+        try {
+            while (true) {
+                byte[] chunk = source.readNBytes(chunkSize);
+                if (chunk.length == 0) {
+                    break;
+                }
+                chunks.put(chunk);
+            }
+        } catch (InterruptedException e) {
+            // Interrupted by close, after which nobody waits for the end
+        } catch (Throwable e) {
+            failure = e;
+        } finally {
+            if (!closed) {
+                try {
+                    chunks.put(END);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
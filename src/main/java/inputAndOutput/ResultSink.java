@@ -0,0 +1,64 @@
+package inputAndOutput;
+
+/**
+ * Destination for formatted shipment result lines.
+ * Implementations may buffer lines and only guarantee that they are
+ * written out after flush or close.
+ */
+public interface ResultSink extends AutoCloseable {
+    /**
+     * Writes one result line. The line separator is added by the sink.
+     * The sink does not keep a reference to the line, so callers may reuse it.
+     *
+     * @param line Result line without a line separator
+     * @throws java.io.UncheckedIOException If the line cannot be written
+     */
+    void write(CharSequence line);
+
+    /**
+     * Writes out any buffered lines.
+     *
+     * @throws java.io.UncheckedIOException If the lines cannot be written
+     */
+    void flush();
+
+    /**
+     * Flushes buffered lines and forces them to storage, so they survive a
+     * crash of the machine. Sinks without storage of their own just flush.
+     *
+     * @throws java.io.UncheckedIOException If the lines cannot be written
+     */
+    default void force() {
+        flush();
+    }
+
+    /**
+     * Gets the amount of output accepted so far, in a unit of the sink's
+     * choosing, so a checkpointed job can record where its output stands.
+     * Sinks that cannot resume their output return 0.
+     *
+     * @return Position of the sink's output
+     */
+    default long position() {
+        return 0;
+    }
+
+    /**
+     * Continues the output from a position recorded earlier, discarding
+     * anything written after it. Sinks that cannot resume their output
+     * ignore the position and only hold what is written from now on.
+     *
+     * @param position Position returned by position() on an earlier run
+     * @throws java.io.UncheckedIOException If the output cannot be cut back to the position
+     */
+    default void resumeAt(long position) {
+    }
+
+    /**
+     * Flushes buffered lines and releases the underlying destination.
+     *
+     * @throws java.io.UncheckedIOException If the lines cannot be written
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,46 @@
+package inputAndOutput;
+
+import shipmentModel.BasicShipment;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Shipment input that reports how far it has read and can continue from
+ * there, so a checkpointed job resumes reading where it stopped instead of
+ * reading its input again from the first record. The offset is opaque to
+ * callers, e.g. a byte offset in a text file or a block offset in an archive.
+ */
+public interface ResumableShipmentInput extends Iterator<BasicShipment>, Closeable {
+
+    /**
+     * Gets the offset right after the last shipment returned by next.
+     *
+     * @return Offset to pass to seek on a later run
+     */
+    long offset();
+
+    /**
+     * Continues reading at an offset returned by offset on an earlier run.
+     * Must be called on a newly opened input, before any shipment is read.
+     *
+     * @param offset Offset to continue at, 0 for the start of the input
+     * @throws IOException If the input cannot be positioned at the offset
+     */
+    void seek(long offset) throws IOException;
+
+    /**
+     * Wraps a stream of shipments that cannot be positioned. Its offset is
+     * the number of shipments returned, and seeking skips that many
+     * shipments, so resuming reads the stream again up to the offset.
+     * Suits in-memory input; closing the input closes the stream.
+     *
+     * @param shipments Stream of shipments
+     * @return Input over the stream
+     */
+    static ResumableShipmentInput of(Stream<BasicShipment> shipments) {
+        return new SkippingShipmentInput(shipments);
+    }
+}
@@ -0,0 +1,89 @@
+package inputAndOutput;
+
+import discountRules.LowestPriceMatchRule;
+import discountRules.NthShipmentFreeRule;
+import service.DiscountContractRule;
+import service.ShipmentPriceProvider;
+import shipmentModel.PackageSize;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads discount rule definitions from a rules file and compiles each into
+ * a rule object with its parameters bound, so nothing is interpreted per
+ * shipment. Rules are applied in file order. Each line holds one definition:
+ * "lowest-price SIZE" makes shipments of SIZE match the lowest price of SIZE
+ * across providers, and "nth-free N SIZE PROVIDER" makes the Nth shipment of
+ * SIZE by PROVIDER in a calendar month free. Empty lines and lines starting
+ * with '#' are skipped. Sizes must already be in the PackageSize catalogue,
+ * which holds S, M, L and the tiers of the loaded prices, and providers must
+ * have prices, so a typo is reported instead of compiling a rule that never
+ * applies. Prices should therefore be loaded before rules are read.
+ */
+public class RuleFileReader {
+    static final String LOWEST_PRICE = "lowest-price";
+    static final String NTH_FREE = "nth-free";
+
+    /**
+     * Reads and compiles the rules of a rules file.
+     *
+     * @param file Rules file to read
+     * @param shipmentPriceProvider Provider of prices for rules that look prices up, and of the known providers
+     * @return Rules in file order
+     * @throws IOException If the file cannot be read or holds an invalid definition, an unknown size or an unknown provider
+     */
+    public List<DiscountContractRule> readRules(Path file, ShipmentPriceProvider shipmentPriceProvider) throws IOException {
+        List<DiscountContractRule> rules = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                rules.add(compile(line, lineNumber, file, shipmentPriceProvider));
+            }
+        }
+        return rules;
+    }
+
+    private DiscountContractRule compile(String line, int lineNumber, Path file, ShipmentPriceProvider shipmentPriceProvider) throws IOException {
+        String[] parts = line.split("\\s+");
+        if (parts[0].equals(LOWEST_PRICE) && parts.length == 2) {
+            return new LowestPriceMatchRule(shipmentPriceProvider, knownSize(parts[1], line, lineNumber, file));
+        }
+        if (parts[0].equals(NTH_FREE) && parts.length == 4) {
+            int nth;
+            try {
+                nth = Integer.parseInt(parts[1]);
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid shipment number on line " + lineNumber + " in " + file + ": " + line, e);
+            }
+            if (nth <= 0) {
+                throw new IOException("Invalid shipment number on line " + lineNumber + " in " + file + ": " + line);
+            }
+            PackageSize size = knownSize(parts[2], line, lineNumber, file);
+            if (shipmentPriceProvider.findProviderId(parts[3]) < 0) {
+                throw new IOException("Unknown provider on line " + lineNumber + " in " + file + ": " + line);
+            }
+            return new NthShipmentFreeRule(nth, size, parts[3]);
+        }
+        throw new IOException("Invalid rule line " + lineNumber + " in " + file + ": " + line);
+    }
+
+    private static PackageSize knownSize(String code, String line, int lineNumber, Path file) throws IOException {
+        PackageSize size = PackageSize.fromCode(code);
+        if (size == null) {
+            throw new IOException("Unknown package size on line " + lineNumber + " in " + file + ": " + line);
+        }
+        return size;
+    }
+}
@@ -0,0 +1,357 @@
+package inputAndOutput;
+
+import shipmentModel.BasicShipment;
+import shipmentModel.PackageSize;
+import shipmentModel.ProviderRegistry;
+import shipmentModel.Shipment;
+import shipmentModel.ShipmentDates;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads shipments from a binary archive written by ShipmentArchiveWriter.
+ * Blocks are decoded one at a time into primitive columns and shipments
+ * are created from the columns as they are iterated, so memory use does
+ * not depend on the size of the archive. Size codes missing from the
+ * PackageSize catalogue are not added to it; shipments with such a size are
+ * read as basic shipments that are reported as ignored, as the text reader
+ * does with unknown sizes. Providers are looked up through a provider id
+ * lookup in the same way, so a provider without prices is ignored as well.
+ * As a resumable input its offset is the file offset of the current block
+ * combined with the index of the next shipment in the block; seeking reads
+ * only the provider and size codes of the blocks before the offset and
+ * skips their columns.
+ */
+public class ShipmentArchiveReader implements ResumableShipmentInput {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int SEEK_BUFFER_SIZE = 512;
+    // Indexes within a block are below BLOCK_SIZE, which is 1 << INDEX_BITS
+    private static final int INDEX_BITS = 12;
+
+    private final Path file;
+    private final FileChannel channel;
+    private CountingInputStream counting;
+    private DataInputStream in;
+    private final ToIntFunction<String> providerLookup;
+    private int[] providerIds = new int[0];
+    private String[] providerCodes = new String[0];
+    private PackageSize[] packageSizes = new PackageSize[0];
+    private String[] sizeCodes = new String[0];
+
+    private final int[] epochDays = new int[ShipmentArchiveWriter.BLOCK_SIZE];
+    private final byte[] sizes = new byte[ShipmentArchiveWriter.BLOCK_SIZE];
+    private final short[] providers = new short[ShipmentArchiveWriter.BLOCK_SIZE];
+    private final byte[] flags = new byte[ShipmentArchiveWriter.BLOCK_SIZE];
+    private final List<String> rawFields = new ArrayList<>();
+    private int rawIndex;
+    private int count;
+    private int position;
+    private boolean finished;
+    private boolean read;
+    private long blockOffset;
+
+    private int lastEpochDay;
+    private int lastDate = ShipmentDates.INVALID;
+
+    /**
+     * Opens an archive file that accepts every provider and checks its header.
+     *
+     * @param file Archive file to read
+     * @throws IOException If the file cannot be opened or is not a shipment archive
+     */
+    public ShipmentArchiveReader(Path file) throws IOException {
+        this(file, ProviderRegistry::idOf);
+    }
+
+    /**
+     * Opens an archive file with a provider id lookup and checks its header.
+     *
+     * @param file Archive file to read
+     * @param providerLookup Lookup of a provider id by code, returning -1 for unknown providers
+     * @throws IOException If the file cannot be opened or is not a shipment archive
+     */
+    public ShipmentArchiveReader(Path file, ToIntFunction<String> providerLookup) throws IOException {
+        this.file = file;
+        this.providerLookup = providerLookup;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.counting = new CountingInputStream(new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE), 0);
+        this.in = new DataInputStream(counting);
+        try {
+            if (in.readInt() != ShipmentArchiveWriter.MAGIC) {
+                throw new IOException("Not a shipment archive: " + file);
+            }
+            short version = in.readShort();
+            if (version != ShipmentArchiveWriter.VERSION) {
+                throw new IOException("Unsupported shipment archive version " + version + ": " + file);
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Checks whether the archive holds more shipments.
+     *
+     * @return true if another shipment can be read
+     * @throws UncheckedIOException If the next block cannot be read
+     */
+    @Override
+    public boolean hasNext() {
+        if (position < count) {
+            return true;
+        }
+        if (finished) {
+            return false;
+        }
+        read = true;
+        try {
+            readBlock();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return position < count;
+    }
+
+    /**
+     * Reads the next shipment from the archive.
+     *
+     * @return Next shipment in archive order
+     */
+    @Override
+    public BasicShipment next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        int i = position++;
+        if (flags[i] == ShipmentArchiveWriter.FLAG_SHIPMENT) {
+            int sizeIndex = sizes[i] & 0xFF;
+            int providerIndex = providers[i] & 0xFFFF;
+            int providerId = providerIds[providerIndex];
+            if (packageSizes[sizeIndex] == null || providerId < 0) {
+                return new BasicShipment(ShipmentDates.format(date(epochDays[i])),
+                        sizeCodes[sizeIndex] + " " + providerCodes[providerIndex]);
+            }
+            return new Shipment(date(epochDays[i]), packageSizes[sizeIndex], providerId);
+        }
+        return new BasicShipment(rawFields.get(rawIndex++), rawFields.get(rawIndex++));
+    }
+
+    /**
+     * Gets the offset of the next shipment: the file offset of its block in
+     * the high bits and its index in the block in the low bits.
+     *
+     * @return Offset to pass to seek on a later run
+     */
+    @Override
+    public long offset() {
+        if (position < count) {
+            return blockOffset << INDEX_BITS | position;
+        }
+        return (finished ? blockOffset : counting.count) << INDEX_BITS;
+    }
+
+    /**
+     * Continues reading at an offset returned by offset on an earlier run.
+     *
+     * @param offset Offset to continue at, 0 for the start of the archive
+     * @throws IOException If the offset is not that of a shipment in the archive
+     */
+    @Override
+    public void seek(long offset) throws IOException {
+        if (read) {
+            throw new IllegalStateException("Archive must be positioned before it is read");
+        }
+        if (offset == 0) {
+            return;
+        }
+        long target = offset >>> INDEX_BITS;
+        int index = (int) (offset & ((1 << INDEX_BITS) - 1));
+
+        long start = counting.count;
+        CountingInputStream walked = new CountingInputStream(
+                new BufferedInputStream(Channels.newInputStream(channel.position(start)), SEEK_BUFFER_SIZE), start);
+        DataInputStream walker = new DataInputStream(walked);
+        while (walked.count < target) {
+            skipBlock(walker, offset);
+        }
+        if (walked.count != target) {
+            throw new IOException("Offset " + offset + " is not that of a block in " + file);
+        }
+
+        counting = new CountingInputStream(
+                new BufferedInputStream(Channels.newInputStream(channel.position(target)), BUFFER_SIZE), target);
+        in = new DataInputStream(counting);
+        read = true;
+        readBlock();
+        if (index > count) {
+            throw new IOException("Offset " + offset + " is beyond its block in " + file);
+        }
+        position = index;
+        for (int i = 0; i < index; i++) {
+            if (flags[i] == ShipmentArchiveWriter.FLAG_BASIC) {
+                rawIndex += 2;
+            }
+        }
+    }
+
+    /**
+     * Returns the remaining shipments of the archive as a sequential stream.
+     * Closing the stream closes the archive.
+     *
+     * @return Stream of shipments in archive order
+     */
+    public Stream<BasicShipment> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void readBlock() throws IOException {
+        blockOffset = counting.count;
+        count = in.readInt();
+        position = 0;
+        if (count == 0) {
+            finished = true;
+            return;
+        }
+        if (count < 0 || count > ShipmentArchiveWriter.BLOCK_SIZE) {
+            throw new IOException("Corrupt shipment archive block of " + count + " shipments");
+        }
+
+        readCodes(in);
+        for (int i = 0; i < count; i++) {
+            epochDays[i] = in.readInt();
+        }
+        in.readFully(sizes, 0, count);
+        for (int i = 0; i < count; i++) {
+            providers[i] = in.readShort();
+        }
+        in.readFully(flags, 0, count);
+
+        rawFields.clear();
+        rawIndex = 0;
+        for (int i = 0; i < count; i++) {
+            if (flags[i] == ShipmentArchiveWriter.FLAG_BASIC) {
+                rawFields.add(in.readUTF());
+                rawFields.add(in.readUTF());
+            }
+        }
+    }
+
+    /**
+     * Reads the provider and size codes of a block and skips its columns.
+     */
+    private void skipBlock(DataInputStream walker, long offset) throws IOException {
+        int blockCount = walker.readInt();
+        if (blockCount <= 0 || blockCount > ShipmentArchiveWriter.BLOCK_SIZE) {
+            throw new IOException("Offset " + offset + " is beyond the end of " + file);
+        }
+        readCodes(walker);
+        walker.skipNBytes((long) blockCount * (Integer.BYTES + Byte.BYTES + Short.BYTES));
+        walker.readFully(flags, 0, blockCount);
+        for (int i = 0; i < blockCount; i++) {
+            if (flags[i] == ShipmentArchiveWriter.FLAG_BASIC) {
+                walker.skipNBytes(walker.readUnsignedShort());
+                walker.skipNBytes(walker.readUnsignedShort());
+            }
+        }
+    }
+
+    /**
+     * Reads the provider and size codes a block adds to those of the blocks before it.
+     */
+    private void readCodes(DataInputStream in) throws IOException {
+        int newProviders = in.readUnsignedShort();
+        int known = providerIds.length;
+        providerIds = Arrays.copyOf(providerIds, known + newProviders);
+        providerCodes = Arrays.copyOf(providerCodes, known + newProviders);
+        for (int i = 0; i < newProviders; i++) {
+            providerCodes[known + i] = in.readUTF();
+            providerIds[known + i] = providerLookup.applyAsInt(providerCodes[known + i]);
+        }
+        int newSizes = in.readUnsignedShort();
+        int knownSizes = packageSizes.length;
+        packageSizes = Arrays.copyOf(packageSizes, knownSizes + newSizes);
+        sizeCodes = Arrays.copyOf(sizeCodes, knownSizes + newSizes);
+        for (int i = 0; i < newSizes; i++) {
+            sizeCodes[knownSizes + i] = in.readUTF();
+            packageSizes[knownSizes + i] = PackageSize.fromCode(sizeCodes[knownSizes + i]);
+        }
+    }
+
+    private int date(int epochDay) {
+        if (lastDate == ShipmentDates.INVALID || epochDay != lastEpochDay) {
+            lastEpochDay = epochDay;
+            lastDate = ShipmentDates.fromEpochDay(epochDay);
+        }
+        return lastDate;
+    }
+
+    /**
+     * Stream that counts the bytes read or skipped through it, starting from
+     * the file offset it was opened at.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in, long count) {
+            super(in);
+            this.count = count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
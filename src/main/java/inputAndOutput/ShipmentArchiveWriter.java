@@ -0,0 +1,201 @@
+package inputAndOutput;
+
+import shipmentModel.BasicShipment;
+import shipmentModel.PackageSize;
+import shipmentModel.ProviderRegistry;
+import shipmentModel.Shipment;
+import shipmentModel.ShipmentDates;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes shipments to a compact binary archive with one column per field.
+ * The archive is a header followed by blocks of up to BLOCK_SIZE shipments.
+ * Each block holds the providers and package sizes first seen in it, then
+ * the columns: date as an epoch day int, size as a dictionary id byte,
+ * provider as a dictionary id short and a flag byte. ShipmentModel.BasicShipment lines are flagged and
+ * their text fields stored after the columns, so reading an archive always
+ * yields the same shipments that were written.
+ */
+public class ShipmentArchiveWriter implements Closeable {
+    public static final String FILE_EXTENSION = ".vtsa";
+
+    static final int MAGIC = 0x56545341;
+    static final short VERSION = 3;
+    static final int BLOCK_SIZE = 4096;
+    static final int MAX_PROVIDERS = 1 << 16;
+    static final int MAX_SIZES = 1 << 8;
+
+    static final byte FLAG_SHIPMENT = 0;
+    static final byte FLAG_BASIC = 1;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final DataOutputStream out;
+    private int[] archiveProviderIds = new int[0];
+    private int providerCount;
+    private final List<String> newProviders = new ArrayList<>();
+    private int[] archiveSizeIds = new int[0];
+    private int sizeCount;
+    private final List<String> newSizes = new ArrayList<>();
+
+    private final int[] epochDays = new int[BLOCK_SIZE];
+    private final byte[] sizes = new byte[BLOCK_SIZE];
+    private final short[] providers = new short[BLOCK_SIZE];
+    private final byte[] flags = new byte[BLOCK_SIZE];
+    private final List<String> rawFields = new ArrayList<>();
+    private int count;
+
+    private int lastDate = ShipmentDates.INVALID;
+    private int lastEpochDay;
+
+    /**
+     * Creates an archive file, replacing any existing file.
+     *
+     * @param file Archive file to write
+     * @throws IOException If the file cannot be created
+     */
+    public ShipmentArchiveWriter(Path file) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE));
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+    }
+
+    /**
+     * Appends a shipment to the archive.
+     *
+     * @param basicShipment Shipment to append
+     * @throws IOException If the archive cannot be written
+     */
+    public void write(BasicShipment basicShipment) throws IOException {
+        if (basicShipment instanceof Shipment) {
+            Shipment shipment = (Shipment) basicShipment;
+            append(toEpochDay(shipment.getPackedDate()), archiveSizeId(shipment.getPackageSize()),
+                    archiveProviderId(shipment.getProviderId()), FLAG_SHIPMENT);
+        } else {
+            rawFields.add(basicShipment.getDate());
+            rawFields.add(basicShipment.getShippingProvider());
+            append(0, 0, 0, FLAG_BASIC);
+        }
+    }
+
+    /**
+     * Writes the last block and the end marker, then closes the file.
+     *
+     * @throws IOException If the archive cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBlock();
+            out.writeInt(0);
+        } finally {
+            out.close();
+        }
+    }
+
+    private void append(int epochDay, int size, int provider, byte flag) throws IOException {
+        epochDays[count] = epochDay;
+        sizes[count] = (byte) size;
+        providers[count] = (short) provider;
+        flags[count] = flag;
+        count++;
+
+        if (count == BLOCK_SIZE) {
+            flushBlock();
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        if (count == 0) {
+            return;
+        }
+
+        out.writeInt(count);
+        out.writeShort(newProviders.size());
+        for (String provider : newProviders) {
+            out.writeUTF(provider);
+        }
+        out.writeShort(newSizes.size());
+        for (String size : newSizes) {
+            out.writeUTF(size);
+        }
+        for (int i = 0; i < count; i++) {
+            out.writeInt(epochDays[i]);
+        }
+        out.write(sizes, 0, count);
+        for (int i = 0; i < count; i++) {
+            out.writeShort(providers[i]);
+        }
+        out.write(flags, 0, count);
+        for (String field : rawFields) {
+            out.writeUTF(field);
+        }
+
+        newProviders.clear();
+        newSizes.clear();
+        rawFields.clear();
+        count = 0;
+    }
+
+    private int toEpochDay(int date) {
+        if (date != lastDate) {
+            lastDate = date;
+            lastEpochDay = (int) ShipmentDates.toEpochDay(date);
+        }
+        return lastEpochDay;
+    }
+
+    /**
+     * Maps a registry provider id to its id in this archive's dictionary,
+     * adding the provider to the dictionary on first use.
+     */
+    private int archiveProviderId(int providerId) throws IOException {
+        if (providerId >= archiveProviderIds.length) {
+            int oldLength = archiveProviderIds.length;
+            archiveProviderIds = Arrays.copyOf(archiveProviderIds, Math.max(providerId + 1, oldLength * 2));
+            Arrays.fill(archiveProviderIds, oldLength, archiveProviderIds.length, -1);
+        }
+        if (archiveProviderIds[providerId] >= 0) {
+            return archiveProviderIds[providerId];
+        }
+        if (providerCount == MAX_PROVIDERS) {
+            throw new IOException("Shipment archive supports at most " + MAX_PROVIDERS + " providers");
+        }
+
+        archiveProviderIds[providerId] = providerCount;
+        newProviders.add(ProviderRegistry.codeOf(providerId));
+        return providerCount++;
+    }
+
+    /**
+     * Maps a package size to its id in this archive's dictionary,
+     * adding the size to the dictionary on first use.
+     */
+    private int archiveSizeId(PackageSize size) throws IOException {
+        int sizeId = size.getId();
+        if (sizeId >= archiveSizeIds.length) {
+            int oldLength = archiveSizeIds.length;
+            archiveSizeIds = Arrays.copyOf(archiveSizeIds, Math.max(sizeId + 1, oldLength * 2));
+            Arrays.fill(archiveSizeIds, oldLength, archiveSizeIds.length, -1);
+        }
+        if (archiveSizeIds[sizeId] >= 0) {
+            return archiveSizeIds[sizeId];
+        }
+        if (sizeCount == MAX_SIZES) {
+            throw new IOException("Shipment archive supports at most " + MAX_SIZES + " package sizes");
+        }
+
+        archiveSizeIds[sizeId] = sizeCount;
+        newSizes.add(size.getCode());
+        return sizeCount++;
+    }
+}
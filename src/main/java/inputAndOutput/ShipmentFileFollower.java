@@ -0,0 +1,162 @@
+package inputAndOutput;
+
+import shipmentModel.BasicShipment;
+import shipmentModel.ProviderRegistry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Follows a shipment file that is appended to continuously.
+ * Remembers the byte offset after the last complete line it consumed and,
+ * on every poll, parses only the complete lines appended since then.
+ * An incomplete last line is left in the file until its line break arrives.
+ * Not thread-safe.
+ */
+public class ShipmentFileFollower implements Closeable {
+    static final int INITIAL_BUFFER_SIZE = 1 << 16;
+
+    private final Path file;
+    private final MappedShipmentParser parser;
+    private final WatchService watchService;
+    private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private long offset;
+
+    /**
+     * Creates a follower that starts at the given byte offset of the file.
+     * The offset must be at the start of a line, e.g. 0 or a value
+     * previously returned by getOffset.
+     *
+     * @param file File to follow
+     * @param offset Byte offset of the first line to consume
+     * @throws IOException If the directory of the file cannot be watched
+     */
+    public ShipmentFileFollower(Path file, long offset) throws IOException {
+        this(file, offset, ProviderRegistry::idOf);
+    }
+
+    /**
+     * Creates a follower that starts at the given byte offset of the file
+     * and looks providers up with the given lookup.
+     *
+     * @param file File to follow
+     * @param offset Byte offset of the first line to consume
+     * @param providerIds Lookup of a provider id by code, returning -1 for unknown providers
+     * @throws IOException If the directory of the file cannot be watched
+     */
+    public ShipmentFileFollower(Path file, long offset, ToIntFunction<String> providerIds) throws IOException {
+        this.file = file;
+        this.parser = new MappedShipmentParser(providerIds);
+        this.offset = offset;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        Path directory = file.toAbsolutePath().getParent();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    /**
+     * Gets the byte offset just after the last complete line consumed.
+     *
+     * @return Byte offset in the followed file
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Parses all complete lines appended since the last poll and hands the
+     * shipments to the consumer in file order. If the file has shrunk below
+     * the current offset it is assumed to have been truncated and is read
+     * again from the start.
+     *
+     * @param consumer Receiver of parsed shipments
+     * @return Number of shipments parsed from the new lines
+     * @throws IOException If the file cannot be read
+     */
+    public int poll(Consumer<BasicShipment> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < offset) {
+                offset = 0;
+            }
+
+            int shipments = 0;
+            long position = offset;
+            buffer.clear();
+            while (position < size) {
+                if (!buffer.hasRemaining()) {
+                    growBuffer();
+                }
+                int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    break;
+                }
+                position += read;
+
+                shipments += consumeCompleteLines(consumer);
+            }
+            return shipments;
+        }
+    }
+
+    /**
+     * Waits until the directory of the file reports a change, or the timeout
+     * elapses. Polling after a timeout also covers file systems that do not
+     * deliver change events.
+     *
+     * @param timeoutMillis Maximum time to wait in milliseconds
+     * @throws InterruptedException If the thread is interrupted while waiting
+     */
+    public void awaitChange(long timeoutMillis) throws InterruptedException {
+        WatchKey key = watchService.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        if (key != null) {
+            key.pollEvents();
+            key.reset();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    /**
+     * Parses the complete lines held in the buffer, advances the offset past
+     * them and moves any incomplete remainder to the start of the buffer.
+     */
+    private int consumeCompleteLines(Consumer<BasicShipment> consumer) {
+        int end = MappedShipmentParser.lastLineBreak(buffer, buffer.position()) + 1;
+        if (end == 0) {
+            return 0;
+        }
+
+        int[] shipments = new int[1];
+        parser.parseLines(buffer, 0, end, shipment -> {
+            shipments[0]++;
+            consumer.accept(shipment);
+        });
+        offset += end;
+
+        buffer.flip();
+        buffer.position(end);
+        buffer.compact();
+        return shipments[0];
+    }
+
+    private void growBuffer() {
+        ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+        buffer.flip();
+        larger.put(buffer);
+        buffer = larger;
+    }
+}
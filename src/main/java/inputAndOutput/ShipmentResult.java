@@ -0,0 +1,79 @@
+package inputAndOutput;
+
+import service.Money;
+import shipmentModel.BasicShipment;
+import shipmentModel.Shipment;
+
+/**
+ * Mutable result of one shipment, meant to be reused for shipment after
+ * shipment so that the steady-state path allocates nothing per record.
+ * Holds the same values as ShipmentResultFormatter, in cents, and formats
+ * them the same way. Not thread-safe.
+ */
+public class ShipmentResult {
+    private BasicShipment basicShipment;
+    private long originalPriceCents;
+    private long finalPriceCents;
+    private long discountCents;
+
+    /**
+     * Replaces the result with the values of another shipment.
+     *
+     * @param basicShipment The shipment
+     * @param originalPriceCents Original price before discount in cents
+     * @param finalPriceCents Final price after discount in cents
+     * @param discountCents Discount applied in cents
+     * @return This result
+     */
+    public ShipmentResult set(BasicShipment basicShipment, long originalPriceCents, long finalPriceCents, long discountCents) {
+        this.basicShipment = basicShipment;
+        this.originalPriceCents = originalPriceCents;
+        this.finalPriceCents = finalPriceCents;
+        this.discountCents = discountCents;
+        return this;
+    }
+
+    public BasicShipment getBasicShipment() {
+        return basicShipment;
+    }
+
+    public long getOriginalPriceCents() {
+        return originalPriceCents;
+    }
+
+    public long getFinalPriceCents() {
+        return finalPriceCents;
+    }
+
+    public long getDiscountCents() {
+        return discountCents;
+    }
+
+    public double getDiscount() {
+        return Money.toAmount(discountCents);
+    }
+
+    /**
+     * Checks whether the shipment is ignored, i.e. has no size information.
+     *
+     * @return true if the shipment is ignored
+     */
+    public boolean isIgnored() {
+        return !(basicShipment instanceof Shipment);
+    }
+
+    /**
+     * Appends the formatted result to a builder, in the same format as ShipmentResultFormatter.
+     *
+     * @param out Builder to append to
+     * @return The same builder
+     */
+    public StringBuilder formatTo(StringBuilder out) {
+        return ShipmentResultFormatter.formatTo(out, basicShipment, finalPriceCents, discountCents);
+    }
+
+    @Override
+    public String toString() {
+        return formatTo(new StringBuilder(32)).toString();
+    }
+}
@@ -0,0 +1,74 @@
+package inputAndOutput;
+
+import shipmentModel.BasicShipment;
+
+/**
+ * Results of a batch of shipments in primitive columns indexed by input
+ * position, so a batch of results needs no object per shipment. Results can
+ * be stored at any position in any order, e.g. by tasks that each handle
+ * their own positions, and are formatted together with the shipment at the
+ * same position. The buffer is reused for batch after batch.
+ */
+public class ShipmentResultBuffer {
+    private final long[] originalPrices;
+    private final long[] finalPrices;
+    private final long[] discounts;
+    private final boolean[] ignored;
+
+    /**
+     * Creates an empty result buffer.
+     *
+     * @param capacity Number of positions in the buffer
+     */
+    public ShipmentResultBuffer(int capacity) {
+        this.originalPrices = new long[capacity];
+        this.finalPrices = new long[capacity];
+        this.discounts = new long[capacity];
+        this.ignored = new boolean[capacity];
+    }
+
+    public int capacity() {
+        return originalPrices.length;
+    }
+
+    /**
+     * Stores a result at a position.
+     *
+     * @param index Position in the buffer
+     * @param result Result to store
+     */
+    public void set(int index, ShipmentResult result) {
+        originalPrices[index] = result.getOriginalPriceCents();
+        finalPrices[index] = result.getFinalPriceCents();
+        discounts[index] = result.getDiscountCents();
+        ignored[index] = result.isIgnored();
+    }
+
+    public long getOriginalPriceCents(int index) {
+        return originalPrices[index];
+    }
+
+    public long getFinalPriceCents(int index) {
+        return finalPrices[index];
+    }
+
+    public long getDiscountCents(int index) {
+        return discounts[index];
+    }
+
+    public boolean isIgnored(int index) {
+        return ignored[index];
+    }
+
+    /**
+     * Copies the result at a position into a reusable result.
+     *
+     * @param index Position in the buffer
+     * @param basicShipment The shipment the result belongs to
+     * @param result Result to fill in
+     * @return The filled in result
+     */
+    public ShipmentResult get(int index, BasicShipment basicShipment, ShipmentResult result) {
+        return result.set(basicShipment, originalPrices[index], finalPrices[index], discounts[index]);
+    }
+}
@@ -1,20 +1,32 @@
 package inputAndOutput;
 
+import service.Money;
 import shipmentModel.BasicShipment;
 import shipmentModel.Shipment;
+import shipmentModel.ShipmentDates;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 
 /**
  * Formats shipment results with pricing and discount information.
- * Provides string representation for output.
+ * Provides string representation for output. Amounts are stored in cents.
  */
 public class ShipmentResultFormatter {
+    private static final String IGNORED = " Ignored";
+    private static final String NO_DISCOUNT = " -";
+
     private final BasicShipment basicShipment;
-    private final double originalPrice;
-    private final double finalPrice;
-    private final double discount;
+    private final long originalPriceCents;
+    private final long finalPriceCents;
+    private final long discountCents;
 
     /**
      * Creates a new result formatter with shipment and pricing details.
+     * Amounts are rounded half up to whole cents from their shortest decimal
+     * form, the rounding String.format("%.2f") applies, so the text is the
+     * same as formatting the amounts directly. A discount that rounds to zero
+     * cents is shown as no discount.
      *
      * @param basicShipment The shipment
      * @param originalPrice Original price before discount
@@ -22,10 +34,27 @@ public class ShipmentResultFormatter {
      * @param discount Discount amount applied
      */
     public ShipmentResultFormatter(BasicShipment basicShipment, double originalPrice, double finalPrice, double discount) {
+        this(basicShipment, roundToCents(originalPrice), roundToCents(finalPrice), roundToCents(discount));
+    }
+
+    private ShipmentResultFormatter(BasicShipment basicShipment, long originalPriceCents, long finalPriceCents, long discountCents) {
         this.basicShipment = basicShipment;
-        this.originalPrice = originalPrice;
-        this.finalPrice = finalPrice;
-        this.discount = discount;
+        this.originalPriceCents = originalPriceCents;
+        this.finalPriceCents = finalPriceCents;
+        this.discountCents = discountCents;
+    }
+
+    /**
+     * Creates a new result formatter from amounts in cents.
+     *
+     * @param basicShipment The shipment
+     * @param originalPriceCents Original price before discount in cents
+     * @param finalPriceCents Final price after discount in cents
+     * @param discountCents Discount applied in cents
+     * @return Result formatter
+     */
+    public static ShipmentResultFormatter fromCents(BasicShipment basicShipment, long originalPriceCents, long finalPriceCents, long discountCents) {
+        return new ShipmentResultFormatter(basicShipment, originalPriceCents, finalPriceCents, discountCents);
     }
 
     public BasicShipment getBasicShipment() {
@@ -33,15 +62,31 @@ public class ShipmentResultFormatter {
     }
 
     public double getOriginalPrice() {
-        return originalPrice;
+        return Money.toAmount(originalPriceCents);
     }
 
     public double getFinalPrice() {
-        return finalPrice;
+        return Money.toAmount(finalPriceCents);
     }
 
     public double getDiscount() {
-        return discount;
+        return Money.toAmount(discountCents);
+    }
+
+    public long getOriginalPriceCents() {
+        return originalPriceCents;
+    }
+
+    public long getFinalPriceCents() {
+        return finalPriceCents;
+    }
+
+    public long getDiscountCents() {
+        return discountCents;
+    }
+
+    private static long roundToCents(double amount) {
+        return BigDecimal.valueOf(amount).setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValue();
     }
 
     /**
@@ -53,21 +98,48 @@ public class ShipmentResultFormatter {
      */
     @Override
     public String toString() {
+        return formatTo(new StringBuilder(32)).toString();
+    }
+
+    /**
+     * Appends the formatted shipment result to a builder, in the same format
+     * as toString. Lets callers reuse one builder for every result instead of
+     * creating a string per shipment.
+     *
+     * @param out Builder to append to
+     * @return The same builder
+     */
+    public StringBuilder formatTo(StringBuilder out) {
+        return formatTo(out, basicShipment, finalPriceCents, discountCents);
+    }
+
+    /**
+     * Appends the formatted result of a shipment to a builder without
+     * creating a result object, in the same format as toString.
+     *
+     * @param out Builder to append to
+     * @param basicShipment The shipment
+     * @param finalPriceCents Final price after discount in cents
+     * @param discountCents Discount applied in cents
+     * @return The same builder
+     */
+    public static StringBuilder formatTo(StringBuilder out, BasicShipment basicShipment, long finalPriceCents, long discountCents) {
         if (!(basicShipment instanceof Shipment)) {
-            return basicShipment.getDate() + " " + basicShipment.getShippingProvider() + " Ignored";
+            return out.append(basicShipment.getDate()).append(' ').append(basicShipment.getShippingProvider()).append(IGNORED);
         }
 
         Shipment sizedShipment = (Shipment) basicShipment;
 
-        String formattedPrice = String.format("%.2f", finalPrice);
+        ShipmentDates.appendTo(out, sizedShipment.getPackedDate()).append(' ')
+                .append(sizedShipment.getSize()).append(' ')
+                .append(sizedShipment.getShippingProvider()).append(' ');
+        FixedPointFormat.appendCents(out, finalPriceCents);
 
-        String formattedDiscount;
-        if (discount > 0) {
-            formattedDiscount = String.format("%.2f", discount);
+        if (discountCents > 0) {
+            FixedPointFormat.appendCents(out.append(' '), discountCents);
         } else {
-            formattedDiscount = "-";
+            out.append(NO_DISCOUNT);
         }
-
-        return sizedShipment.getDate() + " " + sizedShipment.getSize() + " " + sizedShipment.getShippingProvider() + " " + formattedPrice + " " + formattedDiscount;
+        return out;
     }
-}
\ No newline at end of file
+}
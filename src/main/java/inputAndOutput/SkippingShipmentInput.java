@@ -0,0 +1,57 @@
+package inputAndOutput;
+
+import shipmentModel.BasicShipment;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+
+/**
+ * Resumable input over a stream that resumes by skipping shipments.
+ * See ResumableShipmentInput.of.
+ */
+final class SkippingShipmentInput implements ResumableShipmentInput {
+    private final Stream<BasicShipment> shipments;
+    private final Iterator<BasicShipment> iterator;
+    private long offset;
+
+    SkippingShipmentInput(Stream<BasicShipment> shipments) {
+        this.shipments = shipments;
+        this.iterator = shipments.iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return iterator.hasNext();
+    }
+
+    @Override
+    public BasicShipment next() {
+        BasicShipment shipment = iterator.next();
+        offset++;
+        return shipment;
+    }
+
+    @Override
+    public long offset() {
+        return offset;
+    }
+
+    @Override
+    public void seek(long offset) {
+        if (this.offset != 0) {
+            throw new IllegalStateException("Input must be positioned before it is read");
+        }
+        while (this.offset < offset) {
+            if (!iterator.hasNext()) {
+                throw new NoSuchElementException("Input ends before shipment " + offset);
+            }
+            next();
+        }
+    }
+
+    @Override
+    public void close() {
+        shipments.close();
+    }
+}
@@ -0,0 +1,176 @@
+package inputAndOutput;
+
+import shipmentModel.BasicShipment;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Resumable input of a text shipment file whose offset is the byte offset
+ * after the line of the last shipment read. Lines end at "\n", "\r\n" or
+ * "\r" and are decoded as UTF-8, as FileReader reads them, and lines the
+ * parser rejects are skipped. A plain file is resumed by positioning it at
+ * the offset; a gzip-compressed file cannot be positioned, so resuming it
+ * decompresses and skips the data before the offset. Not thread-safe.
+ */
+public class TextShipmentInput implements ResumableShipmentInput {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path file;
+    private final Function<String, BasicShipment> parser;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private byte[] line = new byte[256];
+    private InputStream in;
+    private int bufferPosition;
+    private int bufferLimit;
+    private long bufferOffset;
+
+    private BasicShipment next;
+    private long nextOffset;
+    private long offset;
+    private boolean read;
+
+    /**
+     * Opens a text file at its start. Files ending in .gz are decompressed.
+     *
+     * @param file Text file to read
+     * @param parser Parser of one line, returning null for lines to skip
+     * @throws IOException If the file cannot be opened
+     */
+    public TextShipmentInput(Path file, Function<String, BasicShipment> parser) throws IOException {
+        this.file = file;
+        this.parser = parser;
+        this.in = open(0);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        try {
+            String text;
+            while ((text = readLine()) != null) {
+                BasicShipment shipment = parser.apply(text);
+                if (shipment != null) {
+                    next = shipment;
+                    nextOffset = bufferOffset + bufferPosition;
+                    return true;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return false;
+    }
+
+    @Override
+    public BasicShipment next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        BasicShipment shipment = next;
+        next = null;
+        offset = nextOffset;
+        return shipment;
+    }
+
+    @Override
+    public long offset() {
+        return offset;
+    }
+
+    @Override
+    public void seek(long offset) throws IOException {
+        if (read) {
+            throw new IllegalStateException("Input must be positioned before it is read");
+        }
+        in.close();
+        in = open(offset);
+        bufferOffset = offset;
+        bufferPosition = 0;
+        bufferLimit = 0;
+        this.offset = offset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private InputStream open(long offset) throws IOException {
+        if (!FileReader.isGzip(file.toString())) {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            if (offset > channel.size()) {
+                channel.close();
+                throw new IOException("Offset " + offset + " is beyond the end of " + file);
+            }
+            return Channels.newInputStream(channel.position(offset));
+        }
+        InputStream in = new GZIPInputStream(Files.newInputStream(file), BUFFER_SIZE);
+        try {
+            in.skipNBytes(offset);
+        } catch (IOException e) {
+            in.close();
+            throw new IOException("Offset " + offset + " is beyond the end of " + file, e);
+        }
+        return in;
+    }
+
+    /**
+     * Reads the next line without its terminator.
+     *
+     * @return Line, or null at the end of the file
+     */
+    private String readLine() throws IOException {
+        read = true;
+        int length = 0;
+        while (true) {
+            if (bufferPosition == bufferLimit && !fill()) {
+                return length > 0 ? new String(line, 0, length, StandardCharsets.UTF_8) : null;
+            }
+            byte b = buffer[bufferPosition++];
+            if (b == '\n' || b == '\r') {
+                if (b == '\r' && (bufferPosition < bufferLimit || fill()) && buffer[bufferPosition] == '\n') {
+                    bufferPosition++;
+                }
+                return new String(line, 0, length, StandardCharsets.UTF_8);
+            }
+            if (length == line.length) {
+                line = Arrays.copyOf(line, length * 2);
+            }
+            line[length++] = b;
+        }
+    }
+
+    /**
+     * Refills the empty buffer.
+     *
+     * @return false at the end of the file
+     */
+    private boolean fill() throws IOException {
+        bufferOffset += bufferLimit;
+        bufferPosition = 0;
+        bufferLimit = 0;
+        int count;
+        do {
+            count = in.read(buffer);
+        } while (count == 0);
+        if (count < 0) {
+            return false;
+        }
+        bufferLimit = count;
+        return true;
+    }
+}
@@ -2,6 +2,8 @@ package service;
 
 import shipmentModel.Shipment;
 
+import java.util.List;
+
 /**
  * Interface defining contract rules for calculating shipment discounts.
  * Allows for flexible addition and modification of discount rules.
@@ -15,6 +17,40 @@ public interface DiscountContractRule {
      */
     boolean applies(Shipment shipment);
 
+    /**
+     * Gets the provider and package size combinations this rule applies to.
+     * A rule that declares a scope other than RuleScope.ANY must apply to
+     * exactly the shipments within it; the calculator then runs it for those
+     * shipments without calling applies. The default, RuleScope.ANY, offers
+     * the rule every shipment and lets applies decide.
+     *
+     * @return Scope of the rule
+     */
+    default RuleScope getScope() {
+        return RuleScope.ANY;
+    }
+
+    /**
+     * Describes the rule as it was defined, e.g. in the syntax of the rules
+     * file, so that two rules of the same class can be told apart in reports.
+     *
+     * @return Definition of the rule, the simple class name by default
+     */
+    default String getDefinition() {
+        return getClass().getSimpleName();
+    }
+
+    /**
+     * Gets the per-month counters the rule keeps in the discount state tracker.
+     * The calculator registers them with its tracker before any shipment is
+     * calculated, so that month state is sized for them up front.
+     *
+     * @return Counters of this rule instance, empty by default
+     */
+    default List<RuleCounter> getCounters() {
+        return List.of();
+    }
+
     /**
      * Calculates the discount amount for a shipment when this rule applies.
      *
@@ -24,4 +60,50 @@ public interface DiscountContractRule {
      * @return The calculated discount amount
      */
     double calculateDiscount(Shipment shipment, double originalPrice, DiscountStateTracker discountStateTracker);
-}
\ No newline at end of file
+
+    /**
+     * Calculates the discount in cents for a shipment when this rule applies.
+     * The default implementation converts to and from calculateDiscount;
+     * rules should override it to keep the calculation exact.
+     *
+     * @param shipment The shipment to calculate discount for
+     * @param originalPriceCents The original price of the shipment in cents
+     * @param discountStateTracker Tracker for discount state (e.g., monthly limits)
+     * @return The calculated discount in cents
+     */
+    default long calculateDiscountCents(Shipment shipment, long originalPriceCents, DiscountStateTracker discountStateTracker) {
+        return Money.toCents(calculateDiscount(shipment, Money.toAmount(originalPriceCents), discountStateTracker));
+    }
+
+    /**
+     * Calculates discounts in cents for a block of shipments.
+     * For every active shipment of the block that the rule applies to, the
+     * discount is stored at the shipment's position; other positions are
+     * left at 0. Shipments are visited in block order and the monthly cap is
+     * applied by the calculator afterwards, so a rule must not depend on the
+     * discounts granted to earlier shipments. The default implementation
+     * calls calculateDiscountCents for each shipment; rules should override
+     * it with a loop over the block's columns.
+     *
+     * @param block Block of shipments with original prices and active mask filled in
+     * @param discountsCents Discount column to fill, indexed like the block
+     * @param discountStateTracker Tracker for discount state (e.g., monthly limits)
+     */
+    default void calculateDiscountsCents(ShipmentBlock block, long[] discountsCents, DiscountStateTracker discountStateTracker) {
+        RuleScope scope = getScope();
+        boolean checkApplies = scope == RuleScope.ANY;
+        boolean[] active = block.getActive();
+        int[] providerIds = block.getProviderIds();
+        int[] sizeIds = block.getSizeIds();
+        long[] originalPrices = block.getOriginalPrices();
+
+        for (int i = 0; i < block.size(); i++) {
+            if (active[i] && scope.covers(providerIds[i], sizeIds[i])) {
+                Shipment shipment = (Shipment) block.getShipment(i);
+                if (!checkApplies || applies(shipment)) {
+                    discountsCents[i] = calculateDiscountCents(shipment, originalPrices[i], discountStateTracker);
+                }
+            }
+        }
+    }
+}
@@ -1,28 +1,71 @@
 package service;
 
-import java.util.HashMap;
-import java.util.Map;
+import shipmentModel.ShipmentDates;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Tracks discount state for shipments, including monthly discount totals
- * and rule-specific tracking (like LP Large package counts).
+ * and rule-specific tracking (like LP Large package counts). Rules keep
+ * their per-month state in rule counters, each with a count and an
+ * applied flag for discounts granted once per month. Every tracker gives
+ * the counters registered with it slots of its own, and every month holds
+ * exactly that many counters. Counters should be registered before the
+ * tracker is shared by threads, as ShipmentDiscountCalculator does for its
+ * rules; a counter registered later grows the state of every open month.
  * Enforces monthly discount limits.
+ * Discount totals and the limit are kept in whole cents; the double based
+ * methods convert at the boundary.
+ * State is keyed by month key (see ShipmentDates.monthKey); the methods
+ * taking a "YYYY-MM" string parse it to a month key.
+ * Thread-safe without a global lock: every month has its own atomic
+ * accumulators, found through an immutable open-addressing table that is
+ * replaced only when a month is added or closed.
+ * Months before the watermark are closed: their state is evicted and they
+ * get no further discount, so memory is proportional to the open months.
+ * The tracker itself treats a closed month as empty; ShipmentDiscountCalculator
+ * rejects shipments of closed months, so late input is never discounted silently.
  */
 public class DiscountStateTracker {
+    /**
+     * Number of open months to keep when months are never closed automatically.
+     */
+    public static final int ALL_MONTHS_OPEN = 0;
 
-    private final Map<String, Double> totalMonthDiscounts = new HashMap<>();
-    private final Map<String, Integer> lpLargeCounts = new HashMap<>();
-    private final Map<String, Boolean> lpLargeFreeShipmentApplied = new HashMap<>();
+    /**
+     * Slot of the tracker's own counter of large LP shipments, used by the LP large methods.
+     */
+    public static final int LP_LARGE_COUNTER = 0;
 
-    private double discountLimit;
+    private final long discountLimitCents;
+    private final int openMonths;
+    private volatile RuleCounter[] counters = {new RuleCounter("LP L")};
+    private volatile MonthTable monthTable = MonthTable.EMPTY;
+    private volatile int watermark = Integer.MIN_VALUE;
 
     /**
      * Creates a new discount tracker with the specified monthly discount limit.
+     * Months stay open until closeMonthsBefore is called.
      *
      * @param discountLimit Maximum discount amount allowed per month
      */
     public DiscountStateTracker(double discountLimit) {
-        this.discountLimit = discountLimit;
+        this(discountLimit, ALL_MONTHS_OPEN);
+    }
+
+    /**
+     * Creates a new discount tracker that keeps a number of months open.
+     * Whenever a later month is first seen, months more than openMonths - 1
+     * before it are closed. Suits input that is ordered by date.
+     *
+     * @param discountLimit Maximum discount amount allowed per month
+     * @param openMonths Number of most recent months kept open, or ALL_MONTHS_OPEN
+     */
+    public DiscountStateTracker(double discountLimit, int openMonths) {
+        this.discountLimitCents = Money.toCents(discountLimit);
+        this.openMonths = openMonths;
     }
 
     /**
@@ -32,11 +75,28 @@ public class DiscountStateTracker {
      * @return Total discount amount for the month
      */
     public double getTotalMonthDiscount(String month) {
-        if (totalMonthDiscounts.containsKey(month)) {
-            return totalMonthDiscounts.get(month);
-        } else {
-            return 0.0;
-        }
+        return Money.toAmount(getTotalMonthDiscountCents(month));
+    }
+
+    /**
+     * Gets the total discount applied for a specific month in cents.
+     *
+     * @param month Month in format YYYY-MM
+     * @return Total discount for the month in cents
+     */
+    public long getTotalMonthDiscountCents(String month) {
+        return getTotalMonthDiscountCents(monthKey(month));
+    }
+
+    /**
+     * Gets the total discount applied for a month in cents.
+     *
+     * @param monthKey Month key
+     * @return Total discount for the month in cents, 0 for closed months
+     */
+    public long getTotalMonthDiscountCents(int monthKey) {
+        MonthState state = monthTable.find(monthKey);
+        return state != null ? state.discountCents.get() : 0L;
     }
 
     /**
@@ -46,9 +106,86 @@ public class DiscountStateTracker {
      * @param discount Discount amount to add
      */
     public void addDiscount(String month, double discount) {
-        double currentDiscount=getTotalMonthDiscount(month);
-        currentDiscount = currentDiscount + discount;
-        totalMonthDiscounts.put(month, currentDiscount);
+        addDiscountCents(month, Money.toCents(discount));
+    }
+
+    /**
+     * Adds a discount in cents to the monthly total, regardless of the limit.
+     *
+     * @param month Month in format YYYY-MM
+     * @param discountCents Discount to add in cents
+     */
+    public void addDiscountCents(String month, long discountCents) {
+        MonthState state = monthState(monthKey(month));
+        if (state != null) {
+            state.discountCents.addAndGet(discountCents);
+        }
+    }
+
+    /**
+     * Atomically reserves up to the requested discount from the month's
+     * remaining budget. The granted amount is counted against the limit at
+     * once; callers that end up not applying it give it back with
+     * releaseDiscountCents.
+     *
+     * @param month Month in format YYYY-MM
+     * @param requestedCents Discount wanted in cents
+     * @return Discount granted in cents, between 0 and the requested amount
+     */
+    public long reserveDiscountCents(String month, long requestedCents) {
+        return reserveDiscountCents(monthKey(month), requestedCents);
+    }
+
+    /**
+     * Atomically reserves up to the requested discount from the month's remaining budget.
+     *
+     * @param monthKey Month key
+     * @param requestedCents Discount wanted in cents
+     * @return Discount granted in cents, between 0 and the requested amount; 0 for closed months
+     */
+    public long reserveDiscountCents(int monthKey, long requestedCents) {
+        if (requestedCents <= 0) {
+            return 0;
+        }
+        MonthState state = monthState(monthKey);
+        if (state == null) {
+            return 0;
+        }
+
+        AtomicLong discountCents = state.discountCents;
+        while (true) {
+            long used = discountCents.get();
+            long granted = Math.min(requestedCents, discountLimitCents - used);
+            if (granted <= 0) {
+                return 0;
+            }
+            if (discountCents.compareAndSet(used, used + granted)) {
+                return granted;
+            }
+        }
+    }
+
+    /**
+     * Gives back a discount reserved with reserveDiscountCents that was not applied.
+     *
+     * @param month Month in format YYYY-MM
+     * @param reservedCents Reserved discount to give back in cents
+     */
+    public void releaseDiscountCents(String month, long reservedCents) {
+        releaseDiscountCents(monthKey(month), reservedCents);
+    }
+
+    /**
+     * Gives back a discount reserved with reserveDiscountCents that was not applied.
+     *
+     * @param monthKey Month key
+     * @param reservedCents Reserved discount to give back in cents
+     */
+    public void releaseDiscountCents(int monthKey, long reservedCents) {
+        MonthState state = reservedCents > 0 ? monthTable.find(monthKey) : null;
+        if (state != null) {
+            state.discountCents.addAndGet(-reservedCents);
+        }
     }
 
     /**
@@ -58,22 +195,51 @@ public class DiscountStateTracker {
      * @return Remaining discount amount available
      */
     public double getRemainingDiscount(String month) {
-        return discountLimit - getTotalMonthDiscount(month);
+        return Money.toAmount(getRemainingDiscountCents(month));
     }
 
     /**
-     * Gets the count of large LP shipments for a month.
-     * Used for the third-LP-large-free rule.
+     * Gets the remaining discount available for a month in cents.
      *
      * @param month Month in format YYYY-MM
-     * @return Count of large LP shipments
+     * @return Remaining discount available in cents
      */
-    public int getLpLargeCount(String month) {
-        if (lpLargeCounts.containsKey(month)) {
-            return lpLargeCounts.get(month);
-        } else {
+    public long getRemainingDiscountCents(String month) {
+        return getRemainingDiscountCents(monthKey(month));
+    }
+
+    /**
+     * Gets the remaining discount available for a month in cents.
+     *
+     * @param monthKey Month key
+     * @return Remaining discount available in cents, 0 for closed months
+     */
+    public long getRemainingDiscountCents(int monthKey) {
+        if (isClosed(monthKey)) {
             return 0;
         }
+        return discountLimitCents - getTotalMonthDiscountCents(monthKey);
+    }
+
+    /**
+     * Gets the count of large LP shipments for a month, kept in the tracker's
+     * own LP large counter. Rules count in their own counters instead.
+     *
+     * @param month Month in format YYYY-MM
+     * @return Count of large LP shipments
+     */
+    public int getLpLargeCount(String month) {
+        return getLpLargeCount(monthKey(month));
+    }
+
+    /**
+     * Gets the count of large LP shipments for a month.
+     *
+     * @param monthKey Month key
+     * @return Count of large LP shipments, 0 for closed months
+     */
+    public int getLpLargeCount(int monthKey) {
+        return getCount(monthKey, LP_LARGE_COUNTER);
     }
 
     /**
@@ -82,8 +248,27 @@ public class DiscountStateTracker {
      * @param month Month in format YYYY-MM
      */
     public void incrementLpLargeCount(String month) {
-        int current = getLpLargeCount(month);
-        lpLargeCounts.put(month, current + 1);
+        incrementAndGetLpLargeCount(monthKey(month));
+    }
+
+    /**
+     * Atomically increments the count of large LP shipments for a month.
+     *
+     * @param month Month in format YYYY-MM
+     * @return Count of large LP shipments including this one
+     */
+    public int incrementAndGetLpLargeCount(String month) {
+        return incrementAndGetLpLargeCount(monthKey(month));
+    }
+
+    /**
+     * Atomically increments the count of large LP shipments for a month.
+     *
+     * @param monthKey Month key
+     * @return Count of large LP shipments including this one, 0 for closed months
+     */
+    public int incrementAndGetLpLargeCount(int monthKey) {
+        return incrementAndGetCount(monthKey, LP_LARGE_COUNTER);
     }
 
     /**
@@ -93,11 +278,17 @@ public class DiscountStateTracker {
      * @return true if free shipment has been applied, false otherwise
      */
     public boolean isLpLargeFreeShipmentApplied(String month) {
-        if (lpLargeFreeShipmentApplied.containsKey(month)) {
-            return lpLargeFreeShipmentApplied.get(month);
-        } else {
-            return false;
-        }
+        return isLpLargeFreeShipmentApplied(monthKey(month));
+    }
+
+    /**
+     * Checks if the free large LP shipment has been applied for a month.
+     *
+     * @param monthKey Month key
+     * @return true if free shipment has been applied, false otherwise or for closed months
+     */
+    public boolean isLpLargeFreeShipmentApplied(int monthKey) {
+        return isApplied(monthKey, LP_LARGE_COUNTER);
     }
 
     /**
@@ -106,6 +297,431 @@ public class DiscountStateTracker {
      * @param month Month in format YYYY-MM
      */
     public void markLpLargeFreeShipmentApplied(String month) {
-        lpLargeFreeShipmentApplied.put(month, true);
+        tryMarkLpLargeFreeShipmentApplied(monthKey(month));
+    }
+
+    /**
+     * Atomically marks the free large LP shipment as applied for a month,
+     * if it has not been applied yet.
+     *
+     * @param month Month in format YYYY-MM
+     * @return true if this call marked it, false if it was already applied
+     */
+    public boolean tryMarkLpLargeFreeShipmentApplied(String month) {
+        return tryMarkLpLargeFreeShipmentApplied(monthKey(month));
+    }
+
+    /**
+     * Atomically marks the free large LP shipment as applied for a month,
+     * if it has not been applied yet.
+     *
+     * @param monthKey Month key
+     * @return true if this call marked it, false if it was already applied or the month is closed
+     */
+    public boolean tryMarkLpLargeFreeShipmentApplied(int monthKey) {
+        return tryMarkApplied(monthKey, LP_LARGE_COUNTER);
+    }
+
+    /**
+     * Closes all months before a month and evicts their state. Closed months
+     * get no further discount. The watermark never moves back.
+     *
+     * @param monthKey First month key that stays open
+     */
+    public synchronized void closeMonthsBefore(int monthKey) {
+        if (monthKey <= watermark) {
+            return;
+        }
+        watermark = monthKey;
+        monthTable = monthTable.withoutMonthsBefore(monthKey);
+    }
+
+    /**
+     * Checks whether a month is closed, i.e. before the watermark.
+     *
+     * @param monthKey Month key
+     * @return true if the month is closed and its state was evicted
+     */
+    public boolean isClosed(int monthKey) {
+        return monthKey < watermark;
+    }
+
+    /**
+     * Gets the first month that is still open.
+     *
+     * @return Month key of the watermark, or Integer.MIN_VALUE if no month was closed
+     */
+    public int getWatermark() {
+        return watermark;
+    }
+
+    /**
+     * Gets the month keys of all months whose state is held, in ascending order.
+     *
+     * @return Month keys of the open months with state
+     */
+    public int[] getOpenMonthKeys() {
+        MonthTable table = monthTable;
+        int[] monthKeys = new int[table.size];
+        int count = 0;
+        for (MonthState state : table.states) {
+            if (state != null) {
+                monthKeys[count++] = state.monthKey;
+            }
+        }
+        Arrays.sort(monthKeys);
+        return monthKeys;
+    }
+
+    /**
+     * Gets a rule counter of a month.
+     *
+     * @param monthKey Month key
+     * @param counter Counter slot from counterSlot
+     * @return Count, 0 for closed months
+     */
+    public int getCount(int monthKey, int counter) {
+        MonthState state = monthTable.find(monthKey);
+        return state != null ? state.counts.get(counter) : 0;
+    }
+
+    /**
+     * Gets a rule counter of a month.
+     *
+     * @param monthKey Month key
+     * @param counter Rule counter
+     * @return Count, 0 for closed months
+     */
+    public int getCount(int monthKey, RuleCounter counter) {
+        return getCount(monthKey, counterSlot(counter));
+    }
+
+    /**
+     * Atomically increments a rule counter of a month.
+     *
+     * @param monthKey Month key
+     * @param counter Counter slot from counterSlot
+     * @return Count including this increment, 0 for closed months
+     */
+    public int incrementAndGetCount(int monthKey, int counter) {
+        MonthState state = monthState(monthKey);
+        return state != null ? state.counts.incrementAndGet(counter) : 0;
+    }
+
+    /**
+     * Atomically increments a rule counter of a month.
+     *
+     * @param monthKey Month key
+     * @param counter Rule counter
+     * @return Count including this increment, 0 for closed months
+     */
+    public int incrementAndGetCount(int monthKey, RuleCounter counter) {
+        return incrementAndGetCount(monthKey, counterSlot(counter));
+    }
+
+    /**
+     * Checks whether a rule counter's once-per-month discount has been applied.
+     *
+     * @param monthKey Month key
+     * @param counter Counter slot from counterSlot
+     * @return true if it has been applied, false otherwise or for closed months
+     */
+    public boolean isApplied(int monthKey, int counter) {
+        MonthState state = monthTable.find(monthKey);
+        return state != null && state.applied.get(counter) != 0;
+    }
+
+    /**
+     * Checks whether a rule counter's once-per-month discount has been applied.
+     *
+     * @param monthKey Month key
+     * @param counter Rule counter
+     * @return true if it has been applied, false otherwise or for closed months
+     */
+    public boolean isApplied(int monthKey, RuleCounter counter) {
+        return isApplied(monthKey, counterSlot(counter));
+    }
+
+    /**
+     * Atomically marks a rule counter's once-per-month discount as applied,
+     * if it has not been applied yet.
+     *
+     * @param monthKey Month key
+     * @param counter Counter slot from counterSlot
+     * @return true if this call marked it, false if it was already applied or the month is closed
+     */
+    public boolean tryMarkApplied(int monthKey, int counter) {
+        MonthState state = monthState(monthKey);
+        return state != null && state.applied.compareAndSet(counter, 0, 1);
+    }
+
+    /**
+     * Atomically marks a rule counter's once-per-month discount as applied,
+     * if it has not been applied yet.
+     *
+     * @param monthKey Month key
+     * @param counter Rule counter
+     * @return true if this call marked it, false if it was already applied or the month is closed
+     */
+    public boolean tryMarkApplied(int monthKey, RuleCounter counter) {
+        return tryMarkApplied(monthKey, counterSlot(counter));
+    }
+
+    /**
+     * Gets the rule counters of a month.
+     *
+     * @param monthKey Month key
+     * @return Count of every counter, indexed by counter slot
+     */
+    public int[] getCounts(int monthKey) {
+        int[] counts = new int[counterCount()];
+        MonthState state = monthTable.find(monthKey);
+        for (int counter = 0; state != null && counter < counts.length; counter++) {
+            counts[counter] = state.counts.get(counter);
+        }
+        return counts;
+    }
+
+    /**
+     * Gets the applied flags of the rule counters of a month.
+     *
+     * @param monthKey Month key
+     * @return Applied flag of every counter, indexed by counter slot
+     */
+    public boolean[] getAppliedFlags(int monthKey) {
+        boolean[] applied = new boolean[counterCount()];
+        MonthState state = monthTable.find(monthKey);
+        for (int counter = 0; state != null && counter < applied.length; counter++) {
+            applied[counter] = state.applied.get(counter) != 0;
+        }
+        return applied;
+    }
+
+    /**
+     * Sets the complete state of a month, e.g. when restoring a checkpoint.
+     * Counters beyond the given arrays are reset. Ignored for closed months.
+     *
+     * @param monthKey Month key
+     * @param discountCents Total discount of the month in cents
+     * @param counts Count of every counter, indexed by counter slot
+     * @param applied Applied flag of every counter, indexed by counter slot
+     */
+    public void restoreMonth(int monthKey, long discountCents, int[] counts, boolean[] applied) {
+        MonthState state = monthState(monthKey);
+        if (state != null) {
+            state.discountCents.set(discountCents);
+            for (int counter = 0; counter < state.counts.length(); counter++) {
+                state.counts.set(counter, counter < counts.length ? counts[counter] : 0);
+                state.applied.set(counter, counter < applied.length && applied[counter] ? 1 : 0);
+            }
+        }
+    }
+
+    /**
+     * Gets the slot of a rule counter in this tracker, registering the
+     * counter if the tracker has not seen it yet. The lookup scans the
+     * registered counters, so rules should look up their slot once per
+     * tracker and count through the slot-based methods.
+     *
+     * @param counter Rule counter
+     * @return Counter slot
+     */
+    public int counterSlot(RuleCounter counter) {
+        RuleCounter[] registered = counters;
+        for (int slot = 0; slot < registered.length; slot++) {
+            if (registered[slot] == counter) {
+                return slot;
+            }
+        }
+        return registerCounter(counter);
+    }
+
+    /**
+     * Registers a rule counter, giving it the next free slot and growing the
+     * state of every open month to hold it. Registering a counter that is
+     * already registered returns its slot.
+     *
+     * @param counter Rule counter
+     * @return Counter slot
+     */
+    public synchronized int registerCounter(RuleCounter counter) {
+        RuleCounter[] registered = counters;
+        for (int slot = 0; slot < registered.length; slot++) {
+            if (registered[slot] == counter) {
+                return slot;
+            }
+        }
+
+        int slot = registered.length;
+        for (MonthState state : monthTable.states) {
+            if (state != null) {
+                state.grow(slot + 1);
+            }
+        }
+        RuleCounter[] grown = Arrays.copyOf(registered, slot + 1);
+        grown[slot] = counter;
+        counters = grown;
+        return slot;
+    }
+
+    /**
+     * Gets the name of a rule counter.
+     *
+     * @param counter Counter slot
+     * @return Counter name
+     */
+    public String counterName(int counter) {
+        return counters[counter].getName();
+    }
+
+    /**
+     * Gets the number of rule counters registered with this tracker,
+     * including its own LP large counter.
+     *
+     * @return Number of counters
+     */
+    public int counterCount() {
+        return counters.length;
+    }
+
+    /**
+     * Gets the number of months whose state is held.
+     *
+     * @return Number of open months with state
+     */
+    public int getOpenMonthCount() {
+        return monthTable.size;
+    }
+
+    private static int monthKey(String month) {
+        int monthKey = ShipmentDates.parseMonth(month);
+        if (monthKey == ShipmentDates.INVALID) {
+            throw new IllegalArgumentException("Invalid month: " + month);
+        }
+        return monthKey;
+    }
+
+    /**
+     * Gets the state of a month, creating it if needed.
+     *
+     * @return State of the month, or null if the month is closed
+     */
+    private MonthState monthState(int monthKey) {
+        MonthState state = monthTable.find(monthKey);
+        return state != null ? state : addMonth(monthKey);
+    }
+
+    private synchronized MonthState addMonth(int monthKey) {
+        MonthState state = monthTable.find(monthKey);
+        if (state != null) {
+            return state;
+        }
+        if (openMonths != ALL_MONTHS_OPEN) {
+            closeMonthsBefore(monthKey - openMonths + 1);
+        }
+        if (monthKey < watermark) {
+            return null;
+        }
+
+        state = new MonthState(monthKey, counters.length);
+        monthTable = monthTable.with(state);
+        return state;
+    }
+
+    /**
+     * Accumulators of one month, with one count and applied flag per counter slot.
+     * The counter arrays are only replaced, under the tracker's lock, when a
+     * counter is registered.
+     */
+    private static final class MonthState {
+        private final int monthKey;
+        private final AtomicLong discountCents = new AtomicLong();
+        private volatile AtomicIntegerArray counts;
+        private volatile AtomicIntegerArray applied;
+
+        MonthState(int monthKey, int counterCount) {
+            this.monthKey = monthKey;
+            this.counts = new AtomicIntegerArray(counterCount);
+            this.applied = new AtomicIntegerArray(counterCount);
+        }
+
+        void grow(int counterCount) {
+            counts = copyOf(counts, counterCount);
+            applied = copyOf(applied, counterCount);
+        }
+
+        private static AtomicIntegerArray copyOf(AtomicIntegerArray values, int length) {
+            AtomicIntegerArray copy = new AtomicIntegerArray(length);
+            for (int i = 0; i < values.length(); i++) {
+                copy.set(i, values.get(i));
+            }
+            return copy;
+        }
+    }
+
+    /**
+     * Immutable open-addressing hash table from month key to month state
+     * with linear probing. Kept at most half full.
+     */
+    private static final class MonthTable {
+        private static final MonthTable EMPTY = new MonthTable(new MonthState[8], 0);
+
+        private final MonthState[] states;
+        private final int size;
+
+        private MonthTable(MonthState[] states, int size) {
+            this.states = states;
+            this.size = size;
+        }
+
+        MonthState find(int monthKey) {
+            int mask = states.length - 1;
+            for (int i = mix(monthKey) & mask; ; i = (i + 1) & mask) {
+                MonthState state = states[i];
+                if (state == null || state.monthKey == monthKey) {
+                    return state;
+                }
+            }
+        }
+
+        MonthTable with(MonthState added) {
+            int capacity = states.length;
+            while ((size + 1) * 2 > capacity) {
+                capacity *= 2;
+            }
+            MonthState[] copy = new MonthState[capacity];
+            for (MonthState state : states) {
+                if (state != null) {
+                    insert(copy, state);
+                }
+            }
+            insert(copy, added);
+            return new MonthTable(copy, size + 1);
+        }
+
+        MonthTable withoutMonthsBefore(int monthKey) {
+            MonthState[] copy = new MonthState[states.length];
+            int kept = 0;
+            for (MonthState state : states) {
+                if (state != null && state.monthKey >= monthKey) {
+                    insert(copy, state);
+                    kept++;
+                }
+            }
+            return new MonthTable(copy, kept);
+        }
+
+        private static void insert(MonthState[] states, MonthState state) {
+            int mask = states.length - 1;
+            int i = mix(state.monthKey) & mask;
+            while (states[i] != null) {
+                i = (i + 1) & mask;
+            }
+            states[i] = state;
+        }
+
+        private static int mix(int monthKey) {
+            return monthKey * 0x9E3779B9 >>> 16;
+        }
     }
-}
\ No newline at end of file
+}
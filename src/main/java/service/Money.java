@@ -0,0 +1,37 @@
+package service;
+
+/**
+ * Conversions between amounts and whole cents.
+ * Prices, discounts and monthly limits are carried as long cents inside the
+ * pipeline, so sums and cap checks are exact. Doubles are only used at the
+ * edges, for configuration and the public double based methods.
+ */
+public final class Money {
+    /**
+     * Sentinel for a missing price in cent based lookups.
+     */
+    public static final long NO_PRICE = -1;
+
+    private Money() {
+    }
+
+    /**
+     * Converts an amount to cents, rounding to the nearest cent.
+     *
+     * @param amount Amount to convert
+     * @return Amount in cents
+     */
+    public static long toCents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    /**
+     * Converts cents to an amount.
+     *
+     * @param cents Amount in cents
+     * @return Amount
+     */
+    public static double toAmount(long cents) {
+        return cents / 100.0;
+    }
+}
@@ -0,0 +1,286 @@
+package service;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Low-overhead counters and latency histograms for the processing pipeline,
+ * one set per discount rule and one per pipeline stage.
+ * All counters are LongAdders, which stripe updates across threads, so
+ * recording does not contend when shipments are processed in parallel.
+ * Latencies are kept in histograms with power-of-two nanosecond buckets.
+ * A snapshot can be taken at any time, also while recording continues.
+ */
+public class PipelineMetrics {
+
+    /**
+     * Stages of the pipeline whose time is recorded.
+     */
+    public enum Stage {
+        PARSE, PRICE, DISCOUNT, FORMAT, WRITE
+    }
+
+    private final String[] ruleNames;
+    private final LongAdder[] ruleFired;
+    private final LongAdder[] ruleGrantedCents;
+    private final LongAdder[] ruleTruncated;
+    private final LatencyHistogram[] ruleLatencies;
+    private final LatencyHistogram[] stageLatencies;
+
+    /**
+     * Creates metrics for a list of rules.
+     *
+     * @param rules Rules whose metrics are recorded, by their index in the list
+     */
+    public PipelineMetrics(List<DiscountContractRule> rules) {
+        int ruleCount = rules.size();
+        this.ruleNames = new String[ruleCount];
+        this.ruleFired = new LongAdder[ruleCount];
+        this.ruleGrantedCents = new LongAdder[ruleCount];
+        this.ruleTruncated = new LongAdder[ruleCount];
+        this.ruleLatencies = new LatencyHistogram[ruleCount];
+        for (int r = 0; r < ruleCount; r++) {
+            ruleNames[r] = r + " " + rules.get(r).getDefinition();
+            ruleFired[r] = new LongAdder();
+            ruleGrantedCents[r] = new LongAdder();
+            ruleTruncated[r] = new LongAdder();
+            ruleLatencies[r] = new LatencyHistogram();
+        }
+
+        this.stageLatencies = new LatencyHistogram[Stage.values().length];
+        for (int s = 0; s < stageLatencies.length; s++) {
+            stageLatencies[s] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Records the time of one pass through a pipeline stage.
+     *
+     * @param stage Pipeline stage
+     * @param nanos Time spent in nanoseconds
+     */
+    public void recordStage(Stage stage, long nanos) {
+        stageLatencies[stage.ordinal()].record(nanos);
+    }
+
+    /**
+     * Records the time of one evaluation of a rule, for a single shipment or a whole block.
+     *
+     * @param rule Index of the rule
+     * @param nanos Time spent in nanoseconds
+     */
+    public void recordRuleLatency(int rule, long nanos) {
+        ruleLatencies[rule].record(nanos);
+    }
+
+    /**
+     * Records the outcome of a rule for one shipment.
+     *
+     * @param rule Index of the rule
+     * @param requestedCents Discount calculated by the rule in cents
+     * @param grantedCents Discount granted under the monthly cap in cents
+     */
+    public void recordRuleOutcome(int rule, long requestedCents, long grantedCents) {
+        if (requestedCents > 0) {
+            ruleFired[rule].increment();
+            ruleGrantedCents[rule].add(grantedCents);
+            if (grantedCents < requestedCents) {
+                ruleTruncated[rule].increment();
+            }
+        }
+    }
+
+    /**
+     * Takes a snapshot of all metrics.
+     *
+     * @return Snapshot of the current values
+     */
+    public Snapshot snapshot() {
+        int ruleCount = ruleNames.length;
+        long[] fired = new long[ruleCount];
+        long[] grantedCents = new long[ruleCount];
+        long[] truncated = new long[ruleCount];
+        HistogramSnapshot[] ruleHistograms = new HistogramSnapshot[ruleCount];
+        for (int r = 0; r < ruleCount; r++) {
+            fired[r] = ruleFired[r].sum();
+            grantedCents[r] = ruleGrantedCents[r].sum();
+            truncated[r] = ruleTruncated[r].sum();
+            ruleHistograms[r] = ruleLatencies[r].snapshot();
+        }
+
+        HistogramSnapshot[] stageHistograms = new HistogramSnapshot[stageLatencies.length];
+        for (int s = 0; s < stageLatencies.length; s++) {
+            stageHistograms[s] = stageLatencies[s].snapshot();
+        }
+        return new Snapshot(ruleNames.clone(), fired, grantedCents, truncated, ruleHistograms, stageHistograms);
+    }
+
+    /**
+     * Histogram of latencies with one bucket per power of two nanoseconds.
+     */
+    private static final class LatencyHistogram {
+        private final LongAdder[] buckets = new LongAdder[HistogramSnapshot.BUCKETS];
+        private final LongAdder totalNanos = new LongAdder();
+
+        LatencyHistogram() {
+            for (int b = 0; b < buckets.length; b++) {
+                buckets[b] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            buckets[HistogramSnapshot.bucketOf(nanos)].increment();
+            totalNanos.add(nanos);
+        }
+
+        HistogramSnapshot snapshot() {
+            long[] counts = new long[buckets.length];
+            for (int b = 0; b < buckets.length; b++) {
+                counts[b] = buckets[b].sum();
+            }
+            return new HistogramSnapshot(counts, totalNanos.sum());
+        }
+    }
+
+    /**
+     * Values of a latency histogram at the time of a snapshot.
+     */
+    public static final class HistogramSnapshot {
+        static final int BUCKETS = 64;
+
+        private final long[] counts;
+        private final long count;
+        private final long totalNanos;
+
+        HistogramSnapshot(long[] counts, long totalNanos) {
+            this.counts = counts;
+            this.totalNanos = totalNanos;
+            long sum = 0;
+            for (long bucketCount : counts) {
+                sum += bucketCount;
+            }
+            this.count = sum;
+        }
+
+        /**
+         * Gets the bucket of a latency: 0 for 0 ns, otherwise the bit length of the latency.
+         */
+        static int bucketOf(long nanos) {
+            return nanos <= 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        /**
+         * Gets an upper bound of a latency percentile.
+         *
+         * @param percentile Percentile between 0 and 100
+         * @return Upper bound in nanoseconds of the bucket holding the percentile, 0 if nothing was recorded
+         */
+        public long getPercentileNanos(double percentile) {
+            long rank = (long) Math.ceil(count * percentile / 100);
+            long seen = 0;
+            for (int b = 0; b < counts.length; b++) {
+                seen += counts[b];
+                if (seen >= rank && seen > 0) {
+                    return b == 0 ? 0 : (1L << b) - 1;
+                }
+            }
+            return 0;
+        }
+
+        private StringBuilder appendTo(StringBuilder out) {
+            return out.append(" count=").append(count)
+                    .append(" totalMs=").append(totalNanos / 1_000_000)
+                    .append(" meanNs=").append(count == 0 ? 0 : totalNanos / count)
+                    .append(" p50Ns<=").append(getPercentileNanos(50))
+                    .append(" p99Ns<=").append(getPercentileNanos(99));
+        }
+    }
+
+    /**
+     * Values of all metrics at the time of a snapshot.
+     * Its string form is a report with one line per rule and per stage.
+     */
+    public static final class Snapshot {
+        private final String[] ruleNames;
+        private final long[] fired;
+        private final long[] grantedCents;
+        private final long[] truncated;
+        private final HistogramSnapshot[] ruleLatencies;
+        private final HistogramSnapshot[] stageLatencies;
+
+        Snapshot(String[] ruleNames, long[] fired, long[] grantedCents, long[] truncated,
+                 HistogramSnapshot[] ruleLatencies, HistogramSnapshot[] stageLatencies) {
+            this.ruleNames = ruleNames;
+            this.fired = fired;
+            this.grantedCents = grantedCents;
+            this.truncated = truncated;
+            this.ruleLatencies = ruleLatencies;
+            this.stageLatencies = stageLatencies;
+        }
+
+        public int getRuleCount() {
+            return ruleNames.length;
+        }
+
+        public String getRuleName(int rule) {
+            return ruleNames[rule];
+        }
+
+        /**
+         * Gets how many shipments a rule calculated a discount for.
+         *
+         * @param rule Index of the rule
+         * @return Number of shipments with a non-zero discount from the rule
+         */
+        public long getFired(int rule) {
+            return fired[rule];
+        }
+
+        public long getGrantedCents(int rule) {
+            return grantedCents[rule];
+        }
+
+        /**
+         * Gets how often the monthly cap cut a rule's discount short.
+         *
+         * @param rule Index of the rule
+         * @return Number of truncated discounts
+         */
+        public long getTruncated(int rule) {
+            return truncated[rule];
+        }
+
+        public HistogramSnapshot getRuleLatency(int rule) {
+            return ruleLatencies[rule];
+        }
+
+        public HistogramSnapshot getStageLatency(Stage stage) {
+            return stageLatencies[stage.ordinal()];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder();
+            for (int r = 0; r < ruleNames.length; r++) {
+                out.append("rule ").append(ruleNames[r])
+                        .append(" fired=").append(fired[r])
+                        .append(" grantedCents=").append(grantedCents[r])
+                        .append(" truncated=").append(truncated[r]);
+                ruleLatencies[r].appendTo(out).append(System.lineSeparator());
+            }
+            for (Stage stage : Stage.values()) {
+                out.append("stage ").append(stage);
+                stageLatencies[stage.ordinal()].appendTo(out).append(System.lineSeparator());
+            }
+            return out.toString();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package service;
+
+import java.util.Objects;
+
+/**
+ * Per-month counter of one discount rule instance, e.g. the number of
+ * shipments a rule has counted in a month together with its once-per-month
+ * applied flag. Counters are told apart by identity, so every rule instance
+ * counts on its own even if two rules have the same definition; the name
+ * only describes the counter, e.g. in checkpoints. Each tracker gives a
+ * counter a slot of its own when the counter is registered or first used.
+ */
+public final class RuleCounter {
+    private final String name;
+
+    /**
+     * Creates a new counter.
+     *
+     * @param name Counter name, e.g. the rule definition
+     */
+    public RuleCounter(String name) {
+        this.name = Objects.requireNonNull(name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,82 @@
+package service;
+
+import shipmentModel.PackageSize;
+
+/**
+ * The provider and package size combinations a discount rule applies to.
+ * A scope names one provider or any provider, and one package size or any
+ * package size. The calculator uses scopes to precompute which rules run
+ * for each combination.
+ */
+public final class RuleScope {
+    public static final int ANY_PROVIDER = -1;
+
+    /**
+     * Scope of rules that do not declare one; such rules are offered every
+     * shipment and decide with applies.
+     */
+    public static final RuleScope ANY = new RuleScope(ANY_PROVIDER, null);
+
+    private final int providerId;
+    private final PackageSize size;
+
+    private RuleScope(int providerId, PackageSize size) {
+        this.providerId = providerId;
+        this.size = size;
+    }
+
+    /**
+     * Creates a scope of one provider and one package size.
+     *
+     * @param providerId Provider id from ProviderRegistry
+     * @param size Package size
+     * @return Scope covering only that combination
+     */
+    public static RuleScope of(int providerId, PackageSize size) {
+        return new RuleScope(providerId, size);
+    }
+
+    /**
+     * Creates a scope of one package size for any provider.
+     *
+     * @param size Package size
+     * @return Scope covering the size for every provider
+     */
+    public static RuleScope ofSize(PackageSize size) {
+        return new RuleScope(ANY_PROVIDER, size);
+    }
+
+    /**
+     * Creates a scope of one provider for any package size.
+     *
+     * @param providerId Provider id from ProviderRegistry
+     * @return Scope covering every size of the provider
+     */
+    public static RuleScope ofProvider(int providerId) {
+        return new RuleScope(providerId, null);
+    }
+
+    /**
+     * Checks whether a provider and package size combination is within the scope.
+     *
+     * @param providerId Provider id
+     * @param size Package size
+     * @return true if the combination is covered
+     */
+    public boolean covers(int providerId, PackageSize size) {
+        return (this.providerId == ANY_PROVIDER || this.providerId == providerId)
+                && (this.size == null || this.size == size);
+    }
+
+    /**
+     * Checks whether a provider and package size id combination is within the scope.
+     *
+     * @param providerId Provider id
+     * @param sizeId Package size id
+     * @return true if the combination is covered
+     */
+    public boolean covers(int providerId, int sizeId) {
+        return (this.providerId == ANY_PROVIDER || this.providerId == providerId)
+                && (size == null || size.getId() == sizeId);
+    }
+}
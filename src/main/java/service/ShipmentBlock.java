@@ -0,0 +1,177 @@
+package service;
+
+import shipmentModel.BasicShipment;
+import shipmentModel.Shipment;
+
+import java.util.Arrays;
+
+/**
+ * A block of shipments in columnar form for batch discount calculation.
+ * Every field of the shipments is held in its own primitive array indexed
+ * by position in the block; only the first size() entries are valid.
+ * Shipments without size information have NO_ID as size and provider id.
+ * The calculator fills the original prices and the active mask before the
+ * rules run, and the discount and final price columns afterwards.
+ * Not thread-safe; a block is reused for block after block.
+ */
+public final class ShipmentBlock {
+    public static final int DEFAULT_CAPACITY = 4096;
+    public static final int NO_ID = -1;
+
+    private final BasicShipment[] shipments;
+    private final int[] dates;
+    private final int[] monthKeys;
+    private final int[] sizeIds;
+    private final int[] providerIds;
+    private final long[] originalPrices;
+    private final boolean[] active;
+    private final long[] discounts;
+    private final long[] finalPrices;
+    private long[][] ruleDiscounts = new long[0][];
+    private int size;
+
+    /**
+     * Creates an empty block with the default capacity.
+     */
+    public ShipmentBlock() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty block.
+     *
+     * @param capacity Maximum number of shipments in the block
+     */
+    public ShipmentBlock(int capacity) {
+        this.shipments = new BasicShipment[capacity];
+        this.dates = new int[capacity];
+        this.monthKeys = new int[capacity];
+        this.sizeIds = new int[capacity];
+        this.providerIds = new int[capacity];
+        this.originalPrices = new long[capacity];
+        this.active = new boolean[capacity];
+        this.discounts = new long[capacity];
+        this.finalPrices = new long[capacity];
+    }
+
+    /**
+     * Appends a shipment to the block.
+     *
+     * @param basicShipment Shipment to append
+     * @throws IllegalStateException If the block is full
+     */
+    public void add(BasicShipment basicShipment) {
+        if (isFull()) {
+            throw new IllegalStateException("Shipment block is full");
+        }
+
+        int i = size++;
+        shipments[i] = basicShipment;
+        if (basicShipment instanceof Shipment) {
+            Shipment shipment = (Shipment) basicShipment;
+            dates[i] = shipment.getPackedDate();
+            monthKeys[i] = shipment.getMonthKey();
+            sizeIds[i] = shipment.getPackageSize().getId();
+            providerIds[i] = shipment.getProviderId();
+        } else {
+            sizeIds[i] = NO_ID;
+            providerIds[i] = NO_ID;
+        }
+    }
+
+    /**
+     * Removes all shipments, keeping the arrays for the next block.
+     */
+    public void clear() {
+        Arrays.fill(shipments, 0, size, null);
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return shipments.length;
+    }
+
+    public boolean isFull() {
+        return size == shipments.length;
+    }
+
+    /**
+     * Gets a shipment of the block.
+     *
+     * @param index Position in the block
+     * @return Shipment at the position
+     */
+    public BasicShipment getShipment(int index) {
+        return shipments[index];
+    }
+
+    public int[] getDates() {
+        return dates;
+    }
+
+    public int[] getMonthKeys() {
+        return monthKeys;
+    }
+
+    public int[] getSizeIds() {
+        return sizeIds;
+    }
+
+    public int[] getProviderIds() {
+        return providerIds;
+    }
+
+    /**
+     * Gets the original prices in cents, 0 for shipments without a price.
+     *
+     * @return Original price column
+     */
+    public long[] getOriginalPrices() {
+        return originalPrices;
+    }
+
+    /**
+     * Gets the mask of shipments the rules have to calculate: priced shipments
+     * whose month still had discount left when the block was started.
+     *
+     * @return Active column
+     */
+    public boolean[] getActive() {
+        return active;
+    }
+
+    /**
+     * Gets the discounts in cents granted by the calculator.
+     *
+     * @return Discount column
+     */
+    public long[] getDiscounts() {
+        return discounts;
+    }
+
+    /**
+     * Gets the final prices in cents after the granted discounts.
+     *
+     * @return Final price column
+     */
+    public long[] getFinalPrices() {
+        return finalPrices;
+    }
+
+    /**
+     * Gets one scratch discount column per rule, cleared for this block.
+     */
+    long[][] ruleDiscounts(int ruleCount) {
+        if (ruleDiscounts.length < ruleCount) {
+            ruleDiscounts = new long[ruleCount][shipments.length];
+        }
+        for (int r = 0; r < ruleCount; r++) {
+            Arrays.fill(ruleDiscounts[r], 0, size, 0L);
+        }
+        return ruleDiscounts;
+    }
+}
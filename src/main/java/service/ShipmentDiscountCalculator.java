@@ -1,31 +1,92 @@
 package service;
 
+import inputAndOutput.ShipmentResult;
 import inputAndOutput.ShipmentResultFormatter;
 import shipmentModel.BasicShipment;
+import shipmentModel.PackageSize;
+import shipmentModel.ProviderRegistry;
 import shipmentModel.Shipment;
+import shipmentModel.ShipmentDates;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * Calculates discounts for shipments by applying applicable discount rules
- * and enforcing monthly discount limits.
+ * and enforcing monthly discount limits. All amounts are whole cents.
+ * Each rule's discount is reserved atomically from the month's budget, so
+ * one calculator and tracker can be shared by threads as long as the rules
+ * and price provider are thread-safe.
+ * The rules for each provider and package size combination are looked up
+ * in a dispatch table built from the rules' scopes, so a shipment only runs
+ * the rules relevant to it. Cells are built on first use, which also covers
+ * providers and sizes registered after the calculator was created.
+ * Shipments of a month the tracker has already closed are rejected with an
+ * IllegalArgumentException, as their month's discount state is gone.
+ * With PipelineMetrics the price and discount stages and every rule
+ * evaluation are timed, and each rule's outcome under the cap is counted;
+ * in block calculation one sample covers a whole block.
  */
 public class ShipmentDiscountCalculator {
     private final ShipmentPriceProvider shipmentPriceProvider;
     private final DiscountStateTracker discountStateTracker;
     private final List<DiscountContractRule> rules;
+    private final PipelineMetrics metrics;
+    private volatile RuleDispatch[][] dispatchTable = new RuleDispatch[0][];
 
     /**
      * Creates a new discount calculator with price provider, state tracker, and rules.
      *
      * @param shipmentPriceProvider Provider of shipment prices
      * @param discountStateTracker Tracker for discount state
-     * @param rules List of discount rules to apply
+     * @param rules List of discount rules to apply, in order; must not change afterwards
      */
     public ShipmentDiscountCalculator(ShipmentPriceProvider shipmentPriceProvider, DiscountStateTracker discountStateTracker, List<DiscountContractRule> rules) {
+        this(shipmentPriceProvider, discountStateTracker, rules, null);
+    }
+
+    /**
+     * Creates a new discount calculator that records pipeline metrics.
+     *
+     * @param shipmentPriceProvider Provider of shipment prices
+     * @param discountStateTracker Tracker for discount state
+     * @param rules List of discount rules to apply, in order; must not change afterwards.
+     *              Their counters are registered with the tracker
+     * @param metrics Metrics created for the same rules, or null to record nothing
+     */
+    public ShipmentDiscountCalculator(ShipmentPriceProvider shipmentPriceProvider, DiscountStateTracker discountStateTracker,
+                                      List<DiscountContractRule> rules, PipelineMetrics metrics) {
         this.shipmentPriceProvider = shipmentPriceProvider;
         this.discountStateTracker = discountStateTracker;
         this.rules = rules;
+        this.metrics = metrics;
+        // Size the tracker's months for every rule counter before shipments are calculated concurrently
+        if (discountStateTracker != null && rules != null) {
+            for (DiscountContractRule rule : rules) {
+                for (RuleCounter counter : rule.getCounters()) {
+                    discountStateTracker.registerCounter(counter);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the metrics this calculator records.
+     *
+     * @return Pipeline metrics, or null if none are recorded
+     */
+    public PipelineMetrics getPipelineMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Gets the tracker holding this calculator's discount state.
+     *
+     * @return Discount state tracker
+     */
+    public DiscountStateTracker getDiscountStateTracker() {
+        return discountStateTracker;
     }
 
     /**
@@ -34,53 +95,339 @@ public class ShipmentDiscountCalculator {
      *
      * @param basicShipment The shipment to calculate discount for
      * @return Formatted result with original price, final price, and discount
+     * @throws IllegalArgumentException If the shipment's month is closed
      */
     public ShipmentResultFormatter calculateDiscount(BasicShipment basicShipment) {
+        ShipmentResult result = calculateDiscount(basicShipment, new ShipmentResult());
+        return ShipmentResultFormatter.fromCents(basicShipment, result.getOriginalPriceCents(),
+                result.getFinalPriceCents(), result.getDiscountCents());
+    }
+
+    /**
+     * Calculates discount for a shipment into a result supplied by the caller,
+     * which can be reused for every shipment so that nothing is allocated per record.
+     *
+     * @param basicShipment The shipment to calculate discount for
+     * @param result Result to fill in with original price, final price, and discount
+     * @return The filled in result
+     * @throws IllegalArgumentException If the shipment's month is closed
+     */
+    public ShipmentResult calculateDiscount(BasicShipment basicShipment, ShipmentResult result) {
         // Only process Shipment objects with size information
         if (!(basicShipment instanceof Shipment)) {
-            return new ShipmentResultFormatter(basicShipment, 0, 0, 0);
+            return result.set(basicShipment, 0, 0, 0);
         }
 
         Shipment sizedShipment = (Shipment) basicShipment;
 
-        // Get original price based on provider and size
-        double originalPrice = shipmentPriceProvider.getPrice(sizedShipment.getShippingProvider(), sizedShipment.getSize());
+        // Get original price in cents based on provider and size, as in force on the shipment date
+        long start = metrics != null ? System.nanoTime() : 0;
+        long originalPrice = shipmentPriceProvider.getPriceCents(sizedShipment.getProviderId(), sizedShipment.getPackageSize(),
+                sizedShipment.getPackedDate());
+        if (metrics != null) {
+            long priced = System.nanoTime();
+            metrics.recordStage(PipelineMetrics.Stage.PRICE, priced - start);
+            start = priced;
+        }
         if (originalPrice < 0) {
-            return new ShipmentResultFormatter(basicShipment, 0, 0, 0);
+            return result.set(basicShipment, 0, 0, 0);
+        }
+
+        long totalDiscount = calculateDiscountCents(sizedShipment, originalPrice);
+        if (metrics != null) {
+            metrics.recordStage(PipelineMetrics.Stage.DISCOUNT, System.nanoTime() - start);
+        }
+
+        // Calculate final price after discount
+        long finalPrice = originalPrice - totalDiscount;
+
+        return result.set(basicShipment, originalPrice, finalPrice, totalDiscount);
+    }
+
+    /**
+     * Calculates discounts for a block of shipments.
+     * Every rule runs once over the whole block, after which the monthly cap
+     * is applied shipment by shipment in block order. Rules run speculatively
+     * for all shipments of a month that had discount left when the block
+     * started; if a month's budget runs out within the block, the rules would
+     * not have run for its later shipments, so that month is restored to its
+     * state at the start of the block and its shipments are calculated again
+     * one at a time. The results, and the tracker state afterwards, are the
+     * same as calling calculateDiscount for each shipment in block order.
+     * The block's months must not be updated by other threads meanwhile.
+     *
+     * @param block Block of shipments; its discount and final price columns are filled in
+     * @throws IllegalArgumentException If a shipment's month is closed
+     */
+    public void calculateDiscounts(ShipmentBlock block) {
+        int count = block.size();
+        int[] dates = block.getDates();
+        int[] monthKeys = block.getMonthKeys();
+        int[] sizeIds = block.getSizeIds();
+        int[] providerIds = block.getProviderIds();
+        long[] originalPrices = block.getOriginalPrices();
+        boolean[] active = block.getActive();
+        long[] discounts = block.getDiscounts();
+        long[] finalPrices = block.getFinalPrices();
+
+        // Price the shipments; only priced shipments of months with discount left run the rules
+        long start = metrics != null ? System.nanoTime() : 0;
+        for (int i = 0; i < count; i++) {
+            long originalPrice = 0;
+            boolean isActive = false;
+            if (sizeIds[i] != ShipmentBlock.NO_ID) {
+                originalPrice = shipmentPriceProvider.getPriceCents(providerIds[i], PackageSize.fromId(sizeIds[i]), dates[i]);
+                if (originalPrice < 0) {
+                    originalPrice = 0;
+                } else {
+                    requireOpenMonth(block.getShipment(i), monthKeys[i]);
+                    isActive = discountStateTracker.getRemainingDiscountCents(monthKeys[i]) > 0;
+                }
+            }
+            originalPrices[i] = originalPrice;
+            active[i] = isActive;
+            discounts[i] = 0;
+            finalPrices[i] = originalPrice;
+        }
+
+        if (metrics != null) {
+            long priced = System.nanoTime();
+            metrics.recordStage(PipelineMetrics.Stage.PRICE, priced - start);
+            start = priced;
+        }
+
+        // Remember the state of the block's months so that a month can be calculated again
+        int[] months = activeMonths(block);
+        long[] monthDiscounts = new long[months.length];
+        int[][] counts = new int[months.length][];
+        boolean[][] appliedFlags = new boolean[months.length][];
+        for (int m = 0; m < months.length; m++) {
+            monthDiscounts[m] = discountStateTracker.getTotalMonthDiscountCents(months[m]);
+            counts[m] = discountStateTracker.getCounts(months[m]);
+            appliedFlags[m] = discountStateTracker.getAppliedFlags(months[m]);
+        }
+
+        long[][] ruleDiscounts = block.ruleDiscounts(rules.size());
+        for (int r = 0; r < rules.size(); r++) {
+            long ruleStart = metrics != null ? System.nanoTime() : 0;
+            rules.get(r).calculateDiscountsCents(block, ruleDiscounts[r], discountStateTracker);
+            if (metrics != null) {
+                metrics.recordRuleLatency(r, System.nanoTime() - ruleStart);
+            }
+        }
+
+        // Grant the discounts in block order until a month's budget runs out
+        boolean[] recalculate = new boolean[months.length];
+        for (int i = 0; i < count; i++) {
+            if (!active[i]) {
+                continue;
+            }
+            int month = monthKeys[i];
+            int m = Arrays.binarySearch(months, month);
+            if (recalculate[m]) {
+                continue;
+            }
+            if (discountStateTracker.getRemainingDiscountCents(month) <= 0) {
+                recalculate[m] = true;
+                continue;
+            }
+
+            long totalDiscount = 0;
+            for (int r = 0; r < rules.size(); r++) {
+                long ruleDiscount = ruleDiscounts[r][i];
+                long grantedDiscount = discountStateTracker.reserveDiscountCents(month, ruleDiscount);
+                totalDiscount += grantedDiscount;
+                if (grantedDiscount < ruleDiscount) {
+                    recalculate[m] = true;
+                    break;
+                }
+            }
+            discounts[i] = totalDiscount;
+            finalPrices[i] = originalPrices[i] - totalDiscount;
         }
 
-        // Extract month from date (YYYY-MM)
-        String month = sizedShipment.getDate().substring(0, 7);
-        double remainingMonthlyDiscount = discountStateTracker.getRemainingDiscount(month);
+        // Calculate the months whose budget ran out again from their state at the start of the block
+        for (int m = 0; m < months.length; m++) {
+            if (!recalculate[m]) {
+                continue;
+            }
+            discountStateTracker.restoreMonth(months[m], monthDiscounts[m], counts[m], appliedFlags[m]);
+            for (int i = 0; i < count; i++) {
+                if (active[i] && monthKeys[i] == months[m]) {
+                    long totalDiscount = calculateDiscountCents((Shipment) block.getShipment(i), originalPrices[i]);
+                    discounts[i] = totalDiscount;
+                    finalPrices[i] = originalPrices[i] - totalDiscount;
+                }
+            }
+        }
+
+        if (metrics != null) {
+            recordBlockOutcomes(block, months, recalculate, ruleDiscounts);
+            metrics.recordStage(PipelineMetrics.Stage.DISCOUNT, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Records the rule outcomes of the months that were not calculated again;
+     * the cap never cut a discount short in those months. The other months
+     * were recorded while calculating them again.
+     */
+    private void recordBlockOutcomes(ShipmentBlock block, int[] months, boolean[] recalculate, long[][] ruleDiscounts) {
+        boolean[] active = block.getActive();
+        int[] monthKeys = block.getMonthKeys();
+        for (int i = 0; i < block.size(); i++) {
+            if (active[i] && !recalculate[Arrays.binarySearch(months, monthKeys[i])]) {
+                for (int r = 0; r < rules.size(); r++) {
+                    metrics.recordRuleOutcome(r, ruleDiscounts[r][i], ruleDiscounts[r][i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies the rules to a priced shipment, reserving each discount from the
+     * monthly budget.
+     *
+     * @return Total discount granted in cents
+     */
+    private long calculateDiscountCents(Shipment sizedShipment, long originalPrice) {
+        int month = sizedShipment.getMonthKey();
+        requireOpenMonth(sizedShipment, month);
+        long remainingMonthlyDiscount = discountStateTracker.getRemainingDiscountCents(month);
 
         // If no discount remaining for the month, return original price
         if (remainingMonthlyDiscount <= 0) {
-            return new ShipmentResultFormatter(basicShipment, originalPrice, originalPrice, 0);
+            return 0;
         }
 
-        // Apply all applicable discount rules
-        double totalDiscount = 0;
-        for (DiscountContractRule rule : rules) {
-            if (rule.applies(sizedShipment)) {
-                double ruleDiscount = rule.calculateDiscount(sizedShipment, originalPrice, discountStateTracker);
+        // Apply all applicable discount rules, reserving each discount from the monthly budget
+        RuleDispatch dispatch = dispatch(sizedShipment.getProviderId(), sizedShipment.getPackageSize());
+        long totalDiscount = 0;
+        for (int i = 0; i < dispatch.rules.length; i++) {
+            DiscountContractRule rule = dispatch.rules[i];
+            if (!dispatch.checkApplies[i] || rule.applies(sizedShipment)) {
+                long start = metrics != null ? System.nanoTime() : 0;
+                long ruleDiscount = rule.calculateDiscountCents(sizedShipment, originalPrice, discountStateTracker);
+                if (metrics != null) {
+                    metrics.recordRuleLatency(dispatch.ruleIndexes[i], System.nanoTime() - start);
+                }
+                long grantedDiscount = discountStateTracker.reserveDiscountCents(month, ruleDiscount);
+                totalDiscount += grantedDiscount;
+                if (metrics != null) {
+                    metrics.recordRuleOutcome(dispatch.ruleIndexes[i], ruleDiscount, grantedDiscount);
+                }
 
-                // Enforce monthly discount limit
-                if (totalDiscount + ruleDiscount > remainingMonthlyDiscount) {
-                    ruleDiscount = remainingMonthlyDiscount - totalDiscount;
-                    totalDiscount += ruleDiscount;
+                // Monthly discount limit reached
+                if (grantedDiscount < ruleDiscount) {
                     break;
-                } else {
-                    totalDiscount += ruleDiscount;
                 }
             }
         }
+        return totalDiscount;
+    }
 
-        // Record the discount in the tracker
-        discountStateTracker.addDiscount(month, totalDiscount);
+    /**
+     * Rejects a shipment that arrives after its month was closed.
+     */
+    private void requireOpenMonth(BasicShipment shipment, int monthKey) {
+        if (discountStateTracker.isClosed(monthKey)) {
+            throw new IllegalArgumentException("Shipment dated " + shipment.getDate() + " arrived after month "
+                    + ShipmentDates.monthLabel(monthKey) + " was closed");
+        }
+    }
 
-        // Calculate final price after discount
-        double finalPrice = originalPrice - totalDiscount;
+    /**
+     * Gets the distinct months of the active shipments of a block, in ascending order.
+     */
+    private static int[] activeMonths(ShipmentBlock block) {
+        int[] monthKeys = block.getMonthKeys();
+        boolean[] active = block.getActive();
+        int[] months = new int[block.size()];
+        int count = 0;
+        for (int i = 0; i < block.size(); i++) {
+            if (active[i]) {
+                months[count++] = monthKeys[i];
+            }
+        }
+        Arrays.sort(months, 0, count);
+
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || months[i] != months[distinct - 1]) {
+                months[distinct++] = months[i];
+            }
+        }
+        return Arrays.copyOf(months, distinct);
+    }
+
+    /**
+     * Gets the rules for a provider and package size from the dispatch table.
+     */
+    private RuleDispatch dispatch(int providerId, PackageSize size) {
+        RuleDispatch[][] table = dispatchTable;
+        if (providerId < table.length) {
+            RuleDispatch[] row = table[providerId];
+            if (size.getId() < row.length) {
+                return row[size.getId()];
+            }
+        }
+        return growDispatchTable(providerId, size.getId());
+    }
+
+    /**
+     * Replaces the dispatch table with one that also covers the given ids and
+     * every provider and size registered so far.
+     */
+    private synchronized RuleDispatch growDispatchTable(int providerId, int sizeId) {
+        RuleDispatch[][] table = dispatchTable;
+        int providerCount = Math.max(Math.max(providerId + 1, ProviderRegistry.count()), table.length);
+        int sizeCount = Math.max(sizeId + 1, PackageSize.count());
 
-        return new ShipmentResultFormatter(basicShipment, originalPrice, finalPrice, totalDiscount);
+        RuleDispatch[][] grown = new RuleDispatch[providerCount][];
+        for (int provider = 0; provider < providerCount; provider++) {
+            RuleDispatch[] row = provider < table.length ? table[provider] : new RuleDispatch[0];
+            int rowLength = Math.max(sizeCount, row.length);
+            grown[provider] = Arrays.copyOf(row, rowLength);
+            for (int size = row.length; size < rowLength; size++) {
+                grown[provider][size] = buildDispatch(provider, PackageSize.fromId(size));
+            }
+        }
+        dispatchTable = grown;
+        return grown[providerId][sizeId];
+    }
+
+    private RuleDispatch buildDispatch(int providerId, PackageSize size) {
+        List<DiscountContractRule> matching = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        for (int r = 0; r < rules.size(); r++) {
+            if (rules.get(r).getScope().covers(providerId, size)) {
+                matching.add(rules.get(r));
+                indexes.add(r);
+            }
+        }
+
+        int[] ruleIndexes = new int[indexes.size()];
+        boolean[] checkApplies = new boolean[indexes.size()];
+        for (int i = 0; i < ruleIndexes.length; i++) {
+            ruleIndexes[i] = indexes.get(i);
+            checkApplies[i] = matching.get(i).getScope() == RuleScope.ANY;
+        }
+        return new RuleDispatch(matching.toArray(new DiscountContractRule[0]), ruleIndexes, checkApplies);
+    }
+
+    /**
+     * Rules of one provider and package size combination, in rule order, with
+     * their index in the rule list and whether each still has to be asked if it applies.
+     */
+    private static final class RuleDispatch {
+        private final DiscountContractRule[] rules;
+        private final int[] ruleIndexes;
+        private final boolean[] checkApplies;
+
+        RuleDispatch(DiscountContractRule[] rules, int[] ruleIndexes, boolean[] checkApplies) {
+            this.rules = rules;
+            this.ruleIndexes = ruleIndexes;
+            this.checkApplies = checkApplies;
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,17 +1,58 @@
 package service;
 
-import inputAndOutput.ShipmentResultFormatter;
+import inputAndOutput.DiscountCheckpointStore;
+import inputAndOutput.ResultSink;
+import inputAndOutput.ResumableShipmentInput;
+import inputAndOutput.ShipmentResult;
+import inputAndOutput.ShipmentResultBuffer;
 import shipmentModel.BasicShipment;
+import shipmentModel.Shipment;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * Manages the processing of shipments through the discount calculator.
- * Collects and returns formatted results.
+ * Collects and returns formatted results, or writes them to a result sink.
+ * Discount rules and the monthly cap only depend on the shipment's own
+ * month, so shipments can also be partitioned by month and the months
+ * processed in parallel, each month in input order, with results merged
+ * back in input order. When the calculator records PipelineMetrics, the
+ * manager records the parse, format and write stages; parsing is timed
+ * as the time taken to pull the next shipment from the input stream.
+ * Results are calculated into one reused result and line, and batches into
+ * a reused columnar result buffer, so the streaming paths allocate nothing
+ * per record. Not thread-safe.
  */
 public class ShipmentManager {
+    static final int DEFAULT_BATCH_SIZE = 1 << 20;
+    private static final int INITIAL_BATCH_CAPACITY = 1024;
+    static final int PIPELINE_BATCH_SIZE = 1024;
+    static final int PIPELINE_BATCH_COUNT = 16;
+    private static final int PIPELINE_STAGES = 4;
+    private static final int NO_MONTH = -1;
+
     private final ShipmentDiscountCalculator shipmentDiscountCalculator;
+    private final PipelineMetrics metrics;
+    private final ShipmentResult result = new ShipmentResult();
+    private final StringBuilder line = new StringBuilder(64);
 
     /**
      * Creates a new shipment manager with the specified discount calculator.
@@ -20,6 +61,7 @@ public class ShipmentManager {
      */
     public ShipmentManager(ShipmentDiscountCalculator shipmentDiscountCalculator) {
         this.shipmentDiscountCalculator = shipmentDiscountCalculator;
+        this.metrics = shipmentDiscountCalculator.getPipelineMetrics();
     }
 
     /**
@@ -33,10 +75,498 @@ public class ShipmentManager {
         List<String> results = new ArrayList<>();
 
         for (BasicShipment shipment : shipments) {
-            ShipmentResultFormatter result = shipmentDiscountCalculator.calculateDiscount(shipment);
-            results.add(result.toString());
+            line.setLength(0);
+            results.add(shipmentDiscountCalculator.calculateDiscount(shipment, result).formatTo(line).toString());
         }
 
         return results;
     }
-}
\ No newline at end of file
+
+    /**
+     * Processes a stream of shipments one record at a time, writing each
+     * formatted result to the sink as soon as it is calculated.
+     * Nothing is retained between records, so memory use stays constant.
+     *
+     * @param shipments Stream of shipments to process, in chronological order
+     * @param resultSink Destination for formatted results
+     */
+    public void manageShipments(Stream<BasicShipment> shipments, ResultSink resultSink) {
+        if (metrics == null) {
+            shipments.forEachOrdered(shipment -> manageShipment(shipment, resultSink));
+            return;
+        }
+
+        Iterator<BasicShipment> iterator = shipments.iterator();
+        while (iterator.hasNext()) {
+            manageShipment(next(iterator), resultSink);
+        }
+    }
+
+    /**
+     * Processes a stream of shipments in blocks, letting every rule run over
+     * a whole block at a time, and writes the results to the sink in order.
+     * Gives the same results as the streaming manageShipments.
+     *
+     * @param shipments Stream of shipments to process, in chronological order
+     * @param resultSink Destination for formatted results
+     */
+    public void manageShipmentsInBlocks(Stream<BasicShipment> shipments, ResultSink resultSink) {
+        ShipmentBlock block = new ShipmentBlock();
+        Iterator<BasicShipment> iterator = shipments.iterator();
+        while (iterator.hasNext()) {
+            while (!block.isFull() && iterator.hasNext()) {
+                block.add(next(iterator));
+            }
+            manageBlock(block, resultSink);
+            block.clear();
+        }
+    }
+
+    /**
+     * Calculates a block of shipments and writes its results to the sink in block order.
+     */
+    private void manageBlock(ShipmentBlock block, ResultSink resultSink) {
+        shipmentDiscountCalculator.calculateDiscounts(block);
+
+        long[] originalPrices = block.getOriginalPrices();
+        long[] finalPrices = block.getFinalPrices();
+        long[] discounts = block.getDiscounts();
+        for (int i = 0; i < block.size(); i++) {
+            write(result.set(block.getShipment(i), originalPrices[i], finalPrices[i], discounts[i]), resultSink);
+        }
+    }
+
+    /**
+     * Processes an input of shipments while checkpointing the discount state,
+     * so that a job that dies can resume where it stopped. The state is
+     * first restored from the store, the sink is resumed at the output
+     * position recorded with it and the input is positioned at the input
+     * offset recorded with it, so the records already processed are not
+     * read again. The months changed by sized shipments are then logged every
+     * DEFAULT_LOG_INTERVAL records, at most every checkpoint interval, and a
+     * snapshot is taken every checkpointInterval records, so recovery never
+     * replays more than one interval. The sink is forced to storage before
+     * every log entry and snapshot, so a sink that can resume, such as a
+     * plain file, ends up with the results of one uninterrupted run. Other
+     * sinks get the results from the restored position on, including those
+     * of records processed after the last log entry a second time.
+     *
+     * @param input Newly opened input of the job's shipments, in chronological order
+     * @param resultSink Destination for formatted results
+     * @param checkpointStore Store holding the job's discount state
+     * @param checkpointInterval Number of records between snapshots
+     * @throws IOException If the checkpoint store cannot be read or written, or the input cannot be positioned
+     */
+    public void manageShipments(ResumableShipmentInput input, ResultSink resultSink,
+                                DiscountCheckpointStore checkpointStore, long checkpointInterval) throws IOException {
+        manageShipments(input, resultSink, checkpointStore, checkpointInterval,
+                Math.min(checkpointInterval, DiscountCheckpointStore.DEFAULT_LOG_INTERVAL));
+    }
+
+    /**
+     * Processes an input of shipments while checkpointing the discount state
+     * with the given intervals.
+     *
+     * @param input Newly opened input of the job's shipments, in chronological order
+     * @param resultSink Destination for formatted results
+     * @param checkpointStore Store holding the job's discount state
+     * @param checkpointInterval Number of records between snapshots
+     * @param logInterval Number of records between log entries
+     * @throws IOException If the checkpoint store cannot be read or written, or the input cannot be positioned
+     */
+    void manageShipments(ResumableShipmentInput input, ResultSink resultSink, DiscountCheckpointStore checkpointStore,
+                         long checkpointInterval, long logInterval) throws IOException {
+        DiscountStateTracker discountStateTracker = shipmentDiscountCalculator.getDiscountStateTracker();
+        long position = checkpointStore.restore(discountStateTracker);
+        resultSink.resumeAt(checkpointStore.getOutputPosition());
+        input.seek(checkpointStore.getInputOffset());
+
+        // Months changed since the last log entry; input is chronological, so there are rarely more than one
+        int[] changedMonths = new int[4];
+        int changedMonthCount = 0;
+        long loggedPosition = position;
+        while (input.hasNext()) {
+            BasicShipment shipment = next(input);
+            manageShipment(shipment, resultSink);
+            position++;
+
+            if (shipment instanceof Shipment) {
+                int monthKey = ((Shipment) shipment).getMonthKey();
+                if (!containsMonth(changedMonths, changedMonthCount, monthKey)) {
+                    if (changedMonthCount == changedMonths.length) {
+                        changedMonths = Arrays.copyOf(changedMonths, changedMonthCount * 2);
+                    }
+                    changedMonths[changedMonthCount++] = monthKey;
+                }
+            }
+            if (position % checkpointInterval == 0) {
+                resultSink.force();
+                checkpointStore.checkpoint(discountStateTracker, position, input.offset(), resultSink.position());
+                changedMonthCount = 0;
+                loggedPosition = position;
+            } else if (position % logInterval == 0) {
+                resultSink.force();
+                checkpointStore.appendMonths(discountStateTracker, changedMonths, changedMonthCount,
+                        position, input.offset(), resultSink.position());
+                changedMonthCount = 0;
+                loggedPosition = position;
+            }
+        }
+        if (position != loggedPosition) {
+            resultSink.force();
+            checkpointStore.appendMonths(discountStateTracker, changedMonths, changedMonthCount,
+                    position, input.offset(), resultSink.position());
+        }
+    }
+
+    /**
+     * Checks whether a month is among the first count months, latest first.
+     */
+    private static boolean containsMonth(int[] monthKeys, int count, int monthKey) {
+        for (int i = count - 1; i >= 0; i--) {
+            if (monthKeys[i] == monthKey) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Processes lines of shipments in a staged pipeline: reading, parsing,
+     * discount calculation and writing each run on their own thread, so
+     * reading and writing overlap with calculation and the wall time
+     * approaches that of the slowest stage. The stages pass batches of
+     * records to each other through bounded queues; a fixed set of batches
+     * circulates from the writer back to the reader, so a slow stage holds
+     * up the stages before it and memory use stays flat. Every stage handles
+     * the batches in input order, and discounts are calculated on a single
+     * thread, so the results are the same as those of the streaming
+     * manageShipments. With metrics, parsing is timed per batch.
+     *
+     * @param lines Stream of shipment lines, in chronological order
+     * @param parser Parser of one line, returning null for lines to skip
+     * @param resultSink Destination for formatted results
+     * @throws IOException If reading the lines fails or the pipeline is interrupted
+     */
+    public void manageShipmentsPipelined(Stream<String> lines, Function<String, BasicShipment> parser,
+                                         ResultSink resultSink) throws IOException {
+        manageShipmentsPipelined(lines, parser, resultSink, PIPELINE_BATCH_SIZE, PIPELINE_BATCH_COUNT);
+    }
+
+    /**
+     * Processes lines of shipments in a staged pipeline with the given batches.
+     *
+     * @param lines Stream of shipment lines, in chronological order
+     * @param parser Parser of one line, returning null for lines to skip
+     * @param resultSink Destination for formatted results
+     * @param batchSize Number of lines per batch
+     * @param batchCount Number of batches in the pipeline, bounding the records in flight
+     * @throws IOException If reading the lines fails or the pipeline is interrupted
+     */
+    void manageShipmentsPipelined(Stream<String> lines, Function<String, BasicShipment> parser, ResultSink resultSink,
+                                  int batchSize, int batchCount) throws IOException {
+        BlockingQueue<PipelineBatch> free = new ArrayBlockingQueue<>(batchCount);
+        BlockingQueue<PipelineBatch> read = new ArrayBlockingQueue<>(batchCount);
+        BlockingQueue<PipelineBatch> parsed = new ArrayBlockingQueue<>(batchCount);
+        BlockingQueue<PipelineBatch> calculated = new ArrayBlockingQueue<>(batchCount);
+        for (int i = 0; i < batchCount; i++) {
+            free.add(new PipelineBatch(batchSize));
+        }
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService stages = Executors.newFixedThreadPool(PIPELINE_STAGES, runnable -> {
+            Thread thread = new Thread(runnable, "shipment-pipeline-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletionService<Void> completion = new ExecutorCompletionService<>(stages);
+        Iterator<String> lineIterator = lines.iterator();
+        completion.submit(() -> readStage(lineIterator, free, read));
+        completion.submit(() -> parseStage(parser, read, parsed));
+        completion.submit(() -> calculateStage(parsed, calculated));
+        completion.submit(() -> writeStage(calculated, free, resultSink));
+        try {
+            for (int i = 0; i < PIPELINE_STAGES; i++) {
+                completion.take().get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Shipment pipeline interrupted");
+        } catch (ExecutionException e) {
+            throw pipelineFailure(e.getCause());
+        } finally {
+            // Stops the other stages, which wait for batches that will never come after a failure
+            stages.shutdownNow();
+        }
+    }
+
+    /**
+     * Processes a single shipment and writes its formatted result to the sink.
+     * Shipments must be passed in chronological order.
+     *
+     * @param shipment Shipment to process
+     * @param resultSink Destination for the formatted result
+     */
+    public void manageShipment(BasicShipment shipment, ResultSink resultSink) {
+        write(shipmentDiscountCalculator.calculateDiscount(shipment, result), resultSink);
+    }
+
+    /**
+     * Pulls the next shipment from the input, timing it as the parse stage.
+     */
+    private BasicShipment next(Iterator<BasicShipment> iterator) {
+        if (metrics == null) {
+            return iterator.next();
+        }
+        long start = System.nanoTime();
+        BasicShipment shipment = iterator.next();
+        metrics.recordStage(PipelineMetrics.Stage.PARSE, System.nanoTime() - start);
+        return shipment;
+    }
+
+    /**
+     * Formats a result into the reused line and writes it to the sink.
+     */
+    private void write(ShipmentResult result, ResultSink resultSink) {
+        line.setLength(0);
+        if (metrics == null) {
+            resultSink.write(result.formatTo(line));
+            return;
+        }
+        long start = System.nanoTime();
+        result.formatTo(line);
+        long formatted = System.nanoTime();
+        resultSink.write(line);
+        metrics.recordStage(PipelineMetrics.Stage.FORMAT, formatted - start);
+        metrics.recordStage(PipelineMetrics.Stage.WRITE, System.nanoTime() - formatted);
+    }
+
+    /**
+     * Processes a list of shipments month by month on a fork-join pool
+     * and returns formatted results in input order.
+     * The results are the same as those of manageShipments, provided the
+     * calculator's tracker keeps all months of the input open.
+     *
+     * @param shipments List of shipments to process
+     * @param pool Pool that processes the months
+     * @return List of formatted result strings
+     */
+    public List<String> manageShipmentsByMonth(List<BasicShipment> shipments, ForkJoinPool pool) {
+        BasicShipment[] batch = shipments.toArray(new BasicShipment[0]);
+        ShipmentResultBuffer results = new ShipmentResultBuffer(batch.length);
+        calculateByMonth(batch, batch.length, pool, results);
+
+        List<String> formatted = new ArrayList<>(batch.length);
+        for (int i = 0; i < batch.length; i++) {
+            line.setLength(0);
+            formatted.add(results.get(i, batch[i], result).formatTo(line).toString());
+        }
+        return formatted;
+    }
+
+    /**
+     * Processes a stream of shipments month by month on a fork-join pool,
+     * writing results to the sink in input order. The stream is consumed in
+     * batches; a batch must span several months to be processed in parallel.
+     *
+     * @param shipments Stream of shipments to process
+     * @param resultSink Destination for formatted results
+     * @param pool Pool that processes the months
+     */
+    public void manageShipmentsByMonth(Stream<BasicShipment> shipments, ResultSink resultSink, ForkJoinPool pool) {
+        manageShipmentsByMonth(shipments, resultSink, pool, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Processes a stream of shipments month by month in batches of the given size.
+     * The batch buffers start small and grow up to the batch size as input
+     * arrives, so short inputs do not allocate a full batch.
+     *
+     * @param shipments Stream of shipments to process
+     * @param resultSink Destination for formatted results
+     * @param pool Pool that processes the months
+     * @param batchSize Maximum number of shipments held in memory at once
+     */
+    void manageShipmentsByMonth(Stream<BasicShipment> shipments, ResultSink resultSink, ForkJoinPool pool, int batchSize) {
+        BasicShipment[] batch = new BasicShipment[Math.min(batchSize, INITIAL_BATCH_CAPACITY)];
+        Iterator<BasicShipment> iterator = shipments.iterator();
+        ShipmentResultBuffer results = null;
+        while (iterator.hasNext()) {
+            int count = 0;
+            while (count < batchSize && iterator.hasNext()) {
+                if (count == batch.length) {
+                    batch = Arrays.copyOf(batch, Math.min(batchSize, count * 2));
+                }
+                batch[count++] = next(iterator);
+            }
+
+            if (results == null || results.capacity() < count) {
+                results = new ShipmentResultBuffer(batch.length);
+            }
+            calculateByMonth(batch, count, pool, results);
+            for (int i = 0; i < count; i++) {
+                write(results.get(i, batch[i], result), resultSink);
+            }
+            Arrays.fill(batch, 0, count, null);
+        }
+    }
+
+    /**
+     * Calculates the discounts of a batch with one task per month.
+     * Each task walks its month's shipments in input order and stores the
+     * results at their input positions in the buffer.
+     */
+    private void calculateByMonth(BasicShipment[] batch, int count, ForkJoinPool pool, ShipmentResultBuffer results) {
+        // Month key in the high half and input position in the low half, so sorting
+        // groups shipments by month while keeping input order within each month
+        long[] order = new long[count];
+        for (int i = 0; i < count; i++) {
+            int month = batch[i] instanceof Shipment ? ((Shipment) batch[i]).getMonthKey() : NO_MONTH;
+            order[i] = (long) month << 32 | i;
+        }
+        Arrays.sort(order);
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        int from = 0;
+        while (from < count) {
+            int month = (int) (order[from] >> 32);
+            int to = from + 1;
+            while (to < count && (int) (order[to] >> 32) == month) {
+                to++;
+            }
+
+            int start = from;
+            int end = to;
+            tasks.add(pool.submit(() -> {
+                ShipmentResult monthResult = new ShipmentResult();
+                for (int j = start; j < end; j++) {
+                    int index = (int) order[j];
+                    results.set(index, shipmentDiscountCalculator.calculateDiscount(batch[index], monthResult));
+                }
+            }));
+            from = to;
+        }
+
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+
+    /**
+     * Fills free batches with lines, marking the batch holding the last line.
+     */
+    private static Void readStage(Iterator<String> lines, BlockingQueue<PipelineBatch> free,
+                                  BlockingQueue<PipelineBatch> read) throws InterruptedException {
+        boolean last;
+        do {
+            PipelineBatch batch = free.take();
+            batch.lineCount = 0;
+            while (batch.lineCount < batch.lines.length && lines.hasNext()) {
+                batch.lines[batch.lineCount++] = lines.next();
+            }
+            last = !lines.hasNext();
+            batch.last = last;
+            read.put(batch);
+        } while (!last);
+        return null;
+    }
+
+    /**
+     * Parses the lines of each batch into its shipments.
+     */
+    private Void parseStage(Function<String, BasicShipment> parser, BlockingQueue<PipelineBatch> read,
+                            BlockingQueue<PipelineBatch> parsed) throws InterruptedException {
+        boolean last;
+        do {
+            PipelineBatch batch = read.take();
+            long start = metrics != null ? System.nanoTime() : 0;
+            batch.size = 0;
+            for (int i = 0; i < batch.lineCount; i++) {
+                BasicShipment shipment = parser.apply(batch.lines[i]);
+                batch.lines[i] = null;
+                if (shipment != null) {
+                    batch.shipments[batch.size++] = shipment;
+                }
+            }
+            if (metrics != null) {
+                metrics.recordStage(PipelineMetrics.Stage.PARSE, System.nanoTime() - start);
+            }
+            // Read before handing the batch on, the reader may refill it as soon as the writer frees it
+            last = batch.last;
+            parsed.put(batch);
+        } while (!last);
+        return null;
+    }
+
+    /**
+     * Calculates the results of each batch, batch after batch on one thread.
+     */
+    private Void calculateStage(BlockingQueue<PipelineBatch> parsed,
+                                BlockingQueue<PipelineBatch> calculated) throws InterruptedException {
+        ShipmentResult calculatedResult = new ShipmentResult();
+        boolean last;
+        do {
+            PipelineBatch batch = parsed.take();
+            for (int i = 0; i < batch.size; i++) {
+                batch.results.set(i, shipmentDiscountCalculator.calculateDiscount(batch.shipments[i], calculatedResult));
+            }
+            last = batch.last;
+            calculated.put(batch);
+        } while (!last);
+        return null;
+    }
+
+    /**
+     * Writes the results of each batch and hands the batch back to the reader.
+     */
+    private Void writeStage(BlockingQueue<PipelineBatch> calculated, BlockingQueue<PipelineBatch> free,
+                            ResultSink resultSink) throws InterruptedException {
+        boolean last;
+        do {
+            PipelineBatch batch = calculated.take();
+            for (int i = 0; i < batch.size; i++) {
+                write(batch.results.get(i, batch.shipments[i], result), resultSink);
+                batch.shipments[i] = null;
+            }
+            last = batch.last;
+            free.put(batch);
+        } while (!last);
+        return null;
+    }
+
+    /**
+     * Turns the failure of a pipeline stage into the exception of the pipeline.
+     */
+    private static IOException pipelineFailure(Throwable cause) {
+        if (cause instanceof UncheckedIOException) {
+            return ((UncheckedIOException) cause).getCause();
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IOException("Shipment pipeline failed", cause);
+    }
+
+    /**
+     * Batch of records passed from stage to stage of the pipeline. Each stage
+     * owns the batch between taking it from its queue and handing it on, and
+     * must not touch it afterwards.
+     */
+    private static final class PipelineBatch {
+        private final String[] lines;
+        private final BasicShipment[] shipments;
+        private final ShipmentResultBuffer results;
+        private int lineCount;
+        private int size;
+        private boolean last;
+
+        PipelineBatch(int batchSize) {
+            this.lines = new String[batchSize];
+            this.shipments = new BasicShipment[batchSize];
+            this.results = new ShipmentResultBuffer(batchSize);
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package service;
 
+import shipmentModel.PackageSize;
+import shipmentModel.ProviderRegistry;
+
 import java.util.Optional;
+import java.util.OptionalDouble;
 
 /**
  * Interface for providing shipment prices based on provider and size.
@@ -24,4 +28,90 @@ public interface ShipmentPriceProvider {
      * @return Optional containing the lowest price, or empty if size is invalid
      */
     Optional<Double> getLowestPrice(String size);
-}
\ No newline at end of file
+
+    /**
+     * Gets the id of a provider this price provider has prices for, without
+     * registering codes it does not know, so parsers can reject unknown
+     * providers before interning them. The default implementation accepts
+     * every provider.
+     *
+     * @param provider Shipping provider code
+     * @return Provider id from ProviderRegistry, or -1 for a provider without prices
+     */
+    default int findProviderId(String provider) {
+        return ProviderRegistry.idOf(provider);
+    }
+
+    /**
+     * Gets the price for a shipment based on provider id and size.
+     * The default implementation delegates to the code based lookup;
+     * implementations should override it to avoid the string round trip.
+     *
+     * @param providerId Provider id from ProviderRegistry
+     * @param size Package size
+     * @return Price for the specified provider and size, or -1 if there is none
+     */
+    default double getPrice(int providerId, PackageSize size) {
+        return getPrice(ProviderRegistry.codeOf(providerId), size.getCode());
+    }
+
+    /**
+     * Gets the lowest price available for a package size across all providers
+     * without boxing.
+     *
+     * @param size Package size
+     * @return The lowest price, or empty if no provider prices the size
+     */
+    default OptionalDouble getLowestPrice(PackageSize size) {
+        Optional<Double> lowestPrice = getLowestPrice(size.getCode());
+        return lowestPrice.isPresent() ? OptionalDouble.of(lowestPrice.get()) : OptionalDouble.empty();
+    }
+
+    /**
+     * Gets the price for a shipment in cents.
+     *
+     * @param providerId Provider id from ProviderRegistry
+     * @param size Package size
+     * @return Price in cents, or Money.NO_PRICE if there is none
+     */
+    default long getPriceCents(int providerId, PackageSize size) {
+        double price = getPrice(providerId, size);
+        return price < 0 ? Money.NO_PRICE : Money.toCents(price);
+    }
+
+    /**
+     * Gets the lowest price available for a package size across all providers in cents.
+     *
+     * @param size Package size
+     * @return The lowest price in cents, or Money.NO_PRICE if no provider prices the size
+     */
+    default long getLowestPriceCents(PackageSize size) {
+        OptionalDouble lowestPrice = getLowestPrice(size);
+        return lowestPrice.isPresent() ? Money.toCents(lowestPrice.getAsDouble()) : Money.NO_PRICE;
+    }
+
+    /**
+     * Gets the price for a shipment in cents in force on the shipment date.
+     * The default implementation ignores the date.
+     *
+     * @param providerId Provider id from ProviderRegistry
+     * @param size Package size
+     * @param date Packed shipment date from ShipmentDates
+     * @return Price in cents, or Money.NO_PRICE if there is none
+     */
+    default long getPriceCents(int providerId, PackageSize size, int date) {
+        return getPriceCents(providerId, size);
+    }
+
+    /**
+     * Gets the lowest price for a package size across all providers in cents,
+     * in force on the shipment date. The default implementation ignores the date.
+     *
+     * @param size Package size
+     * @param date Packed shipment date from ShipmentDates
+     * @return The lowest price in cents, or Money.NO_PRICE if no provider prices the size
+     */
+    default long getLowestPriceCents(PackageSize size, int date) {
+        return getLowestPriceCents(size);
+    }
+}
@@ -1,42 +1,131 @@
 package service;
 
-import java.util.HashMap;
+import shipmentModel.PackageSize;
+import shipmentModel.ProviderRegistry;
+import shipmentModel.ShipmentDates;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.TreeMap;
 
 /**
  * Service for managing shipping provider prices and retrieving
  * prices based on provider and package size.
  * Implements ShipmentPriceProvider interface.
+ * Prices are kept as a history of versions, each in force from its
+ * effective date until the next one. Every version is a dense matrix of
+ * cents indexed by provider id and size id, together with the lowest price
+ * of every size, so a dated lookup is a binary search over the effective
+ * dates followed by two array reads, however many providers and sizes the
+ * catalogue holds. The history is an immutable snapshot; changes
+ * build a new one and publish it with a single volatile write, so readers on
+ * any thread never lock and never see a partly updated table.
+ * Lookups without a shipment date use the version in force, by the service
+ * clock, when the prices were last replaced; it is resolved once per swap.
  */
 public class ShipmentPriceService implements ShipmentPriceProvider {
-    private final Map<String, ShippingProviderPricing> providerPrices = new HashMap<>();
+    /**
+     * Effective date of prices that apply to every shipment date.
+     */
+    public static final int EFFECTIVE_ALWAYS = 0;
+
+    private final Clock clock;
+    private volatile PriceTable priceTable;
 
     public ShipmentPriceService() {
+        this(Clock.systemDefaultZone());
+    }
+
+    /**
+     * Creates a price service that resolves undated lookups with a clock.
+     *
+     * @param clock Clock giving the date whose prices undated lookups use
+     */
+    public ShipmentPriceService(Clock clock) {
+        this.clock = clock;
+        this.priceTable = new PriceTable(new TreeMap<>(), today());
     }
 
     /**
      * Adds a provider and its pricing structure to the service.
+     * The provider gets the same prices in every price version.
      *
      * @param provider Provider code
      * @param shippingProviderPricing Pricing structure for the provider
      */
-    public void addProviderAndPrices(String provider, ShippingProviderPricing shippingProviderPricing) {
-        providerPrices.put(provider, shippingProviderPricing);
+    public synchronized void addProviderAndPrices(String provider, ShippingProviderPricing shippingProviderPricing) {
+        NavigableMap<Integer, Map<String, ShippingProviderPricing>> history = new TreeMap<>();
+        if (priceTable.effectiveDates.length == 0) {
+            history.put(EFFECTIVE_ALWAYS, Collections.emptyMap());
+        }
+        for (int i = 0; i < priceTable.effectiveDates.length; i++) {
+            history.put(priceTable.effectiveDates[i], priceTable.versions[i].providerPrices);
+        }
+        history.replaceAll((date, providerPrices) -> {
+            Map<String, ShippingProviderPricing> updated = new LinkedHashMap<>(providerPrices);
+            updated.put(provider, shippingProviderPricing);
+            return updated;
+        });
+        priceTable = new PriceTable(history, today());
+    }
+
+    /**
+     * Replaces all providers and prices at once with prices that apply to
+     * every shipment date. Lookups running concurrently see either the old
+     * or the new prices, never a mix.
+     *
+     * @param providerPrices Pricing structure of every provider, by provider code
+     */
+    public void replacePrices(Map<String, ShippingProviderPricing> providerPrices) {
+        NavigableMap<Integer, Map<String, ShippingProviderPricing>> history = new TreeMap<>();
+        history.put(EFFECTIVE_ALWAYS, providerPrices);
+        replacePriceHistory(history);
+    }
+
+    /**
+     * Replaces all providers and prices at once with a price history. Each
+     * version is in force from its effective date until the next version;
+     * shipments dated before the first version have no price.
+     *
+     * @param priceHistory Pricing structure of every provider by provider code, keyed by
+     *                     packed effective date or EFFECTIVE_ALWAYS
+     */
+    public synchronized void replacePriceHistory(NavigableMap<Integer, Map<String, ShippingProviderPricing>> priceHistory) {
+        priceTable = new PriceTable(priceHistory, today());
     }
 
     /**
-     * Gets the pricing structure for a specific provider.
+     * Gets the pricing structure for a specific provider in force on the current date.
      *
      * @param provider Provider code
      * @return Pricing structure for the provider
      */
     public ShippingProviderPricing getProviderPrice(String provider) {
-        return providerPrices.get(provider);
+        return currentVersion().providerPrices.get(provider);
+    }
+
+    /**
+     * Gets the id of a provider that has prices in any version, without
+     * registering unknown codes.
+     *
+     * @param provider Provider code
+     * @return Provider id, or -1 if the provider has no prices
+     */
+    @Override
+    public int findProviderId(String provider) {
+        int providerId = ProviderRegistry.find(provider);
+        return providerId >= 0 && priceTable.hasProvider(providerId) ? providerId : -1;
     }
 
     /**
-     * Gets the price for a specific provider and package size.
+     * Gets the price for a specific provider and package size in force on the current date.
      *
      * @param provider Provider code
      * @param size Package size code
@@ -44,66 +133,223 @@ public class ShipmentPriceService implements ShipmentPriceProvider {
      */
     @Override
     public double getPrice(String provider, String size) {
-        ShippingProviderPricing shippingProviderPricing = providerPrices.get(provider);
-        if (shippingProviderPricing == null) {
-            return -1; // Invalid provider
+        int providerId = ProviderRegistry.find(provider);
+        PackageSize packageSize = PackageSize.fromCode(size);
+        if (providerId < 0 || packageSize == null) {
+            return Money.NO_PRICE; // Invalid provider or size
         }
+        return getPrice(providerId, packageSize);
+    }
 
-        switch (size) {
-            case "L": return shippingProviderPricing.getLarge();
-            case "M": return shippingProviderPricing.getMedium();
-            case "S": return shippingProviderPricing.getSmall();
-            default: return -1; // Invalid size
-        }
+    /**
+     * Gets the price for a provider id and package size in force on the current date.
+     *
+     * @param providerId Provider id from ProviderRegistry
+     * @param size Package size
+     * @return Price for the specified provider and size, or -1 for an unknown provider
+     */
+    @Override
+    public double getPrice(int providerId, PackageSize size) {
+        long priceCents = currentVersion().priceCents(providerId, size);
+        return priceCents == Money.NO_PRICE ? Money.NO_PRICE : Money.toAmount(priceCents);
+    }
+
+    /**
+     * Gets the price in cents for a provider id and package size in force on the current date.
+     *
+     * @param providerId Provider id from ProviderRegistry
+     * @param size Package size
+     * @return Price in cents, or Money.NO_PRICE for an unknown provider
+     */
+    @Override
+    public long getPriceCents(int providerId, PackageSize size) {
+        return currentVersion().priceCents(providerId, size);
+    }
+
+    /**
+     * Gets the price in cents for a provider id and package size in force on a date.
+     *
+     * @param providerId Provider id from ProviderRegistry
+     * @param size Package size
+     * @param date Packed shipment date
+     * @return Price in cents, or Money.NO_PRICE for an unknown provider or a date before all prices
+     */
+    @Override
+    public long getPriceCents(int providerId, PackageSize size, int date) {
+        return priceTable.versionAt(date).priceCents(providerId, size);
     }
 
     /**
      * Gets the lowest price available for a specific package size
-     * across all providers.
+     * across all providers, in force on the current date.
      *
      * @param size Package size code
      * @return Optional containing the lowest price, or empty if size is invalid
      */
     @Override
     public Optional<Double> getLowestPrice(String size) {
-        if (!isValidSize(size)) {
+        PackageSize packageSize = PackageSize.fromCode(size);
+        if (packageSize == null) {
             return Optional.empty();
         }
+        return currentVersion().boxedLowestPrice(packageSize);
+    }
+
+    /**
+     * Gets the cached lowest price for a package size across all providers, in force on the current date.
+     *
+     * @param size Package size
+     * @return The lowest price, or empty if there are no providers
+     */
+    @Override
+    public OptionalDouble getLowestPrice(PackageSize size) {
+        return currentVersion().lowestPrice(size);
+    }
+
+    /**
+     * Gets the cached lowest price in cents for a package size across all providers, in force on the current date.
+     *
+     * @param size Package size
+     * @return The lowest price in cents, or Money.NO_PRICE if there are no providers
+     */
+    @Override
+    public long getLowestPriceCents(PackageSize size) {
+        return currentVersion().lowestPriceCents(size);
+    }
+
+    /**
+     * Gets the cached lowest price in cents for a package size across all providers, in force on a date.
+     *
+     * @param size Package size
+     * @param date Packed shipment date
+     * @return The lowest price in cents, or Money.NO_PRICE if there are no prices on that date
+     */
+    @Override
+    public long getLowestPriceCents(PackageSize size, int date) {
+        return priceTable.versionAt(date).lowestPriceCents(size);
+    }
+
+    private PriceVersion currentVersion() {
+        return priceTable.current;
+    }
+
+    private int today() {
+        LocalDate today = LocalDate.now(clock);
+        return ShipmentDates.of(today.getYear(), today.getMonthValue(), today.getDayOfMonth());
+    }
+
+    /**
+     * Immutable snapshot of all price versions, sorted by effective date.
+     */
+    private static final class PriceTable {
+        private static final PriceVersion NO_PRICES = new PriceVersion(Collections.emptyMap());
 
-        Double lowestPrice = null;
-
-        for (ShippingProviderPricing shippingProviderPricing : providerPrices.values()) {
-            double priceForSize;
-
-            switch (size) {
-                case "S":
-                    priceForSize = shippingProviderPricing.getSmall();
-                    break;
-                case "M":
-                    priceForSize = shippingProviderPricing.getMedium();
-                    break;
-                case "L":
-                    priceForSize = shippingProviderPricing.getLarge();
-                    break;
-                default:
-                    continue;
+        private final int[] effectiveDates;
+        private final PriceVersion[] versions;
+        private final boolean[] providers;
+        private final PriceVersion current;
+
+        PriceTable(NavigableMap<Integer, Map<String, ShippingProviderPricing>> priceHistory, int today) {
+            this.effectiveDates = new int[priceHistory.size()];
+            this.versions = new PriceVersion[priceHistory.size()];
+            int i = 0;
+            int providerCount = 0;
+            for (Map.Entry<Integer, Map<String, ShippingProviderPricing>> entry : priceHistory.entrySet()) {
+                effectiveDates[i] = entry.getKey();
+                versions[i] = new PriceVersion(entry.getValue());
+                providerCount = Math.max(providerCount, versions[i].prices.length);
+                i++;
             }
 
-            if (lowestPrice == null || priceForSize < lowestPrice) {
-                lowestPrice = priceForSize;
+            this.providers = new boolean[providerCount];
+            for (PriceVersion version : versions) {
+                for (int providerId = 0; providerId < version.prices.length; providerId++) {
+                    providers[providerId] |= version.prices[providerId] != PriceVersion.NO_ROW;
+                }
             }
+            this.current = versionAt(today);
+        }
+
+        boolean hasProvider(int providerId) {
+            return providerId < providers.length && providers[providerId];
         }
 
-        return Optional.ofNullable(lowestPrice);
+        PriceVersion versionAt(int date) {
+            if (versions.length == 1 && date >= effectiveDates[0]) {
+                return versions[0];
+            }
+            int index = Arrays.binarySearch(effectiveDates, date);
+            if (index < 0) {
+                index = -index - 2;
+            }
+            return index >= 0 ? versions[index] : NO_PRICES;
+        }
     }
 
     /**
-     * Checks if a size code is valid.
-     *
-     * @param size Size code to check
-     * @return true if size is valid, false otherwise
+     * Immutable prices of one version in cents, indexed by provider id and size id,
+     * with the lowest price of every size across providers.
      */
-    private boolean isValidSize(String size) {
-        return "S".equals(size) || "M".equals(size) || "L".equals(size);
+    private static final class PriceVersion {
+        private static final long[] NO_ROW = new long[0];
+
+        private final Map<String, ShippingProviderPricing> providerPrices;
+        private final long[][] prices;
+        private final long[] lowestPriceCents;
+
+        PriceVersion(Map<String, ShippingProviderPricing> providerPrices) {
+            this.providerPrices = Collections.unmodifiableMap(new LinkedHashMap<>(providerPrices));
+            PackageSize[] sizes = PackageSize.values();
+            long[] lowest = new long[sizes.length];
+            Arrays.fill(lowest, Money.NO_PRICE);
+
+            long[][] matrix = new long[0][];
+            for (Map.Entry<String, ShippingProviderPricing> entry : providerPrices.entrySet()) {
+                int providerId = ProviderRegistry.idOf(entry.getKey());
+                if (providerId >= matrix.length) {
+                    matrix = Arrays.copyOf(matrix, providerId + 1);
+                }
+
+                long[] row = new long[sizes.length];
+                for (PackageSize size : sizes) {
+                    int i = size.getId();
+                    row[i] = entry.getValue().getPriceCents(size);
+                    if (row[i] != Money.NO_PRICE && (lowest[i] == Money.NO_PRICE || row[i] < lowest[i])) {
+                        lowest[i] = row[i];
+                    }
+                }
+                matrix[providerId] = row;
+            }
+            for (int i = 0; i < matrix.length; i++) {
+                if (matrix[i] == null) {
+                    matrix[i] = NO_ROW;
+                }
+            }
+
+            this.prices = matrix;
+            this.lowestPriceCents = lowest;
+        }
+
+        long priceCents(int providerId, PackageSize size) {
+            if (providerId >= prices.length) {
+                return Money.NO_PRICE; // Invalid provider
+            }
+            long[] row = prices[providerId];
+            return size.getId() < row.length ? row[size.getId()] : Money.NO_PRICE;
+        }
+
+        long lowestPriceCents(PackageSize size) {
+            return size.getId() < lowestPriceCents.length ? lowestPriceCents[size.getId()] : Money.NO_PRICE;
+        }
+
+        OptionalDouble lowestPrice(PackageSize size) {
+            long cents = lowestPriceCents(size);
+            return cents != Money.NO_PRICE ? OptionalDouble.of(Money.toAmount(cents)) : OptionalDouble.empty();
+        }
+
+        Optional<Double> boxedLowestPrice(PackageSize size) {
+            long cents = lowestPriceCents(size);
+            return cents != Money.NO_PRICE ? Optional.of(Money.toAmount(cents)) : Optional.empty();
+        }
     }
-}
\ No newline at end of file
+}
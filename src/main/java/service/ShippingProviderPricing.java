@@ -1,12 +1,19 @@
 package service;
 
+import shipmentModel.PackageSize;
+
+import java.util.Arrays;
+import java.util.Map;
+
 /**
  * Stores pricing information for a shipping provider based on package size.
+ * Prices are kept as whole cents indexed by size id; amounts are rounded to
+ * the nearest cent. A provider does not have to offer every size.
+ * Immutable, so a pricing table can be shared between threads and replaced
+ * as a whole instead of being changed in place.
  */
 public class ShippingProviderPricing {
-    private double small;
-    private double medium;
-    private double large;
+    private final long[] pricesCents;
 
     /**
      * Creates a new pricing structure for a shipping provider.
@@ -16,32 +23,56 @@ public class ShippingProviderPricing {
      * @param large Price for large packages
      */
     public ShippingProviderPricing(double small, double medium, double large) {
-        this.small = small;
-        this.medium = medium;
-        this.large = large;
+        this.pricesCents = new long[] {Money.toCents(small), Money.toCents(medium), Money.toCents(large)};
+    }
+
+    /**
+     * Creates a new pricing structure for a shipping provider from a price per size.
+     *
+     * @param prices Price of every size the provider offers
+     */
+    public ShippingProviderPricing(Map<PackageSize, Double> prices) {
+        int length = 0;
+        for (PackageSize size : prices.keySet()) {
+            length = Math.max(length, size.getId() + 1);
+        }
+        this.pricesCents = new long[length];
+        Arrays.fill(pricesCents, Money.NO_PRICE);
+        for (Map.Entry<PackageSize, Double> entry : prices.entrySet()) {
+            pricesCents[entry.getKey().getId()] = Money.toCents(entry.getValue());
+        }
     }
 
     public double getSmall() {
-        return small;
+        return getPrice(PackageSize.S);
     }
 
     public double getMedium() {
-        return medium;
+        return getPrice(PackageSize.M);
     }
 
     public double getLarge() {
-        return large;
+        return getPrice(PackageSize.L);
     }
 
-    public void setSmall(double small) {
-        this.small = small;
-    }
-
-    public void setMedium(double medium) {
-        this.medium = medium;
+    /**
+     * Gets the price for a package size.
+     *
+     * @param size Package size
+     * @return Price for the size, or -1 if the provider does not offer it
+     */
+    public double getPrice(PackageSize size) {
+        long priceCents = getPriceCents(size);
+        return priceCents == Money.NO_PRICE ? Money.NO_PRICE : Money.toAmount(priceCents);
     }
 
-    public void setLarge(double large) {
-        this.large = large;
+    /**
+     * Gets the price for a package size in cents.
+     *
+     * @param size Package size
+     * @return Price for the size in cents, or Money.NO_PRICE if the provider does not offer it
+     */
+    public long getPriceCents(PackageSize size) {
+        return size.getId() < pricesCents.length ? pricesCents[size.getId()] : Money.NO_PRICE;
     }
-}
\ No newline at end of file
+}
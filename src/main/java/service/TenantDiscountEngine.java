@@ -0,0 +1,282 @@
+package service;
+
+import inputAndOutput.ShipmentResult;
+import inputAndOutput.ShipmentResultBuffer;
+import inputAndOutput.ShipmentResultFormatter;
+import shipmentModel.BasicShipment;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calculates discounts for many tenants in one process.
+ * Every tenant has its own shard holding its price provider, rules and
+ * discount tracker, i.e. its own calculator. Shards are spread over a fixed
+ * pool of single-thread workers and a tenant always runs on the same worker,
+ * so each tenant's shipments are processed one at a time in submission
+ * order, exactly as a dedicated sequential calculator would, while
+ * thousands of tenants share the workers. A tenant's discount state,
+ * including its rule counters, lives in its own tracker, which no other
+ * tenant may use. Provider and package size codes are interned process-wide,
+ * but they only name providers and sizes: which of them a tenant accepts is
+ * decided by its own prices, so a code priced by one tenant is still
+ * ignored for a tenant without a price for it. For throughput, submit
+ * shipments in batches, which cost one task per batch and store their
+ * results in a reusable buffer instead of an object per shipment.
+ */
+public class TenantDiscountEngine implements AutoCloseable {
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 30_000;
+
+    private final ExecutorService[] workers;
+    private final long shutdownTimeoutMillis;
+    private final Map<String, TenantShard> shards = new ConcurrentHashMap<>();
+    // Trackers of the registered tenants, guarded by the engine's lock
+    private final Set<DiscountStateTracker> trackers = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * Creates an engine with a fixed number of worker threads.
+     *
+     * @param workerCount Number of worker threads shared by all tenants
+     */
+    public TenantDiscountEngine(int workerCount) {
+        this(workerCount, SHUTDOWN_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Creates an engine with a fixed number of worker threads and the time
+     * close waits for queued shipments.
+     *
+     * @param workerCount Number of worker threads shared by all tenants
+     * @param shutdownTimeoutMillis Milliseconds close waits before cancelling queued shipments
+     */
+    TenantDiscountEngine(int workerCount, long shutdownTimeoutMillis) {
+        if (workerCount <= 0) {
+            throw new IllegalArgumentException("Worker count must be positive: " + workerCount);
+        }
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+        this.workers = new ExecutorService[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            String name = "tenant-discount-" + i;
+            workers[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Registers a tenant with its own pricing, rules and monthly discount cap,
+     * replacing any earlier registration of the tenant.
+     *
+     * @param tenantId Tenant identifier
+     * @param shipmentPriceProvider Provider of the tenant's prices
+     * @param rules Tenant's discount rules
+     * @param monthlyDiscountCap Tenant's maximum discount per month
+     */
+    public void registerTenant(String tenantId, ShipmentPriceProvider shipmentPriceProvider,
+                               List<DiscountContractRule> rules, double monthlyDiscountCap) {
+        registerTenant(tenantId, new ShipmentDiscountCalculator(shipmentPriceProvider,
+                new DiscountStateTracker(monthlyDiscountCap), List.copyOf(rules)));
+    }
+
+    /**
+     * Registers a tenant with a ready calculator, replacing any earlier
+     * registration of the tenant. The calculator's discount tracker must not
+     * be used by other tenants.
+     *
+     * @param tenantId Tenant identifier
+     * @param shipmentDiscountCalculator Tenant's calculator
+     * @throws IllegalArgumentException If another tenant uses the calculator's discount tracker
+     */
+    public synchronized void registerTenant(String tenantId, ShipmentDiscountCalculator shipmentDiscountCalculator) {
+        DiscountStateTracker tracker = shipmentDiscountCalculator.getDiscountStateTracker();
+        TenantShard previous = shards.get(tenantId);
+        DiscountStateTracker previousTracker = previous != null ? previous.calculator.getDiscountStateTracker() : null;
+        if (tracker != previousTracker && trackers.contains(tracker)) {
+            throw new IllegalArgumentException("Discount state of tenant " + tenantId + " is already used by another tenant");
+        }
+        int worker = Math.floorMod(tenantId.hashCode(), workers.length);
+        shards.put(tenantId, new TenantShard(shipmentDiscountCalculator, workers[worker]));
+        trackers.remove(previousTracker);
+        trackers.add(tracker);
+    }
+
+    /**
+     * Checks whether a tenant is registered.
+     *
+     * @param tenantId Tenant identifier
+     * @return true if the tenant has a shard
+     */
+    public boolean hasTenant(String tenantId) {
+        return shards.containsKey(tenantId);
+    }
+
+    /**
+     * Queues a shipment on its tenant's shard. Shipments of one tenant are
+     * calculated in the order they are submitted, so each tenant's
+     * shipments should be submitted chronologically.
+     *
+     * @param tenantId Tenant the shipment belongs to
+     * @param shipment Shipment to calculate
+     * @return Future completed with the formatted result
+     * @throws IllegalArgumentException If the tenant is not registered
+     * @throws java.util.concurrent.RejectedExecutionException If the engine is closed
+     */
+    public CompletableFuture<ShipmentResultFormatter> submit(String tenantId, BasicShipment shipment) {
+        TenantShard shard = shard(tenantId);
+        ShipmentTask task = new ShipmentTask(shard, shipment);
+        shard.worker.execute(task);
+        return task;
+    }
+
+    /**
+     * Queues a batch of shipments on its tenant's shard as a single task.
+     * The result of each shipment is stored in the buffer at the shipment's
+     * index in the batch, so the batch allocates nothing per shipment. The
+     * buffer must not be used until the future completes; it can then be
+     * reused for the next batch. Batches and single shipments of one tenant
+     * are calculated in the order they are submitted.
+     *
+     * @param tenantId Tenant the shipments belong to
+     * @param shipments Shipments to calculate, in chronological order
+     * @param results Buffer receiving the results, at least as large as the batch
+     * @return Future completed with the filled in buffer
+     * @throws IllegalArgumentException If the tenant is not registered or the buffer is too small
+     * @throws java.util.concurrent.RejectedExecutionException If the engine is closed
+     */
+    public CompletableFuture<ShipmentResultBuffer> submitBatch(String tenantId, List<? extends BasicShipment> shipments,
+                                                               ShipmentResultBuffer results) {
+        if (shipments.size() > results.capacity()) {
+            throw new IllegalArgumentException("Batch of " + shipments.size()
+                    + " shipments does not fit a result buffer of " + results.capacity());
+        }
+        TenantShard shard = shard(tenantId);
+        BatchTask task = new BatchTask(shard, shipments, results);
+        shard.worker.execute(task);
+        return task;
+    }
+
+    /**
+     * Stops accepting shipments and waits for queued shipments to finish.
+     * Shipments still queued when the shutdown timeout runs out, or when the
+     * waiting thread is interrupted, are cancelled, so their futures
+     * complete with a CancellationException instead of never completing.
+     */
+    @Override
+    public void close() {
+        for (ExecutorService worker : workers) {
+            worker.shutdown();
+        }
+        boolean terminated = true;
+        try {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shutdownTimeoutMillis);
+            for (ExecutorService worker : workers) {
+                terminated &= worker.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            }
+        } catch (InterruptedException e) {
+            terminated = false;
+            Thread.currentThread().interrupt();
+        }
+        if (!terminated) {
+            for (ExecutorService worker : workers) {
+                for (Runnable task : worker.shutdownNow()) {
+                    ((ShardTask<?>) task).cancel(false);
+                }
+            }
+        }
+    }
+
+    private TenantShard shard(String tenantId) {
+        TenantShard shard = shards.get(tenantId);
+        if (shard == null) {
+            throw new IllegalArgumentException("Unknown tenant: " + tenantId);
+        }
+        return shard;
+    }
+
+    /**
+     * A tenant's calculator, the worker it runs on and a result reused by
+     * every task of the tenant, which only ever runs on that worker.
+     */
+    private static final class TenantShard {
+        private final ShipmentDiscountCalculator calculator;
+        private final ExecutorService worker;
+        private final ShipmentResult result = new ShipmentResult();
+
+        TenantShard(ShipmentDiscountCalculator calculator, ExecutorService worker) {
+            this.calculator = calculator;
+            this.worker = worker;
+        }
+    }
+
+    /**
+     * A future that is also the task calculating its value on the tenant's
+     * worker, so a submission allocates a single object for both.
+     */
+    private abstract static class ShardTask<T> extends CompletableFuture<T> implements Runnable {
+        final TenantShard shard;
+
+        ShardTask(TenantShard shard) {
+            this.shard = shard;
+        }
+
+        @Override
+        public void run() {
+            if (isDone()) {
+                return;
+            }
+            try {
+                complete(calculate());
+            } catch (Throwable e) {
+                // Errors too, so callers waiting on the future never hang
+                completeExceptionally(e);
+            }
+        }
+
+        abstract T calculate();
+    }
+
+    private static final class ShipmentTask extends ShardTask<ShipmentResultFormatter> {
+        private final BasicShipment shipment;
+
+        ShipmentTask(TenantShard shard, BasicShipment shipment) {
+            super(shard);
+            this.shipment = shipment;
+        }
+
+        @Override
+        ShipmentResultFormatter calculate() {
+            ShipmentResult result = shard.calculator.calculateDiscount(shipment, shard.result);
+            return ShipmentResultFormatter.fromCents(shipment, result.getOriginalPriceCents(),
+                    result.getFinalPriceCents(), result.getDiscountCents());
+        }
+    }
+
+    private static final class BatchTask extends ShardTask<ShipmentResultBuffer> {
+        private final List<? extends BasicShipment> shipments;
+        private final ShipmentResultBuffer results;
+
+        BatchTask(TenantShard shard, List<? extends BasicShipment> shipments, ShipmentResultBuffer results) {
+            super(shard);
+            this.shipments = shipments;
+            this.results = results;
+        }
+
+        @Override
+        ShipmentResultBuffer calculate() {
+            for (int i = 0; i < shipments.size(); i++) {
+                results.set(i, shard.calculator.calculateDiscount(shipments.get(i), shard.result));
+            }
+            return results;
+        }
+    }
+}
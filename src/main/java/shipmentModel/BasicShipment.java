@@ -3,16 +3,26 @@ package shipmentModel;
 /**
  * Represents a basic shipment with date and shipping provider information.
  * Serves as a base class for more specialized shipment types.
+ * Lines that cannot be priced are kept as basic shipments with their text
+ * unchanged, so they can be reported as they were read. Immutable.
  */
 public class BasicShipment {
-    private String date;
-    private String shippingProvider;
+    private final String date;
+    private final String shippingProvider;
 
     public BasicShipment(String date, String shippingProvider) {
         this.date = date;
         this.shippingProvider = shippingProvider;
     }
 
+    /**
+     * Constructor for subclasses that store their fields in another form
+     * and override the getters.
+     */
+    protected BasicShipment() {
+        this(null, null);
+    }
+
     public String getShippingProvider() {
         return shippingProvider;
     }
@@ -20,12 +30,4 @@ public class BasicShipment {
     public String getDate() {
         return date;
     }
-
-    public void setShippingProvider(String shippingProvider) {
-        this.shippingProvider = shippingProvider;
-    }
-
-    public void setDate(String date) {
-        this.date = date;
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,120 @@
+package shipmentModel;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Package sizes supported by shipping providers.
+ * The catalogue is open: S, M and L always exist with ids 0, 1 and 2, and
+ * further size tiers are registered as they are configured, each getting the
+ * next dense id. Sizes are canonical, so they can be compared with ==.
+ * Thread-safe; looking up a size never locks.
+ */
+public final class PackageSize {
+    private static final ConcurrentHashMap<String, PackageSize> BY_CODE = new ConcurrentHashMap<>();
+    private static volatile PackageSize[] byId = new PackageSize[0];
+    private static volatile PackageSize[] bySingleChar = new PackageSize[128];
+
+    public static final PackageSize S = register("S");
+    public static final PackageSize M = register("M");
+    public static final PackageSize L = register("L");
+
+    private final String code;
+    private final int id;
+
+    private PackageSize(String code, int id) {
+        this.code = code;
+        this.id = id;
+    }
+
+    /**
+     * Gets the size with a code, adding it to the catalogue if it is new.
+     *
+     * @param code Size code
+     * @return Canonical size for the code
+     */
+    public static PackageSize register(String code) {
+        PackageSize size = BY_CODE.get(code);
+        return size != null ? size : add(code);
+    }
+
+    /**
+     * Looks up a size by its code.
+     *
+     * @param code Size code (S, M, L or a registered tier)
+     * @return Matching size, or null if the code is not in the catalogue
+     */
+    public static PackageSize fromCode(String code) {
+        return BY_CODE.get(code);
+    }
+
+    /**
+     * Looks up a size by its single character code.
+     *
+     * @param code Size code character
+     * @return Matching size, or null if the code is not in the catalogue
+     */
+    public static PackageSize fromCode(int code) {
+        return code >= 0 && code < 128 ? bySingleChar[code] : null;
+    }
+
+    /**
+     * Looks up a size by its id.
+     *
+     * @param id Id of the size
+     * @return Size with that id
+     */
+    public static PackageSize fromId(int id) {
+        return byId[id];
+    }
+
+    /**
+     * Gets the number of sizes in the catalogue. Every id is smaller than this count.
+     *
+     * @return Number of registered sizes
+     */
+    public static int count() {
+        return byId.length;
+    }
+
+    /**
+     * Gets all sizes in id order.
+     *
+     * @return New array of all registered sizes
+     */
+    public static PackageSize[] values() {
+        return byId.clone();
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return code;
+    }
+
+    private static synchronized PackageSize add(String code) {
+        PackageSize size = BY_CODE.get(code);
+        if (size != null) {
+            return size;
+        }
+
+        size = new PackageSize(code, byId.length);
+        PackageSize[] grown = Arrays.copyOf(byId, size.id + 1);
+        grown[size.id] = size;
+        byId = grown;
+        if (code.length() == 1 && code.charAt(0) < 128) {
+            PackageSize[] singleChar = bySingleChar.clone();
+            singleChar[code.charAt(0)] = size;
+            bySingleChar = singleChar;
+        }
+        BY_CODE.put(code, size);
+        return size;
+    }
+}
@@ -0,0 +1,74 @@
+package shipmentModel;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns shipping provider codes and assigns each a dense integer id.
+ * Ids are assigned on first sight, never change and are shared by all
+ * shipments, so shipments store an int instead of their own provider string.
+ * Thread-safe; looking up a code by id never locks.
+ */
+public final class ProviderRegistry {
+    private static final ConcurrentHashMap<String, Integer> IDS = new ConcurrentHashMap<>();
+    private static volatile String[] codes = new String[0];
+
+    private ProviderRegistry() {
+    }
+
+    /**
+     * Gets the id of a provider code, assigning a new one if the code has not been seen before.
+     *
+     * @param code Provider code
+     * @return Dense id of the provider
+     */
+    public static int idOf(String code) {
+        Integer id = IDS.get(code);
+        return id != null ? id : register(code);
+    }
+
+    /**
+     * Gets the id of a provider code without registering it.
+     *
+     * @param code Provider code
+     * @return Dense id of the provider, or -1 if the code has not been seen
+     */
+    public static int find(String code) {
+        Integer id = IDS.get(code);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Gets the provider code for an id.
+     *
+     * @param id Provider id returned by idOf
+     * @return Interned provider code
+     */
+    public static String codeOf(int id) {
+        return codes[id];
+    }
+
+    /**
+     * Gets the number of providers registered so far.
+     * Every id is smaller than this count.
+     *
+     * @return Number of registered providers
+     */
+    public static int count() {
+        return codes.length;
+    }
+
+    private static synchronized int register(String code) {
+        Integer id = IDS.get(code);
+        if (id != null) {
+            return id;
+        }
+
+        int newId = codes.length;
+        String[] grown = Arrays.copyOf(codes, newId + 1);
+        grown[newId] = code;
+        codes = grown;
+        IDS.put(code, newId);
+        return newId;
+    }
+}
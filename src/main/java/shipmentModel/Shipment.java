@@ -3,27 +3,90 @@ package shipmentModel;
 /**
  * Extends ShipmentModel.BasicShipment with size information (S, M, L).
  * Represents a standard shipment with all required details.
+ * Fields are stored as primitives: a packed date with its precomputed
+ * month key, a canonical package size and an interned provider id. Immutable.
  */
 public class Shipment extends BasicShipment {
-    private String size;
+    private final int date;
+    private final int monthKey;
+    private final PackageSize size;
+    private final int providerId;
 
     /**
      * Creates a new ShipmentModel.Shipment with date, size, and provider.
      *
      * @param shippingDate Date of shipment in YYYY-MM-DD format
-     * @param size Size of package (S, M, L)
+     * @param size Size of package (S, M, L or a registered tier)
      * @param shippingProvider Provider code (LP, MR)
+     * @throws IllegalArgumentException If the date or size is invalid
      */
     public Shipment(String shippingDate, String size, String shippingProvider) {
-        super(shippingDate, shippingProvider);
+        this(parseDate(shippingDate), parseSize(size), ProviderRegistry.idOf(shippingProvider));
+    }
+
+    /**
+     * Creates a new ShipmentModel.Shipment from already decoded fields.
+     *
+     * @param date Packed date from ShipmentDates
+     * @param size Size of package
+     * @param providerId Provider id from ProviderRegistry
+     */
+    public Shipment(int date, PackageSize size, int providerId) {
+        this.date = date;
+        this.monthKey = ShipmentDates.monthKey(date);
         this.size = size;
+        this.providerId = providerId;
+    }
+
+    /**
+     * Gets the date in YYYY-MM-DD format. Creates a new string on every call;
+     * use getPackedDate on hot paths.
+     *
+     * @return Formatted date
+     */
+    @Override
+    public String getDate() {
+        return ShipmentDates.format(date);
+    }
+
+    @Override
+    public String getShippingProvider() {
+        return ProviderRegistry.codeOf(providerId);
     }
 
     public String getSize() {
+        return size.getCode();
+    }
+
+    public int getPackedDate() {
+        return date;
+    }
+
+    public int getMonthKey() {
+        return monthKey;
+    }
+
+    public PackageSize getPackageSize() {
         return size;
     }
 
-    public void setSize(String size) {
-        this.size = size;
+    public int getProviderId() {
+        return providerId;
+    }
+
+    private static int parseDate(String shippingDate) {
+        int date = ShipmentDates.parse(shippingDate);
+        if (date == ShipmentDates.INVALID) {
+            throw new IllegalArgumentException("Invalid shipment date: " + shippingDate);
+        }
+        return date;
+    }
+
+    private static PackageSize parseSize(String size) {
+        PackageSize packageSize = PackageSize.fromCode(size);
+        if (packageSize == null) {
+            throw new IllegalArgumentException("Invalid package size: " + size);
+        }
+        return packageSize;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,181 @@
+package shipmentModel;
+
+import java.time.LocalDate;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Utility methods for shipment dates packed into a single int as
+ * year * 10000 + month * 100 + day, and for month keys, which number
+ * calendar months consecutively as year * 12 + month - 1.
+ */
+public final class ShipmentDates {
+    public static final int INVALID = -1;
+
+    private static final int[] DAYS_IN_MONTH = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+    private static final ConcurrentHashMap<Integer, String> MONTH_LABELS = new ConcurrentHashMap<>();
+
+    private ShipmentDates() {
+    }
+
+    /**
+     * Packs a calendar date after checking that it exists.
+     *
+     * @param year Year from 0 to 9999
+     * @param month Month from 1 to 12
+     * @param day Day of the month
+     * @return Packed date, or INVALID if there is no such date
+     */
+    public static int of(int year, int month, int day) {
+        if (year < 0 || year > 9999 || month < 1 || month > 12 || day < 1) {
+            return INVALID;
+        }
+        int daysInMonth = month == 2 && isLeapYear(year) ? 29 : DAYS_IN_MONTH[month - 1];
+        if (day > daysInMonth) {
+            return INVALID;
+        }
+        return year * 10000 + month * 100 + day;
+    }
+
+    /**
+     * Parses a date in strict YYYY-MM-DD format.
+     *
+     * @param text Text to parse
+     * @return Packed date, or INVALID if the text is not a valid date
+     */
+    public static int parse(CharSequence text) {
+        if (text.length() != 10 || text.charAt(4) != '-' || text.charAt(7) != '-') {
+            return INVALID;
+        }
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 7);
+        int day = digits(text, 8, 10);
+        if (year < 0 || month < 0 || day < 0) {
+            return INVALID;
+        }
+        return of(year, month, day);
+    }
+
+    public static int year(int date) {
+        return date / 10000;
+    }
+
+    public static int month(int date) {
+        return date / 100 % 100;
+    }
+
+    public static int day(int date) {
+        return date % 100;
+    }
+
+    /**
+     * Gets the month key of a packed date.
+     *
+     * @param date Packed date
+     * @return Consecutive number of the calendar month
+     */
+    public static int monthKey(int date) {
+        return year(date) * 12 + month(date) - 1;
+    }
+
+    /**
+     * Parses a month in strict YYYY-MM format into its month key.
+     *
+     * @param text Text to parse
+     * @return Month key, or INVALID if the text is not a valid month
+     */
+    public static int parseMonth(CharSequence text) {
+        if (text.length() != 7 || text.charAt(4) != '-') {
+            return INVALID;
+        }
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 7);
+        if (year < 0 || month < 1 || month > 12) {
+            return INVALID;
+        }
+        return year * 12 + month - 1;
+    }
+
+    /**
+     * Gets the YYYY-MM label of a month key. Labels are cached, so repeated
+     * calls for the same month return the same string.
+     *
+     * @param monthKey Month key
+     * @return Month in format YYYY-MM
+     */
+    public static String monthLabel(int monthKey) {
+        return MONTH_LABELS.computeIfAbsent(monthKey, key -> {
+            StringBuilder label = new StringBuilder(7);
+            appendDigits(label, key / 12, 4);
+            label.append('-');
+            appendDigits(label, key % 12 + 1, 2);
+            return label.toString();
+        });
+    }
+
+    /**
+     * Appends a packed date in YYYY-MM-DD format.
+     *
+     * @param out Builder to append to
+     * @param date Packed date
+     * @return The same builder
+     */
+    public static StringBuilder appendTo(StringBuilder out, int date) {
+        appendDigits(out, year(date), 4).append('-');
+        appendDigits(out, month(date), 2).append('-');
+        return appendDigits(out, day(date), 2);
+    }
+
+    /**
+     * Formats a packed date in YYYY-MM-DD format.
+     *
+     * @param date Packed date
+     * @return Formatted date
+     */
+    public static String format(int date) {
+        return appendTo(new StringBuilder(10), date).toString();
+    }
+
+    /**
+     * Converts a packed date to a day count since 1970-01-01.
+     *
+     * @param date Packed date
+     * @return Epoch day
+     */
+    public static long toEpochDay(int date) {
+        return LocalDate.of(year(date), month(date), day(date)).toEpochDay();
+    }
+
+    /**
+     * Converts a day count since 1970-01-01 to a packed date.
+     *
+     * @param epochDay Epoch day
+     * @return Packed date
+     */
+    public static int fromEpochDay(long epochDay) {
+        LocalDate localDate = LocalDate.ofEpochDay(epochDay);
+        return of(localDate.getYear(), localDate.getMonthValue(), localDate.getDayOfMonth());
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+    }
+
+    private static int digits(CharSequence text, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static StringBuilder appendDigits(StringBuilder out, int value, int width) {
+        if (width == 4) {
+            out.append((char) ('0' + value / 1000 % 10)).append((char) ('0' + value / 100 % 10));
+        }
+        return out.append((char) ('0' + value / 10 % 10)).append((char) ('0' + value % 10));
+    }
+}
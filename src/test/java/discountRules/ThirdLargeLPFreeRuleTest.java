@@ -3,6 +3,7 @@ package discountRules;
 import static org.junit.jupiter.api.Assertions.*;
 
 import service.DiscountStateTracker;
+import service.RuleCounter;
 import shipmentModel.Shipment;
 import org.junit.Test;
 
@@ -56,4 +57,28 @@ public class ThirdLargeLPFreeRuleTest {
         Shipment lpLargeShipment4 = new Shipment("2023-01-18", "L", "LP");
         assertEquals(0.0, rule.calculateDiscount(lpLargeShipment4, 6.5, tracker), 0.001);
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests one rule instance used with two trackers in turn.
+     * Verifies that each tracker counts the rule's shipments on its own,
+     * although the rule caches its counter slot per tracker.
+     */
+    @Test
+    public void testRuleSharedByTrackers() {
+        ThirdLargeLPFreeRule rule = new ThirdLargeLPFreeRule();
+        DiscountStateTracker first = new DiscountStateTracker(10.0);
+        DiscountStateTracker second = new DiscountStateTracker(10.0);
+        second.registerCounter(new RuleCounter("other"));
+        Shipment shipment = new Shipment("2023-01-15", "L", "LP");
+
+        for (int i = 0; i < 2; i++) {
+            assertEquals(0, rule.calculateDiscountCents(shipment, 690, first));
+            assertEquals(0, rule.calculateDiscountCents(shipment, 690, second));
+        }
+
+        assertEquals(690, rule.calculateDiscountCents(shipment, 690, first));
+        assertEquals(690, rule.calculateDiscountCents(shipment, 690, second));
+        assertEquals(3, first.getCount(shipment.getMonthKey(), rule.getCounters().get(0)));
+        assertEquals(3, second.getCount(shipment.getMonthKey(), rule.getCounters().get(0)));
+    }
+}
@@ -0,0 +1,101 @@
+package inputAndOutput;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.Test;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+public class ChannelResultSinkTest {
+
+    private static final String SEPARATOR = System.lineSeparator();
+
+    /**
+     * Tests that lines are buffered and only written to the channel
+     * once the buffer is full, flushed or closed.
+     */
+    @Test
+    public void testWritesInBatches() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ChannelResultSink sink = new ChannelResultSink(Channels.newChannel(out), 64, StandardCharsets.UTF_8, true);
+
+        sink.write("2023-01-15 S LP 1.50 -");
+        assertEquals(0, out.size());
+
+        sink.write(new StringBuilder("2023-01-16 M MR 3.00 -"));
+        sink.write("2023-01-17 LP Ignored");
+        assertEquals("2023-01-15 S LP 1.50 -" + SEPARATOR + "2023-01-16 M MR 3.00 -" + SEPARATOR,
+                out.toString(StandardCharsets.UTF_8));
+
+        sink.close();
+        assertTrue(out.toString(StandardCharsets.UTF_8).endsWith("2023-01-17 LP Ignored" + SEPARATOR));
+    }
+
+    /**
+     * Tests that non-ASCII lines and lines longer than the buffer are written unchanged.
+     */
+    @Test
+    public void testWritesNonAsciiAndLongLines() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        String longLine = "2023-01-15 " + "X".repeat(100) + " Ignored";
+
+        try (ChannelResultSink sink = new ChannelResultSink(Channels.newChannel(out), 32, StandardCharsets.UTF_8, true)) {
+            sink.write("2023-01-15 ÄÖ Ignored");
+            sink.write(longLine);
+        }
+
+        assertEquals("2023-01-15 ÄÖ Ignored" + SEPARATOR + longLine + SEPARATOR, out.toString(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Tests that a file sink whose name ends in .gz writes compressed output.
+     */
+    @Test
+    public void testWritesGzipFile() throws IOException {
+        Path file = Files.createTempFile("results", FileReader.GZIP_EXTENSION);
+        file.toFile().deleteOnExit();
+
+        try (ChannelResultSink sink = ChannelResultSink.toFile(file)) {
+            sink.write("2023-01-15 S LP 1.50 -");
+        }
+
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            assertEquals("2023-01-15 S LP 1.50 -" + SEPARATOR, new String(in.readAllBytes(), Charset.defaultCharset()));
+        }
+    }
+
+    /**
+     * Tests resuming the output of a file.
+     * Verifies that the position counts buffered bytes and that a resumable
+     * file keeps its content up to the resumed position and drops the rest.
+     */
+    @Test
+    public void testResumesFileAtPosition() throws IOException {
+        Path file = Files.createTempFile("results", ".txt");
+        file.toFile().deleteOnExit();
+
+        long position;
+        try (ChannelResultSink sink = ChannelResultSink.toResumableFile(file)) {
+            sink.resumeAt(0);
+            sink.write("2023-01-15 S LP 1.50 -");
+            position = sink.position();
+            assertEquals(("2023-01-15 S LP 1.50 -" + SEPARATOR).length(), position);
+            sink.write("2023-01-16 S LP 1.50 -");
+        }
+
+        try (ChannelResultSink sink = ChannelResultSink.toResumableFile(file)) {
+            sink.resumeAt(position);
+            sink.write("2023-01-16 M MR 3.00 -");
+        }
+
+        assertEquals("2023-01-15 S LP 1.50 -" + SEPARATOR + "2023-01-16 M MR 3.00 -" + SEPARATOR,
+                Files.readString(file, Charset.defaultCharset()));
+    }
+}
@@ -0,0 +1,124 @@
+package inputAndOutput;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.Test;
+import service.DiscountStateTracker;
+import service.RuleCounter;
+import shipmentModel.ShipmentDates;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class DiscountCheckpointStoreTest {
+
+    /**
+     * Tests restoring from a snapshot followed by logged changes.
+     * Verifies that every month's state, including a counter registered
+     * after the log was started, and the watermark come back into a tracker
+     * with the same counters and that
+     * restoring continues from the input and output positions of the last log entry.
+     */
+    @Test
+    public void testRestoreSnapshotAndLog() throws IOException {
+        Path directory = newDirectory();
+        int january = ShipmentDates.parseMonth("2023-01");
+
+        DiscountStateTracker tracker = new DiscountStateTracker(10.0);
+        try (DiscountCheckpointStore store = new DiscountCheckpointStore(directory)) {
+            assertEquals(0, store.restore(tracker));
+            tracker.reserveDiscountCents(january - 1, 100);
+            tracker.closeMonthsBefore(january);
+            tracker.reserveDiscountCents(january, 250);
+            store.checkpoint(tracker, 10, 1000, 100);
+
+            tracker.incrementAndGetLpLargeCount(january + 1);
+            tracker.incrementAndGetCount(january + 1, new RuleCounter("checkpoint S MR"));
+            store.appendMonths(tracker, new int[]{january + 1}, 1, 11, 1100, 110);
+            tracker.reserveDiscountCents(january, 50);
+            tracker.tryMarkLpLargeFreeShipmentApplied(january);
+            store.appendMonths(tracker, new int[]{january, january + 1}, 2, 12, 1200, 120);
+        }
+
+        DiscountStateTracker restored = new DiscountStateTracker(10.0);
+        RuleCounter restoredCounter = new RuleCounter("checkpoint S MR");
+        restored.registerCounter(restoredCounter);
+        try (DiscountCheckpointStore store = new DiscountCheckpointStore(directory)) {
+            assertEquals(12, store.restore(restored));
+            assertEquals(1200, store.getInputOffset());
+            assertEquals(120, store.getOutputPosition());
+        }
+        assertEquals(january, restored.getWatermark());
+        assertArrayEquals(new int[]{january, january + 1}, restored.getOpenMonthKeys());
+        assertEquals(300, restored.getTotalMonthDiscountCents(january));
+        assertTrue(restored.isLpLargeFreeShipmentApplied(january));
+        assertEquals(1, restored.getLpLargeCount(january + 1));
+        assertEquals(1, restored.getCount(january + 1, restoredCounter));
+        assertEquals(0, restored.reserveDiscountCents(january - 1, 100));
+    }
+
+    /**
+     * Tests that a log entry torn by a crash is ignored.
+     * Verifies that restoring continues from the last complete entry and its input and output positions.
+     */
+    @Test
+    public void testTornLogEntryIsIgnored() throws IOException {
+        Path directory = newDirectory();
+        int january = ShipmentDates.parseMonth("2023-01");
+
+        DiscountStateTracker tracker = new DiscountStateTracker(10.0);
+        try (DiscountCheckpointStore store = new DiscountCheckpointStore(directory)) {
+            store.restore(tracker);
+            tracker.reserveDiscountCents(january, 100);
+            store.appendMonths(tracker, new int[]{january}, 1, 1, 1000, 10);
+            tracker.reserveDiscountCents(january, 100);
+            store.appendMonths(tracker, new int[]{january}, 1, 2, 2000, 20);
+        }
+        Path log = directory.resolve(DiscountCheckpointStore.LOG_FILE);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        DiscountStateTracker restored = new DiscountStateTracker(10.0);
+        try (DiscountCheckpointStore store = new DiscountCheckpointStore(directory)) {
+            assertEquals(1, store.restore(restored));
+            assertEquals(1000, store.getInputOffset());
+            assertEquals(10, store.getOutputPosition());
+        }
+        assertEquals(100, restored.getTotalMonthDiscountCents(january));
+    }
+
+    /**
+     * Tests restoring into a tracker with other rule counters.
+     * Verifies that the state is rejected instead of being restored into the
+     * wrong counters.
+     */
+    @Test
+    public void testRestoreRejectsOtherCounters() throws IOException {
+        Path directory = newDirectory();
+        int january = ShipmentDates.parseMonth("2023-01");
+
+        DiscountStateTracker tracker = new DiscountStateTracker(10.0);
+        tracker.registerCounter(new RuleCounter("nth-free 3 L LP"));
+        try (DiscountCheckpointStore store = new DiscountCheckpointStore(directory)) {
+            store.restore(tracker);
+            tracker.reserveDiscountCents(january, 100);
+            store.appendMonths(tracker, new int[]{january}, 1, 1, 1000, 10);
+        }
+
+        DiscountStateTracker other = new DiscountStateTracker(10.0);
+        other.registerCounter(new RuleCounter("nth-free 2 S MR"));
+        try (DiscountCheckpointStore store = new DiscountCheckpointStore(directory)) {
+            assertThrows(IOException.class, () -> store.restore(other));
+        }
+    }
+
+    private static Path newDirectory() throws IOException {
+        Path directory = Files.createTempDirectory("checkpoint");
+        directory.toFile().deleteOnExit();
+        return directory;
+    }
+}
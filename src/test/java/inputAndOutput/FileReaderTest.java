@@ -2,15 +2,24 @@ package inputAndOutput;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import service.ShipmentPriceService;
+import service.ShippingProviderPricing;
 import shipmentModel.BasicShipment;
+import shipmentModel.ProviderRegistry;
 import shipmentModel.Shipment;
 import org.junit.Test;
 import org.junit.Before;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
 
 public class FileReaderTest {
 
@@ -64,4 +73,104 @@ public class FileReaderTest {
         assertEquals("S", shipment.getSize());
         assertEquals("LP", shipment.getShippingProvider());
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that streamShipments lazily parses the file in order and
+     * produces the same shipments as the list-based methods.
+     */
+    @Test
+    public void testStreamShipments() {
+        List<BasicShipment> shipments;
+        try (Stream<BasicShipment> stream = fileReader.streamShipments(TEST_FILE)) {
+            shipments = stream.collect(Collectors.toList());
+        }
+
+        assertEquals(3, shipments.size());
+        assertTrue(shipments.get(0) instanceof Shipment);
+        assertTrue(shipments.get(1) instanceof Shipment);
+        assertFalse(shipments.get(2) instanceof Shipment);
+        assertEquals("2023-01-16", shipments.get(1).getDate());
+        assertEquals("LP", shipments.get(2).getShippingProvider());
+    }
+
+    /**
+     * Tests that streamLines returns the unparsed lines of the file in order.
+     */
+    @Test
+    public void testStreamLines() {
+        List<String> lines;
+        try (Stream<String> stream = fileReader.streamLines(TEST_FILE)) {
+            lines = stream.collect(Collectors.toList());
+        }
+
+        assertEquals(fileReader.extractEachLine(TEST_FILE), lines);
+    }
+
+    /**
+     * Tests that parseLine skips lines that have neither 2 nor 3 parts.
+     */
+    @Test
+    public void testParseLineWithInvalidFormat() {
+        assertNull(fileReader.parseLine("2023-01-15"));
+        assertNull(fileReader.parseLine("2023-01-15 S LP extra"));
+    }
+
+    /**
+     * Tests that 3-part lines with an invalid date or size become basic
+     * shipments that keep the original text, so they are reported as ignored.
+     */
+    @Test
+    public void testParseLineWithInvalidDateOrSize() {
+        BasicShipment invalidDate = fileReader.parseLine("2015-02-29 S MR");
+        assertFalse(invalidDate instanceof Shipment);
+        assertEquals("2015-02-29", invalidDate.getDate());
+        assertEquals("S MR", invalidDate.getShippingProvider());
+
+        BasicShipment invalidSize = fileReader.parseLine("2015-02-01 XL MR");
+        assertFalse(invalidSize instanceof Shipment);
+        assertEquals("XL MR", invalidSize.getShippingProvider());
+    }
+
+    /**
+     * Tests a file reader backed by prices.
+     * Verifies that a provider without prices becomes a basic shipment like an
+     * unknown size, and that its code is not registered.
+     */
+    @Test
+    public void testParseLineWithUnknownProvider() {
+        ShipmentPriceService priceService = new ShipmentPriceService();
+        priceService.addProviderAndPrices("MR", new ShippingProviderPricing(2.0, 3.0, 4.0));
+        FileReader pricedReader = new FileReader(priceService);
+
+        assertTrue(pricedReader.parseLine("2015-02-01 S MR") instanceof Shipment);
+
+        BasicShipment unknownProvider = pricedReader.parseLine("2015-02-01 S QZ");
+        assertFalse(unknownProvider instanceof Shipment);
+        assertEquals("S QZ", unknownProvider.getShippingProvider());
+        assertEquals(-1, ProviderRegistry.find("QZ"));
+    }
+
+    /**
+     * Tests that gzip-compressed files are decompressed transparently
+     * by both the line and the streaming methods.
+     */
+    @Test
+    public void testReadGzipFile() throws IOException {
+        Path file = Files.createTempFile("shipments", FileReader.GZIP_EXTENSION);
+        file.toFile().deleteOnExit();
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            out.write("2023-01-15 S LP\n2023-01-16 MR\n".getBytes(StandardCharsets.UTF_8));
+        }
+
+        List<String> lines = fileReader.extractEachLine(file.toString());
+        assertEquals(Arrays.asList("2023-01-15 S LP", "2023-01-16 MR"), lines);
+
+        List<BasicShipment> shipments;
+        try (Stream<BasicShipment> stream = fileReader.streamShipments(file.toString())) {
+            shipments = stream.collect(Collectors.toList());
+        }
+        assertEquals(2, shipments.size());
+        assertTrue(shipments.get(0) instanceof Shipment);
+        assertEquals("MR", shipments.get(1).getShippingProvider());
+    }
+}
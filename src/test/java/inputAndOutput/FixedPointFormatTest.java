@@ -0,0 +1,19 @@
+package inputAndOutput;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.Test;
+
+public class FixedPointFormatTest {
+
+    /**
+     * Tests that whole cents are appended with two decimals and leading zeros,
+     * and that negative amounts match String.format.
+     */
+    @Test
+    public void testAppendCents() {
+        assertEquals("0.05", FixedPointFormat.appendCents(new StringBuilder(), 5).toString());
+        assertEquals("12.30", FixedPointFormat.appendCents(new StringBuilder(), 1230).toString());
+        assertEquals(String.format("%.2f", -0.5), FixedPointFormat.appendCents(new StringBuilder(), -50).toString());
+    }
+}
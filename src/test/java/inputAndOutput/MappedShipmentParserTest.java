@@ -0,0 +1,84 @@
+package inputAndOutput;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import shipmentModel.BasicShipment;
+import shipmentModel.Shipment;
+import org.junit.Test;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class MappedShipmentParserTest {
+
+    /**
+     * Tests that parseLine decodes each line format the same way as FileReader.parseLine.
+     * Verifies 3 part lines, 2 part lines, lines with extra spaces and invalid lines.
+     */
+    @Test
+    public void testParseLineMatchesFileReader() {
+        MappedShipmentParser parser = new MappedShipmentParser();
+        FileReader fileReader = new FileReader();
+        List<String> lines = Arrays.asList(
+                "2023-01-15 S LP", "2023-01-16 MR", "2023-01-17 L  LP", "2023-01-18 M MR  ",
+                " 2023-01-19 LP", "2023-01-20", "2023-01-21 S LP X", "", "   ");
+
+        for (String line : lines) {
+            ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+            assertSameShipment(fileReader.parseLine(line), parser.parseLine(buffer, 0, buffer.limit()));
+        }
+    }
+
+    /**
+     * Tests that parse reads a whole file in order when it is mapped in
+     * windows much smaller than the file, including Windows line endings
+     * and a last line without a line break.
+     */
+    @Test
+    public void testParseAcrossWindows() throws IOException {
+        Path file = Files.createTempFile("mapped", ".txt");
+        file.toFile().deleteOnExit();
+        Files.write(file, "2023-01-15 S LP\r\n2023-01-16 M MR\n2023-01-17 LP\n2023-01-18 L LP".getBytes(StandardCharsets.UTF_8));
+
+        List<BasicShipment> shipments = new ArrayList<>();
+        new MappedShipmentParser(20).parse(file, shipments::add);
+
+        assertEquals(4, shipments.size());
+        assertEquals("2023-01-15", shipments.get(0).getDate());
+        assertEquals("LP", shipments.get(0).getShippingProvider());
+        assertEquals("M", ((Shipment) shipments.get(1)).getSize());
+        assertFalse(shipments.get(2) instanceof Shipment);
+        assertEquals("2023-01-18", shipments.get(3).getDate());
+    }
+
+    /**
+     * Tests that a line longer than the mapping window is reported as an error.
+     */
+    @Test
+    public void testLineLongerThanWindow() throws IOException {
+        Path file = Files.createTempFile("mapped", ".txt");
+        file.toFile().deleteOnExit();
+        Files.write(file, "2023-01-15 S LP\n2023-01-16 M MR\n".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(IOException.class, () -> new MappedShipmentParser(8).parse(file, shipment -> { }));
+    }
+
+    private static void assertSameShipment(BasicShipment expected, BasicShipment actual) {
+        if (expected == null) {
+            assertNull(actual);
+            return;
+        }
+        assertNotNull(actual);
+        assertEquals(expected.getClass(), actual.getClass());
+        assertEquals(expected.getDate(), actual.getDate());
+        assertEquals(expected.getShippingProvider(), actual.getShippingProvider());
+        if (expected instanceof Shipment) {
+            assertEquals(((Shipment) expected).getSize(), ((Shipment) actual).getSize());
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package inputAndOutput;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import shipmentModel.BasicShipment;
+import org.junit.Test;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+public class ParallelShipmentParserTest {
+
+    /**
+     * Tests that parallel parsing returns the shipments in the original file order
+     * when the file spans several windows and many chunks.
+     */
+    @Test
+    public void testParsePreservesFileOrder() throws IOException {
+        Path file = Files.createTempFile("parallel", ".txt");
+        file.toFile().deleteOnExit();
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            String date = String.format("2023-%02d-%02d", i / 28 % 12 + 1, i % 28 + 1);
+            lines.add(i % 10 == 0 ? date + " CUSPS" : date + " " + "SML".charAt(i % 3) + " LP");
+        }
+        Files.write(file, lines);
+
+        List<BasicShipment> shipments = new ArrayList<>();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            new ParallelShipmentParser(pool, 4096, 256).parse(file, shipments::add);
+        } finally {
+            pool.shutdown();
+        }
+
+        FileReader fileReader = new FileReader();
+        assertEquals(lines.size(), shipments.size());
+        for (int i = 0; i < lines.size(); i++) {
+            BasicShipment expected = fileReader.parseLine(lines.get(i));
+            assertEquals(expected.getClass(), shipments.get(i).getClass());
+            assertEquals(expected.getDate(), shipments.get(i).getDate());
+        }
+    }
+
+    /**
+     * Tests that chunk boundaries always fall right after a line break
+     * and cover the whole range.
+     */
+    @Test
+    public void testChunkBoundaries() {
+        ByteBuffer buffer = ByteBuffer.wrap("2023-01-15 S LP\n2023-01-16 M MR\n2023-01-17 LP\n".getBytes(StandardCharsets.UTF_8));
+
+        int[] boundaries = ParallelShipmentParser.chunkBoundaries(buffer, buffer.limit(), 10);
+
+        assertArrayEquals(new int[]{0, 16, 32, 46}, boundaries);
+    }
+}
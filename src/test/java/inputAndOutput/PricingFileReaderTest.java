@@ -0,0 +1,118 @@
+package inputAndOutput;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import service.ShipmentPriceService;
+import service.ShippingProviderPricing;
+import shipmentModel.PackageSize;
+import shipmentModel.ShipmentDates;
+import org.junit.Test;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.NavigableMap;
+
+public class PricingFileReaderTest {
+    private final PricingFileReader pricingFileReader = new PricingFileReader();
+
+    /**
+     * Tests that a pricing file is read into one pricing structure per provider.
+     * Verifies that comments and empty lines are skipped and that
+     * providers keep their file order.
+     */
+    @Test
+    public void testReadPricing() throws IOException {
+        Path file = write("# Provider Size Price\nLP S 1.50\nLP M 4.90\nLP L 6.90\n\nMR L 4\nMR M 3\nMR S 2\n");
+
+        NavigableMap<Integer, Map<String, ShippingProviderPricing>> history = pricingFileReader.readPricing(file);
+        assertEquals(1, history.size());
+        Map<String, ShippingProviderPricing> pricing = history.get(ShipmentPriceService.EFFECTIVE_ALWAYS);
+
+        assertArrayEquals(new String[] {"LP", "MR"}, pricing.keySet().toArray());
+        assertEquals(1.5, pricing.get("LP").getSmall(), 0.001);
+        assertEquals(4.9, pricing.get("LP").getMedium(), 0.001);
+        assertEquals(6.9, pricing.get("LP").getLarge(), 0.001);
+        assertEquals(2.0, pricing.get("MR").getSmall(), 0.001);
+        assertEquals(4.0, pricing.get("MR").getLarge(), 0.001);
+    }
+
+    /**
+     * Tests that dated prices create new versions that carry forward
+     * all earlier prices, and that providers may start at a later date.
+     */
+    @Test
+    public void testReadDatedPricing() throws IOException {
+        Path file = write("LP S 1.50\nLP M 4.90\nLP L 6.90\n"
+                + "2016-03-01 LP S 1.60\n"
+                + "2016-06-01 MR S 2\n2016-06-01 MR M 3\n2016-06-01 MR L 4\n");
+
+        NavigableMap<Integer, Map<String, ShippingProviderPricing>> history = pricingFileReader.readPricing(file);
+
+        assertEquals(3, history.size());
+        assertEquals(1.5, history.get(ShipmentPriceService.EFFECTIVE_ALWAYS).get("LP").getSmall(), 0.001);
+        Map<String, ShippingProviderPricing> march = history.get(ShipmentDates.parse("2016-03-01"));
+        assertEquals(1.6, march.get("LP").getSmall(), 0.001);
+        assertEquals(6.9, march.get("LP").getLarge(), 0.001);
+        assertNull(march.get("MR"));
+        Map<String, ShippingProviderPricing> june = history.get(ShipmentDates.parse("2016-06-01"));
+        assertEquals(1.6, june.get("LP").getSmall(), 0.001);
+        assertEquals(2.0, june.get("MR").getSmall(), 0.001);
+    }
+
+    /**
+     * Tests that new size codes are added to the catalogue and that
+     * providers only get prices for the sizes listed for them.
+     */
+    @Test
+    public void testReadNewSizeTier() throws IOException {
+        Path file = write("LP S 1.50\nLP XXL 12.00\nMR S 2\n");
+
+        Map<String, ShippingProviderPricing> pricing = pricingFileReader.readPricing(file).get(ShipmentPriceService.EFFECTIVE_ALWAYS);
+
+        PackageSize xxl = PackageSize.fromCode("XXL");
+        assertNotNull(xxl);
+        assertEquals(12.0, pricing.get("LP").getPrice(xxl), 0.001);
+        assertEquals(-1, pricing.get("MR").getPrice(xxl), 0.001);
+        assertEquals(-1, pricing.get("MR").getMedium(), 0.001);
+    }
+
+    /**
+     * Tests that invalid pricing files are rejected.
+     * Verifies that lines without a price, unparsable prices, invalid dates
+     * and empty files cause an IOException.
+     */
+    @Test
+    public void testInvalidPricingIsRejected() throws IOException {
+        Path missingPrice = write("LP S\n");
+        Path invalidPrice = write("LP S abc\n");
+        Path empty = write("# Provider Size Price\n");
+        Path invalidDate = write("2015-02-29 LP S 1.50\n");
+
+        assertThrows(IOException.class, () -> pricingFileReader.readPricing(missingPrice));
+        assertThrows(IOException.class, () -> pricingFileReader.readPricing(invalidPrice));
+        assertThrows(IOException.class, () -> pricingFileReader.readPricing(empty));
+        assertThrows(IOException.class, () -> pricingFileReader.readPricing(invalidDate));
+    }
+
+    /**
+     * Tests that a rejected file does not register its size codes.
+     * Verifies that a new size code on a line before an invalid one is not
+     * added to the catalogue.
+     */
+    @Test
+    public void testRejectedFileDoesNotRegisterSizes() throws IOException {
+        Path file = write("LP S 1.50\nLP QTYPO 9.00\nMR S broken\n");
+
+        assertThrows(IOException.class, () -> pricingFileReader.readPricing(file));
+        assertNull(PackageSize.fromCode("QTYPO"));
+    }
+
+    private static Path write(String content) throws IOException {
+        Path file = Files.createTempFile("pricing", ".txt");
+        file.toFile().deleteOnExit();
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
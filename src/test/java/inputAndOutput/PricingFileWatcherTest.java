@@ -0,0 +1,61 @@
+package inputAndOutput;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import service.ShipmentPriceService;
+import org.junit.Test;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class PricingFileWatcherTest {
+    private static final String PRICING = "LP S 1.50\nLP M 4.90\nLP L 6.90\n";
+
+    /**
+     * Tests that the watcher loads the pricing file and swaps in new prices
+     * when the file is reloaded, keeping the old prices if the file is invalid.
+     */
+    @Test
+    public void testLoadAndReload() throws IOException {
+        Path file = Files.createTempFile("pricing", ".txt");
+        file.toFile().deleteOnExit();
+        Files.write(file, PRICING.getBytes(StandardCharsets.UTF_8));
+
+        ShipmentPriceService service = new ShipmentPriceService();
+        try (PricingFileWatcher watcher = new PricingFileWatcher(file, service)) {
+            assertEquals(1.5, service.getPrice("LP", "S"), 0.001);
+
+            Files.write(file, PRICING.replace("1.50", "1.75").getBytes(StandardCharsets.UTF_8));
+            assertTrue(watcher.reload());
+            assertEquals(1.75, service.getPrice("LP", "S"), 0.001);
+
+            Files.write(file, "LP S broken\n".getBytes(StandardCharsets.UTF_8));
+            assertFalse(watcher.reload());
+            assertEquals(1.75, service.getPrice("LP", "S"), 0.001);
+        }
+    }
+
+    /**
+     * Tests that a change to the pricing file is picked up by a started
+     * watcher without an explicit reload. Waits for the background thread for a few seconds.
+     */
+    @Test
+    public void testChangeIsPickedUp() throws IOException, InterruptedException {
+        Path file = Files.createTempFile("pricing", ".txt");
+        file.toFile().deleteOnExit();
+        Files.write(file, PRICING.getBytes(StandardCharsets.UTF_8));
+
+        ShipmentPriceService service = new ShipmentPriceService();
+        try (PricingFileWatcher watcher = new PricingFileWatcher(file, service)) {
+            watcher.start();
+            Files.write(file, PRICING.replace("6.90", "5.00").getBytes(StandardCharsets.UTF_8));
+
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (service.getPrice("LP", "L") != 5.0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(5.0, service.getPrice("LP", "L"), 0.001);
+        }
+    }
+}
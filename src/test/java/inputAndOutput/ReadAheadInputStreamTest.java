@@ -0,0 +1,126 @@
+package inputAndOutput;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.Test;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ReadAheadInputStreamTest {
+
+    /**
+     * Tests that all bytes of the source are returned in order
+     * when they span many small chunks.
+     */
+    @Test
+    public void testReadsWholeSource() throws IOException {
+        byte[] data = new byte[10000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+
+        try (InputStream in = new ReadAheadInputStream(new ByteArrayInputStream(data), 64, 2)) {
+            assertEquals(data[0], (byte) in.read());
+            byte[] rest = in.readAllBytes();
+            assertEquals(data.length - 1, rest.length);
+            assertEquals(data[data.length - 1], rest[rest.length - 1]);
+            assertEquals(-1, in.read());
+        }
+    }
+
+    /**
+     * Tests that a failure of the source is reported to the reader
+     * after the bytes read before the failure.
+     */
+    @Test
+    public void testPropagatesSourceFailure() throws IOException {
+        InputStream failing = new InputStream() {
+            private int remaining = 100;
+
+            @Override
+            public int read() throws IOException {
+                if (remaining-- <= 0) {
+                    throw new IOException("Corrupt input");
+                }
+                return 'x';
+            }
+        };
+
+        try (InputStream in = new ReadAheadInputStream(failing, 32, 2)) {
+            byte[] buffer = new byte[32];
+            int total = 0;
+            IOException failure = null;
+            try {
+                int read;
+                while ((read = in.read(buffer, 0, buffer.length)) > 0) {
+                    total += read;
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+
+            assertNotNull(failure);
+            assertEquals("Corrupt input", failure.getMessage());
+            assertEquals(96, total);
+        }
+    }
+
+    /**
+     * Tests that an unchecked failure of the source is reported to the
+     * reader as an IOException instead of leaving it waiting forever.
+     */
+    @Test(timeout = 10_000)
+    public void testPropagatesUncheckedSourceFailure() throws IOException {
+        InputStream failing = new InputStream() {
+            @Override
+            public int read() {
+                throw new IllegalStateException("Corrupt gzip trailer");
+            }
+        };
+
+        try (InputStream in = new ReadAheadInputStream(failing, 32, 2)) {
+            IOException failure = assertThrows(IOException.class, in::read);
+            assertTrue(failure.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    /**
+     * Tests that closing waits for the background thread before closing the source.
+     * Verifies that the source is never closed while it is being read.
+     */
+    @Test(timeout = 10_000)
+    public void testCloseStopsReaderBeforeClosingSource() throws IOException {
+        AtomicBoolean reading = new AtomicBoolean();
+        AtomicBoolean closedWhileReading = new AtomicBoolean();
+        InputStream endless = new InputStream() {
+            @Override
+            public int read() {
+                return 'x';
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) {
+                reading.set(true);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                reading.set(false);
+                return length;
+            }
+
+            @Override
+            public void close() {
+                closedWhileReading.set(reading.get());
+            }
+        };
+
+        InputStream in = new ReadAheadInputStream(endless, 32, 2);
+        assertEquals('\0', in.read());
+        in.close();
+        assertFalse(closedWhileReading.get());
+    }
+}
@@ -0,0 +1,92 @@
+package inputAndOutput;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import discountRules.LowestPriceMatchRule;
+import discountRules.NthShipmentFreeRule;
+import org.junit.Test;
+import service.DiscountContractRule;
+import service.DiscountStateTracker;
+import service.ShipmentPriceService;
+import service.ShippingProviderPricing;
+import shipmentModel.PackageSize;
+import shipmentModel.Shipment;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class RuleFileReaderTest {
+
+    /**
+     * Tests compiling a rules file.
+     * Verifies that definitions become rules in file order, that comments are
+     * skipped and that the compiled rules calculate the configured discounts.
+     */
+    @Test
+    public void testReadRules() throws IOException {
+        ShipmentPriceService priceService = new ShipmentPriceService();
+        priceService.addProviderAndPrices("LP", new ShippingProviderPricing(1.5, 4.9, 6.9));
+        priceService.addProviderAndPrices("MR", new ShippingProviderPricing(2.0, 3.0, 4.0));
+        Path file = write("# Rules\nlowest-price M\n\nnth-free 2 S MR\n");
+
+        List<DiscountContractRule> rules = new RuleFileReader().readRules(file, priceService);
+
+        assertEquals(2, rules.size());
+        assertTrue(rules.get(0) instanceof LowestPriceMatchRule);
+        assertTrue(rules.get(1) instanceof NthShipmentFreeRule);
+
+        DiscountStateTracker tracker = new DiscountStateTracker(10.0);
+        Shipment mediumLp = new Shipment("2023-01-15", "M", "LP");
+        assertTrue(rules.get(0).applies(mediumLp));
+        assertEquals(190, rules.get(0).calculateDiscountCents(mediumLp, 490, tracker));
+
+        Shipment smallMr = new Shipment("2023-01-15", "S", "MR");
+        assertTrue(rules.get(1).applies(smallMr));
+        assertFalse(rules.get(1).applies(new Shipment("2023-01-15", "S", "LP")));
+        assertEquals(0, rules.get(1).calculateDiscountCents(smallMr, 200, tracker));
+        assertEquals(200, rules.get(1).calculateDiscountCents(smallMr, 200, tracker));
+        assertEquals(0, rules.get(1).calculateDiscountCents(smallMr, 200, tracker));
+    }
+
+    /**
+     * Tests that invalid definitions are rejected with an IOException.
+     */
+    @Test
+    public void testReadInvalidRules() throws IOException {
+        RuleFileReader ruleFileReader = new RuleFileReader();
+        ShipmentPriceService priceService = new ShipmentPriceService();
+
+        assertThrows(IOException.class, () -> ruleFileReader.readRules(write("cheapest S\n"), priceService));
+        assertThrows(IOException.class, () -> ruleFileReader.readRules(write("lowest-price\n"), priceService));
+        assertThrows(IOException.class, () -> ruleFileReader.readRules(write("nth-free third L LP\n"), priceService));
+        assertThrows(IOException.class, () -> ruleFileReader.readRules(write("nth-free 0 L LP\n"), priceService));
+    }
+
+    /**
+     * Tests that sizes and providers unknown to the prices are rejected.
+     * Verifies that a misspelled size is reported instead of being added to
+     * the size catalogue.
+     */
+    @Test
+    public void testReadRulesWithUnknownSizeOrProvider() {
+        RuleFileReader ruleFileReader = new RuleFileReader();
+        ShipmentPriceService priceService = new ShipmentPriceService();
+        priceService.addProviderAndPrices("LP", new ShippingProviderPricing(1.5, 4.9, 6.9));
+
+        assertThrows(IOException.class, () -> ruleFileReader.readRules(write("lowest-price SS\n"), priceService));
+        assertThrows(IOException.class, () -> ruleFileReader.readRules(write("nth-free 3 LL LP\n"), priceService));
+        assertNull(PackageSize.fromCode("SS"));
+        assertNull(PackageSize.fromCode("LL"));
+        assertThrows(IOException.class, () -> ruleFileReader.readRules(write("nth-free 3 L PL\n"), priceService));
+    }
+
+    private static Path write(String content) throws IOException {
+        Path file = Files.createTempFile("rules", ".txt");
+        file.toFile().deleteOnExit();
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,164 @@
+package inputAndOutput;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import shipmentModel.BasicShipment;
+import shipmentModel.PackageSize;
+import shipmentModel.Shipment;
+import org.junit.Test;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class ShipmentArchiveReaderTest {
+
+    /**
+     * Tests that shipments written to an archive are read back unchanged.
+     * Verifies shipments, basic shipments kept for lines with invalid dates
+     * or sizes, and unknown providers, across more than one block.
+     */
+    @Test
+    public void testArchiveRoundTrip() throws IOException {
+        List<BasicShipment> shipments = new ArrayList<>();
+        for (int i = 0; i < ShipmentArchiveWriter.BLOCK_SIZE + 10; i++) {
+            shipments.add(new Shipment("2023-01-" + (10 + i % 20), "SML".substring(i % 3, i % 3 + 1), i % 2 == 0 ? "LP" : "MR"));
+        }
+        shipments.addAll(Arrays.asList(
+                new BasicShipment("2015-02-29", "CUSPS"),
+                new BasicShipment("2015-02-29", "S MR"),
+                new BasicShipment("2015-02-01", "XL MR"),
+                new Shipment("2015-02-01", "S", "XX")));
+
+        Path file = Files.createTempFile("shipments", ShipmentArchiveWriter.FILE_EXTENSION);
+        file.toFile().deleteOnExit();
+        try (ShipmentArchiveWriter writer = new ShipmentArchiveWriter(file)) {
+            for (BasicShipment shipment : shipments) {
+                writer.write(shipment);
+            }
+        }
+
+        List<BasicShipment> read;
+        try (Stream<BasicShipment> stream = new ShipmentArchiveReader(file).stream()) {
+            read = stream.collect(Collectors.toList());
+        }
+
+        assertEquals(shipments.size(), read.size());
+        for (int i = 0; i < shipments.size(); i++) {
+            BasicShipment expected = shipments.get(i);
+            BasicShipment actual = read.get(i);
+            assertEquals(expected.getClass(), actual.getClass());
+            assertEquals(expected.getDate(), actual.getDate());
+            assertEquals(expected.getShippingProvider(), actual.getShippingProvider());
+            if (expected instanceof Shipment) {
+                assertEquals(((Shipment) expected).getSize(), ((Shipment) actual).getSize());
+            }
+        }
+    }
+
+    /**
+     * Tests reading a shipment whose size is not in the catalogue.
+     * Verifies that it becomes a basic shipment that keeps its text, like an
+     * unknown size in a text file, and that the size is not registered.
+     */
+    @Test
+    public void testUnknownSizeIsNotRegistered() throws IOException {
+        PackageSize tier = PackageSize.register("QJ");
+        Path file = Files.createTempFile("shipments", ShipmentArchiveWriter.FILE_EXTENSION);
+        file.toFile().deleteOnExit();
+        try (ShipmentArchiveWriter writer = new ShipmentArchiveWriter(file)) {
+            writer.write(new Shipment("2023-01-15", tier.getCode(), "LP"));
+        }
+
+        // Rename the tier in the size table to a code that was never registered
+        byte[] bytes = Files.readAllBytes(file);
+        byte[] code = {0, 2, 'Q', 'J'};
+        for (int i = 0; i + code.length <= bytes.length; i++) {
+            if (Arrays.equals(Arrays.copyOfRange(bytes, i, i + code.length), code)) {
+                bytes[i + 3] = 'K';
+                break;
+            }
+        }
+        Files.write(file, bytes);
+
+        List<BasicShipment> read;
+        try (Stream<BasicShipment> stream = new ShipmentArchiveReader(file).stream()) {
+            read = stream.collect(Collectors.toList());
+        }
+
+        assertEquals(1, read.size());
+        assertFalse(read.get(0) instanceof Shipment);
+        assertEquals("2023-01-15", read.get(0).getDate());
+        assertEquals("QK LP", read.get(0).getShippingProvider());
+        assertNull(PackageSize.fromCode("QK"));
+    }
+
+    /**
+     * Tests resuming an archive at offsets taken while reading it.
+     * Verifies that a new reader positioned at an offset in the middle of a
+     * later block, at a block boundary or at the end returns the same
+     * remaining shipments, including basic shipments and codes introduced
+     * by earlier blocks.
+     */
+    @Test
+    public void testSeekContinuesAtOffset() throws IOException {
+        List<BasicShipment> shipments = new ArrayList<>();
+        for (int i = 0; i < 2 * ShipmentArchiveWriter.BLOCK_SIZE + 50; i++) {
+            if (i % 97 == 0) {
+                shipments.add(new BasicShipment("2023-03-" + (10 + i % 20), "CUSPS"));
+            } else {
+                shipments.add(new Shipment("2023-03-" + (10 + i % 20), "SML".substring(i % 3, i % 3 + 1), i < 10 ? "MR" : "LP"));
+            }
+        }
+        Path file = Files.createTempFile("shipments", ShipmentArchiveWriter.FILE_EXTENSION);
+        file.toFile().deleteOnExit();
+        try (ShipmentArchiveWriter writer = new ShipmentArchiveWriter(file)) {
+            for (BasicShipment shipment : shipments) {
+                writer.write(shipment);
+            }
+        }
+
+        List<String> all = new ArrayList<>();
+        List<Long> offsets = new ArrayList<>();
+        try (ShipmentArchiveReader reader = new ShipmentArchiveReader(file)) {
+            offsets.add(reader.offset());
+            while (reader.hasNext()) {
+                all.add(describe(reader.next()));
+                offsets.add(reader.offset());
+            }
+        }
+        assertEquals(shipments.size(), all.size());
+
+        for (int start : new int[]{0, 1, ShipmentArchiveWriter.BLOCK_SIZE, ShipmentArchiveWriter.BLOCK_SIZE + 291, shipments.size()}) {
+            List<String> rest = new ArrayList<>();
+            try (ShipmentArchiveReader reader = new ShipmentArchiveReader(file)) {
+                reader.seek(offsets.get(start));
+                while (reader.hasNext()) {
+                    rest.add(describe(reader.next()));
+                }
+            }
+            assertEquals(all.subList(start, all.size()), rest, "resumed at shipment " + start);
+        }
+    }
+
+    /**
+     * Tests that a file without the archive header is rejected.
+     */
+    @Test
+    public void testRejectsNonArchive() throws IOException {
+        Path file = Files.createTempFile("shipments", ".txt");
+        file.toFile().deleteOnExit();
+        Files.write(file, Arrays.asList("2023-01-15 S LP"));
+
+        assertThrows(IOException.class, () -> new ShipmentArchiveReader(file));
+    }
+
+    private static String describe(BasicShipment shipment) {
+        String text = shipment.getDate() + " " + shipment.getShippingProvider();
+        return shipment instanceof Shipment ? text + " " + ((Shipment) shipment).getSize() : text;
+    }
+}
@@ -0,0 +1,85 @@
+package inputAndOutput;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import shipmentModel.BasicShipment;
+import org.junit.Test;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ShipmentFileFollowerTest {
+
+    /**
+     * Tests that each poll consumes only the complete lines appended since
+     * the previous poll and that an incomplete last line waits for its line break.
+     */
+    @Test
+    public void testPollConsumesAppendedLines() throws IOException {
+        Path file = Files.createTempFile("follow", ".txt");
+        file.toFile().deleteOnExit();
+        Files.write(file, "2023-01-15 S LP\n2023-01-16 M".getBytes(StandardCharsets.UTF_8));
+
+        List<BasicShipment> shipments = new ArrayList<>();
+        try (ShipmentFileFollower follower = new ShipmentFileFollower(file, 0)) {
+            assertEquals(1, follower.poll(shipments::add));
+            assertEquals(16, follower.getOffset());
+
+            assertEquals(0, follower.poll(shipments::add));
+
+            append(file, " MR\n2023-01-17 LP\n");
+            assertEquals(2, follower.poll(shipments::add));
+        }
+
+        assertEquals(3, shipments.size());
+        assertEquals("2023-01-15", shipments.get(0).getDate());
+        assertEquals("2023-01-16", shipments.get(1).getDate());
+        assertEquals("LP", shipments.get(2).getShippingProvider());
+    }
+
+    /**
+     * Tests that lines longer than the read buffer are consumed whole.
+     */
+    @Test
+    public void testPollWithLinesLongerThanBuffer() throws IOException {
+        Path file = Files.createTempFile("follow", ".txt");
+        file.toFile().deleteOnExit();
+        String longProvider = "X".repeat(ShipmentFileFollower.INITIAL_BUFFER_SIZE);
+        Files.write(file, ("2023-01-15 " + longProvider + "\n2023-01-16 S LP\n").getBytes(StandardCharsets.UTF_8));
+
+        List<BasicShipment> shipments = new ArrayList<>();
+        try (ShipmentFileFollower follower = new ShipmentFileFollower(file, 0)) {
+            assertEquals(2, follower.poll(shipments::add));
+        }
+
+        assertEquals(longProvider, shipments.get(0).getShippingProvider());
+        assertEquals("2023-01-16", shipments.get(1).getDate());
+    }
+
+    /**
+     * Tests that a truncated file is read again from the start.
+     */
+    @Test
+    public void testPollAfterTruncation() throws IOException {
+        Path file = Files.createTempFile("follow", ".txt");
+        file.toFile().deleteOnExit();
+        Files.write(file, "2023-01-15 S LP\n2023-01-16 M MR\n".getBytes(StandardCharsets.UTF_8));
+
+        List<BasicShipment> shipments = new ArrayList<>();
+        try (ShipmentFileFollower follower = new ShipmentFileFollower(file, 0)) {
+            follower.poll(shipments::add);
+            Files.write(file, "2023-02-01 L LP\n".getBytes(StandardCharsets.UTF_8));
+            assertEquals(1, follower.poll(shipments::add));
+        }
+
+        assertEquals("2023-02-01", shipments.get(2).getDate());
+    }
+
+    private static void append(Path file, String text) throws IOException {
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+}
@@ -58,4 +58,36 @@ public class ShipmentResultFormatterTest {
 
         assertEquals("2023-01-15 LP Ignored", formatter.toString());
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that formatTo appends the same text as toString and
+     * that a single builder can be reused for several results.
+     */
+    @Test
+    public void testFormatToReusesBuilder() {
+        StringBuilder out = new StringBuilder();
+
+        new ShipmentResultFormatter(new Shipment("2023-01-15", "L", "LP"), 6.9, 0.0, 6.9).formatTo(out);
+        assertEquals("2023-01-15 L LP 0.00 6.90", out.toString());
+
+        out.setLength(0);
+        new ShipmentResultFormatter(new BasicShipment("2023-01-16", "CUSPS"), 0.0, 0.0, 0.0).formatTo(out);
+        assertEquals("2023-01-16 CUSPS Ignored", out.toString());
+    }
+
+    /**
+     * Tests amounts that are not whole cents.
+     * Verifies that they are shown exactly as String.format("%.2f") shows
+     * them, including half cents and results of floating point subtraction.
+     */
+    @Test
+    public void testDoubleAmountsMatchStringFormat() {
+        Shipment shipment = new Shipment("2023-01-15", "S", "LP");
+        double[] amounts = {0.5, 6.9, 4.9 - 1.5, 10.0 - 6.9, 0.015, 1.005, 2.675, 0.125, 123456.785};
+        for (double amount : amounts) {
+            ShipmentResultFormatter formatter = new ShipmentResultFormatter(shipment, amount, amount, amount);
+            String text = String.format("%.2f", amount);
+            assertEquals("2023-01-15 S LP " + text + " " + text, formatter.toString());
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package inputAndOutput;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import shipmentModel.BasicShipment;
+import shipmentModel.Shipment;
+import org.junit.Test;
+
+public class ShipmentResultTest {
+
+    /**
+     * Tests reusing one result for several shipments.
+     * Verifies that each set replaces all values and that the result is
+     * formatted like ShipmentResultFormatter, including ignored shipments.
+     */
+    @Test
+    public void testReuse() {
+        ShipmentResult result = new ShipmentResult();
+        StringBuilder line = new StringBuilder();
+
+        Shipment shipment = new Shipment("2023-01-15", "S", "LP");
+        result.set(shipment, 200, 150, 50);
+        assertSame(shipment, result.getBasicShipment());
+        assertFalse(result.isIgnored());
+        assertEquals(0.5, result.getDiscount(), 0.001);
+        assertEquals(ShipmentResultFormatter.fromCents(shipment, 200, 150, 50).toString(), result.formatTo(line).toString());
+
+        BasicShipment ignored = new BasicShipment("2023-01-16", "CUSPS");
+        line.setLength(0);
+        result.set(ignored, 0, 0, 0);
+        assertTrue(result.isIgnored());
+        assertEquals("2023-01-16 CUSPS Ignored", result.formatTo(line).toString());
+        assertEquals("2023-01-16 CUSPS Ignored", result.toString());
+    }
+
+    /**
+     * Tests storing results in a columnar buffer out of order.
+     * Verifies that each position returns the values stored at it.
+     */
+    @Test
+    public void testResultBuffer() {
+        ShipmentResultBuffer buffer = new ShipmentResultBuffer(2);
+        Shipment shipment = new Shipment("2023-01-15", "M", "MR");
+        BasicShipment ignored = new BasicShipment("2023-01-16", "CUSPS");
+        ShipmentResult result = new ShipmentResult();
+
+        buffer.set(1, result.set(ignored, 0, 0, 0));
+        buffer.set(0, result.set(shipment, 300, 250, 50));
+
+        assertEquals(2, buffer.capacity());
+        assertEquals(300, buffer.getOriginalPriceCents(0));
+        assertEquals(250, buffer.getFinalPriceCents(0));
+        assertEquals(50, buffer.getDiscountCents(0));
+        assertFalse(buffer.isIgnored(0));
+        assertTrue(buffer.isIgnored(1));
+        assertEquals("2023-01-15 M MR 2.50 0.50", buffer.get(0, shipment, result).toString());
+    }
+}
@@ -0,0 +1,108 @@
+package inputAndOutput;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import shipmentModel.BasicShipment;
+import org.junit.Test;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+public class TextShipmentInputTest {
+    private static final String TEXT = "2023-01-15 S LP\r\n\n2023-01-16 M MR\r2023-01-17 LP\n2023-01-18 XL DPÜ\n\n2023-01-19 L LP";
+
+    private final FileReader fileReader = new FileReader();
+
+    /**
+     * Tests the offsets reported while reading a text file.
+     * Verifies that each offset is the byte offset after the line of the last
+     * shipment, whatever its line terminator, and that lines the parser
+     * rejects are skipped.
+     */
+    @Test
+    public void testOffsetsFollowLines() throws IOException {
+        Path file = write(".txt");
+
+        List<Long> offsets = new ArrayList<>();
+        try (TextShipmentInput input = new TextShipmentInput(file, fileReader::parseLine)) {
+            assertEquals(0, input.offset());
+            while (input.hasNext()) {
+                input.next();
+                offsets.add(input.offset());
+            }
+        }
+
+        int end = TEXT.getBytes(StandardCharsets.UTF_8).length;
+        assertEquals(List.of(17L, 34L, 48L, 67L, (long) end), offsets);
+    }
+
+    /**
+     * Tests resuming plain and gzip-compressed files at offsets taken while
+     * reading them.
+     * Verifies that a new input positioned at each offset returns the same
+     * remaining shipments.
+     */
+    @Test
+    public void testSeekContinuesAtOffset() throws IOException {
+        for (String extension : new String[]{".txt", FileReader.GZIP_EXTENSION}) {
+            Path file = write(extension);
+
+            List<String> all = new ArrayList<>();
+            List<Long> offsets = new ArrayList<>();
+            try (TextShipmentInput input = new TextShipmentInput(file, fileReader::parseLine)) {
+                offsets.add(input.offset());
+                while (input.hasNext()) {
+                    BasicShipment shipment = input.next();
+                    all.add(shipment.getDate() + " " + shipment.getShippingProvider());
+                    offsets.add(input.offset());
+                }
+            }
+            assertEquals(5, all.size());
+
+            for (int start = 0; start < offsets.size(); start++) {
+                List<String> rest = new ArrayList<>();
+                try (TextShipmentInput input = new TextShipmentInput(file, fileReader::parseLine)) {
+                    input.seek(offsets.get(start));
+                    while (input.hasNext()) {
+                        BasicShipment shipment = input.next();
+                        rest.add(shipment.getDate() + " " + shipment.getShippingProvider());
+                    }
+                }
+                assertEquals(all.subList(start, all.size()), rest, extension + " resumed at shipment " + start);
+            }
+        }
+    }
+
+    /**
+     * Tests positioning an input beyond the end of its file or after reading it.
+     * Verifies that both are rejected.
+     */
+    @Test
+    public void testSeekRejectsInvalidUse() throws IOException {
+        Path file = write(".txt");
+
+        try (TextShipmentInput input = new TextShipmentInput(file, fileReader::parseLine)) {
+            assertThrows(IOException.class, () -> input.seek(1000));
+        }
+        try (TextShipmentInput input = new TextShipmentInput(file, fileReader::parseLine)) {
+            input.next();
+            assertThrows(IllegalStateException.class, () -> input.seek(0));
+        }
+    }
+
+    private static Path write(String extension) throws IOException {
+        Path file = Files.createTempFile("shipments", extension);
+        file.toFile().deleteOnExit();
+        try (OutputStream out = FileReader.isGzip(extension)
+                ? new GZIPOutputStream(Files.newOutputStream(file))
+                : Files.newOutputStream(file)) {
+            out.write(TEXT.getBytes(StandardCharsets.UTF_8));
+        }
+        return file;
+    }
+}
@@ -3,6 +3,12 @@ package service;
 import static org.junit.jupiter.api.Assertions.*;
 
 import org.junit.Test;
+import shipmentModel.ShipmentDates;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class DiscountStateTrackerTest {
 
@@ -46,4 +52,205 @@ public class DiscountStateTrackerTest {
         tracker.markLpLargeFreeShipmentApplied("2023-01");
         assertTrue(tracker.isLpLargeFreeShipmentApplied("2023-01"));
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that monthly totals are kept exactly in cents.
+     * Verifies that many small discounts add up to the limit without
+     * floating point drift, leaving exactly nothing remaining.
+     */
+    @Test
+    public void testDiscountTrackingIsExact() {
+        DiscountStateTracker tracker = new DiscountStateTracker(10.0);
+        for (int i = 0; i < 100; i++) {
+            tracker.addDiscount("2023-01", 0.1);
+        }
+        assertEquals(1000, tracker.getTotalMonthDiscountCents("2023-01"));
+        assertEquals(0, tracker.getRemainingDiscountCents("2023-01"));
+        assertEquals(0.0, tracker.getRemainingDiscount("2023-01"));
+    }
+
+    /**
+     * Tests that reservations never grant more than the remaining budget.
+     * Verifies partial grants at the limit, nothing granted once the month
+     * is exhausted, and that released discounts become available again.
+     */
+    @Test
+    public void testReserveDiscount() {
+        DiscountStateTracker tracker = new DiscountStateTracker(10.0);
+        assertEquals(600, tracker.reserveDiscountCents("2023-01", 600));
+        assertEquals(400, tracker.reserveDiscountCents("2023-01", 600));
+        assertEquals(0, tracker.reserveDiscountCents("2023-01", 100));
+        assertEquals(0, tracker.getRemainingDiscountCents("2023-01"));
+
+        tracker.releaseDiscountCents("2023-01", 150);
+        assertEquals(150, tracker.reserveDiscountCents("2023-01", 600));
+        assertEquals(1000, tracker.reserveDiscountCents("2023-02", 1000));
+    }
+
+    /**
+     * Tests that one tracker can be shared by threads.
+     * Verifies that concurrent reservations add up exactly to the limit
+     * and that the free shipment is marked by exactly one thread.
+     */
+    @Test
+    public void testConcurrentUpdates() throws InterruptedException {
+        DiscountStateTracker tracker = new DiscountStateTracker(1000.0);
+        AtomicLong granted = new AtomicLong();
+        AtomicInteger marked = new AtomicInteger();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    granted.addAndGet(tracker.reserveDiscountCents("2023-01", 3));
+                    if (tracker.incrementAndGetLpLargeCount("2023-01") >= 3
+                            && tracker.tryMarkLpLargeFreeShipmentApplied("2023-01")) {
+                        marked.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(100_000, granted.get());
+        assertEquals(100_000, tracker.getTotalMonthDiscountCents("2023-01"));
+        assertEquals(80_000, tracker.getLpLargeCount("2023-01"));
+        assertEquals(1, marked.get());
+    }
+
+    /**
+     * Tests that the month key methods share state with the YYYY-MM methods.
+     */
+    @Test
+    public void testMonthKeyAccess() {
+        DiscountStateTracker tracker = new DiscountStateTracker(10.0);
+        int january = ShipmentDates.parseMonth("2023-01");
+
+        assertEquals(400, tracker.reserveDiscountCents(january, 400));
+        assertEquals(400, tracker.getTotalMonthDiscountCents("2023-01"));
+        assertEquals(600, tracker.getRemainingDiscountCents(january));
+        assertEquals(1, tracker.incrementAndGetLpLargeCount(january));
+        assertEquals(1, tracker.getLpLargeCount("2023-01"));
+        assertThrows(IllegalArgumentException.class, () -> tracker.getTotalMonthDiscountCents("2023-1"));
+    }
+
+    /**
+     * Tests closing months.
+     * Verifies that closed months are evicted, grant no further discount
+     * and that later months are unaffected.
+     */
+    @Test
+    public void testCloseMonthsBefore() {
+        DiscountStateTracker tracker = new DiscountStateTracker(10.0);
+        int january = ShipmentDates.parseMonth("2023-01");
+        int february = january + 1;
+        tracker.reserveDiscountCents(january, 300);
+        tracker.reserveDiscountCents(february, 200);
+
+        tracker.closeMonthsBefore(february);
+
+        assertEquals(1, tracker.getOpenMonthCount());
+        assertEquals(0, tracker.getRemainingDiscountCents(january));
+        assertEquals(0, tracker.reserveDiscountCents(january, 100));
+        assertEquals(0, tracker.incrementAndGetLpLargeCount(january));
+        assertFalse(tracker.tryMarkLpLargeFreeShipmentApplied(january));
+        assertEquals(1, tracker.getOpenMonthCount());
+        assertEquals(800, tracker.getRemainingDiscountCents(february));
+    }
+
+    /**
+     * Tests a tracker that keeps a fixed number of months open.
+     * Verifies that seeing a new month closes the months that fall out of the window.
+     */
+    @Test
+    public void testOpenMonthWindow() {
+        DiscountStateTracker tracker = new DiscountStateTracker(10.0, 2);
+        int january = ShipmentDates.parseMonth("2023-01");
+        for (int month = january; month < january + 12; month++) {
+            tracker.reserveDiscountCents(month, 100);
+        }
+
+        assertEquals(2, tracker.getOpenMonthCount());
+        assertEquals(100, tracker.getTotalMonthDiscountCents(january + 10));
+        assertEquals(0, tracker.getTotalMonthDiscountCents(january + 9));
+        assertEquals(0, tracker.reserveDiscountCents(january, 100));
+    }
+
+    /**
+     * Tests that many months can be tracked without closing any.
+     */
+    @Test
+    public void testManyOpenMonths() {
+        DiscountStateTracker tracker = new DiscountStateTracker(10.0);
+        int january = ShipmentDates.parseMonth("2000-01");
+        for (int month = january; month < january + 1200; month++) {
+            tracker.reserveDiscountCents(month, month - january + 1);
+        }
+
+        assertEquals(1200, tracker.getOpenMonthCount());
+        for (int month = january; month < january + 1200; month++) {
+            assertEquals(Math.min(1000, month - january + 1), tracker.getTotalMonthDiscountCents(month));
+        }
+    }
+
+    /**
+     * Tests rule counters.
+     * Verifies that a counter keeps its slot, that counters are independent
+     * per month and per counter, that the LP large methods use the tracker's
+     * own LP large counter, and that two counters with the same name count
+     * separately.
+     */
+    @Test
+    public void testRuleCounters() {
+        DiscountStateTracker tracker = new DiscountStateTracker(10.0);
+        RuleCounter counter = new RuleCounter("test M MR");
+        int january = ShipmentDates.parseMonth("2023-01");
+
+        int slot = tracker.counterSlot(counter);
+        assertEquals(slot, tracker.counterSlot(counter));
+        assertEquals("test M MR", tracker.counterName(slot));
+        assertNotEquals(DiscountStateTracker.LP_LARGE_COUNTER, slot);
+
+        assertEquals(1, tracker.incrementAndGetCount(january, counter));
+        assertEquals(2, tracker.incrementAndGetCount(january, counter));
+        assertEquals(0, tracker.getCount(january + 1, counter));
+        assertEquals(0, tracker.getLpLargeCount(january));
+        assertTrue(tracker.tryMarkApplied(january, counter));
+        assertFalse(tracker.tryMarkApplied(january, counter));
+        assertFalse(tracker.isLpLargeFreeShipmentApplied(january));
+
+        tracker.incrementAndGetLpLargeCount(january);
+        assertEquals(1, tracker.getCount(january, DiscountStateTracker.LP_LARGE_COUNTER));
+
+        RuleCounter sameName = new RuleCounter("test M MR");
+        assertEquals(1, tracker.incrementAndGetCount(january, sameName));
+        assertEquals(2, tracker.getCount(january, counter));
+    }
+
+    /**
+     * Tests registering a counter after months already hold state.
+     * Verifies that the open months grow to hold it and keep their counts,
+     * and that a new tracker holds only the counters registered with it.
+     */
+    @Test
+    public void testRegisterCounterGrowsOpenMonths() {
+        DiscountStateTracker tracker = new DiscountStateTracker(10.0);
+        int january = ShipmentDates.parseMonth("2023-01");
+        RuleCounter first = new RuleCounter("first");
+        tracker.registerCounter(first);
+        tracker.incrementAndGetCount(january, first);
+
+        RuleCounter second = new RuleCounter("second");
+        int slot = tracker.registerCounter(second);
+        assertEquals(slot + 1, tracker.getCounts(january).length);
+        assertEquals(1, tracker.getCount(january, first));
+        assertEquals(1, tracker.incrementAndGetCount(january, second));
+
+        assertEquals(1, new DiscountStateTracker(10.0).counterCount());
+    }
+}
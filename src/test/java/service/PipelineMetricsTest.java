@@ -0,0 +1,86 @@
+package service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import discountRules.NthShipmentFreeRule;
+import org.junit.Test;
+import shipmentModel.PackageSize;
+import shipmentModel.Shipment;
+
+import java.util.List;
+
+public class PipelineMetricsTest {
+
+    /**
+     * Tests the outcome counters of a rule.
+     * Verifies that only non-zero discounts count as fired and that a
+     * discount granted in part counts as truncated.
+     */
+    @Test
+    public void testRuleOutcomes() {
+        PipelineMetrics metrics = new PipelineMetrics(List.of(new FixedRule()));
+        metrics.recordRuleOutcome(0, 0, 0);
+        metrics.recordRuleOutcome(0, 200, 200);
+        metrics.recordRuleOutcome(0, 200, 50);
+
+        PipelineMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.getRuleCount());
+        assertEquals("0 FixedRule", snapshot.getRuleName(0));
+        assertEquals(2, snapshot.getFired(0));
+        assertEquals(250, snapshot.getGrantedCents(0));
+        assertEquals(1, snapshot.getTruncated(0));
+    }
+
+    /**
+     * Tests the names of two rules with the same definition.
+     * Verifies that each is labelled by its position and its definition.
+     */
+    @Test
+    public void testRuleNamesAreUnique() {
+        PipelineMetrics metrics = new PipelineMetrics(List.of(
+                new NthShipmentFreeRule(2, PackageSize.M, "LP"), new NthShipmentFreeRule(2, PackageSize.M, "LP")));
+
+        PipelineMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals("0 nth-free 2 M LP", snapshot.getRuleName(0));
+        assertEquals("1 nth-free 2 M LP", snapshot.getRuleName(1));
+        assertTrue(snapshot.toString().startsWith("rule 0 nth-free 2 M LP fired=0"));
+    }
+
+    /**
+     * Tests the latency histograms.
+     * Verifies the count, total and percentile bounds of recorded stage latencies,
+     * and that a snapshot does not change when recording continues.
+     */
+    @Test
+    public void testStageLatencies() {
+        PipelineMetrics metrics = new PipelineMetrics(List.of());
+        for (int i = 0; i < 99; i++) {
+            metrics.recordStage(PipelineMetrics.Stage.PARSE, 100);
+        }
+        metrics.recordStage(PipelineMetrics.Stage.PARSE, 5000);
+
+        PipelineMetrics.HistogramSnapshot parse = metrics.snapshot().getStageLatency(PipelineMetrics.Stage.PARSE);
+        metrics.recordStage(PipelineMetrics.Stage.PARSE, 100);
+        assertEquals(100, parse.getCount());
+        assertEquals(99 * 100 + 5000, parse.getTotalNanos());
+        assertEquals(127, parse.getPercentileNanos(50));
+        assertEquals(127, parse.getPercentileNanos(99));
+        assertEquals(8191, parse.getPercentileNanos(100));
+        assertEquals(0, metrics.snapshot().getStageLatency(PipelineMetrics.Stage.WRITE).getPercentileNanos(50));
+    }
+
+    /**
+     * Rule used only for its name.
+     */
+    private static class FixedRule implements DiscountContractRule {
+        @Override
+        public boolean applies(Shipment shipment) {
+            return true;
+        }
+
+        @Override
+        public double calculateDiscount(Shipment shipment, double originalPrice, DiscountStateTracker discountStateTracker) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.Test;
+import shipmentModel.BasicShipment;
+import shipmentModel.PackageSize;
+import shipmentModel.ProviderRegistry;
+import shipmentModel.Shipment;
+import shipmentModel.ShipmentDates;
+
+public class ShipmentBlockTest {
+
+    /**
+     * Tests filling a block.
+     * Verifies that shipment fields land in their columns, that unsized
+     * shipments get NO_ID, and that a full block rejects more shipments
+     * until it is cleared.
+     */
+    @Test
+    public void testAddAndClear() {
+        ShipmentBlock block = new ShipmentBlock(2);
+        block.add(new Shipment("2023-02-15", "M", "LP"));
+        block.add(new BasicShipment("2023-02-16", "CUSPS"));
+
+        assertEquals(2, block.size());
+        assertTrue(block.isFull());
+        assertEquals(ShipmentDates.parse("2023-02-15"), block.getDates()[0]);
+        assertEquals(ShipmentDates.parseMonth("2023-02"), block.getMonthKeys()[0]);
+        assertEquals(PackageSize.M.getId(), block.getSizeIds()[0]);
+        assertEquals(ProviderRegistry.idOf("LP"), block.getProviderIds()[0]);
+        assertEquals(ShipmentBlock.NO_ID, block.getSizeIds()[1]);
+        assertThrows(IllegalStateException.class, () -> block.add(new Shipment("2023-02-17", "S", "MR")));
+
+        block.clear();
+        assertEquals(0, block.size());
+        assertNull(block.getShipment(0));
+    }
+}
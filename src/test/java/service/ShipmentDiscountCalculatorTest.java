@@ -2,8 +2,13 @@ package service;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import discountRules.SmallestPackageRule;
+import discountRules.ThirdLargeLPFreeRule;
+import inputAndOutput.ShipmentResult;
 import inputAndOutput.ShipmentResultFormatter;
 import shipmentModel.BasicShipment;
+import shipmentModel.PackageSize;
+import shipmentModel.ProviderRegistry;
 import shipmentModel.Shipment;
 import org.junit.Test;
 import java.util.ArrayList;
@@ -33,6 +38,30 @@ public class ShipmentDiscountCalculatorTest {
         assertEquals(1.0, result.getDiscount(), 0.001);
     }
 
+    /**
+     * Tests calculating into a result supplied by the caller.
+     * Verifies that one result can be reused and holds the same values
+     * as the result objects of calculateDiscount.
+     */
+    @Test
+    public void testCalculateDiscountIntoReusedResult() {
+        List<DiscountContractRule> rules = List.of(new MockDiscountRule(true, 1.0));
+        ShipmentDiscountCalculator calculator = new ShipmentDiscountCalculator(new MockPriceProvider(),
+                new DiscountStateTracker(10.0), rules);
+        ShipmentDiscountCalculator reference = new ShipmentDiscountCalculator(new MockPriceProvider(),
+                new DiscountStateTracker(10.0), rules);
+
+        ShipmentResult result = new ShipmentResult();
+        for (BasicShipment shipment : List.of(new Shipment("2023-01-15", "S", "LP"), new BasicShipment("2023-01-15", "LP"))) {
+            ShipmentResultFormatter expected = reference.calculateDiscount(shipment);
+            assertSame(result, calculator.calculateDiscount(shipment, result));
+            assertSame(shipment, result.getBasicShipment());
+            assertEquals(expected.getOriginalPriceCents(), result.getOriginalPriceCents());
+            assertEquals(expected.getFinalPriceCents(), result.getFinalPriceCents());
+            assertEquals(expected.getDiscountCents(), result.getDiscountCents());
+        }
+    }
+
     /**
      * Tests the handling of a basic shipment (without size information).
      * Verifies that the calculator returns zero values for price and discount.
@@ -97,6 +126,28 @@ public class ShipmentDiscountCalculatorTest {
         assertEquals(2.0, result.getDiscount(), 0.001); // Limited to 2.0
     }
 
+    /**
+     * Tests a shipment that arrives after its month was closed.
+     * Verifies that it is rejected one by one and in blocks instead of
+     * silently getting no discount, while open months are still calculated.
+     */
+    @Test
+    public void testRejectsShipmentOfClosedMonth() {
+        DiscountStateTracker tracker = new DiscountStateTracker(10.0, 1);
+        List<DiscountContractRule> rules = List.of(new MockDiscountRule(true, 1.0));
+        ShipmentDiscountCalculator calculator = new ShipmentDiscountCalculator(new MockPriceProvider(), tracker, rules);
+
+        calculator.calculateDiscount(new Shipment("2023-01-15", "S", "LP"));
+        assertEquals(1.0, calculator.calculateDiscount(new Shipment("2023-02-01", "S", "LP")).getDiscount(), 0.001);
+
+        Shipment late = new Shipment("2023-01-31", "S", "LP");
+        assertThrows(IllegalArgumentException.class, () -> calculator.calculateDiscount(late));
+        ShipmentBlock block = new ShipmentBlock(4);
+        block.add(late);
+        assertThrows(IllegalArgumentException.class, () -> calculator.calculateDiscounts(block));
+        assertEquals(1.0, calculator.calculateDiscount(new Shipment("2023-02-02", "S", "LP")).getDiscount(), 0.001);
+    }
+
     /**
      * Mock implementation of ShipmentPriceProvider for testing.
      * Returns fixed values for prices.
@@ -113,6 +164,116 @@ public class ShipmentDiscountCalculatorTest {
         }
     }
 
+    /**
+     * Tests dispatch of rules that declare a scope.
+     * Verifies that a scoped rule runs only for shipments within its scope,
+     * without being asked whether it applies, and that unscoped rules
+     * are still asked.
+     */
+    @Test
+    public void testScopedRulesDispatch() {
+        MockPriceProvider priceProvider = new MockPriceProvider();
+        DiscountStateTracker tracker = new DiscountStateTracker(10.0);
+        List<DiscountContractRule> rules = new ArrayList<>();
+        rules.add(new ScopedMockRule(RuleScope.of(ProviderRegistry.idOf("LP"), PackageSize.S), 1.0));
+        rules.add(new ScopedMockRule(RuleScope.ofSize(PackageSize.M), 2.0));
+        rules.add(new MockDiscountRule(false, 4.0));
+
+        ShipmentDiscountCalculator calculator = new ShipmentDiscountCalculator(priceProvider, tracker, rules);
+
+        assertEquals(1.0, calculator.calculateDiscount(new Shipment("2023-01-15", "S", "LP")).getDiscount(), 0.001);
+        assertEquals(0.0, calculator.calculateDiscount(new Shipment("2023-01-15", "S", "MR")).getDiscount(), 0.001);
+        assertEquals(2.0, calculator.calculateDiscount(new Shipment("2023-01-15", "M", "MR")).getDiscount(), 0.001);
+        assertEquals(0.0, calculator.calculateDiscount(new Shipment("2023-01-15", "L", "LP")).getDiscount(), 0.001);
+    }
+
+    /**
+     * Tests block calculation against shipment by shipment calculation.
+     * Verifies, with a cap low enough to run out within blocks and a rule
+     * using the default block implementation, that the results and the
+     * tracker state afterwards are the same.
+     */
+    @Test
+    public void testCalculateDiscountsMatchesSequential() {
+        List<BasicShipment> shipments = new ArrayList<>();
+        String[] sizes = {"S", "L", "M", "L"};
+        for (int i = 0; i < 3000; i++) {
+            String date = String.format("2023-%02d-%02d", 1 + i / 250, 1 + i % 28);
+            if (i % 101 == 0) {
+                shipments.add(new BasicShipment(date, "CUSPS"));
+            } else {
+                shipments.add(new Shipment(date, sizes[i % 4], i % 3 == 0 ? "MR" : "LP"));
+            }
+        }
+
+        ShipmentPriceService priceService = new ShipmentPriceService();
+        priceService.addProviderAndPrices("LP", new ShippingProviderPricing(1.5, 4.9, 6.9));
+        priceService.addProviderAndPrices("MR", new ShippingProviderPricing(2.0, 3.0, 4.0));
+        List<DiscountContractRule> rules = List.of(new SmallestPackageRule(priceService), new ThirdLargeLPFreeRule(),
+                new MockDiscountRule(true, 0.05));
+
+        DiscountStateTracker sequentialTracker = new DiscountStateTracker(7.5);
+        ShipmentDiscountCalculator sequential = new ShipmentDiscountCalculator(priceService, sequentialTracker, rules);
+        DiscountStateTracker blockTracker = new DiscountStateTracker(7.5);
+        ShipmentDiscountCalculator blocks = new ShipmentDiscountCalculator(priceService, blockTracker, rules);
+
+        ShipmentBlock block = new ShipmentBlock(512);
+        for (int from = 0; from < shipments.size(); from += block.capacity()) {
+            block.clear();
+            for (int i = from; i < Math.min(from + block.capacity(), shipments.size()); i++) {
+                block.add(shipments.get(i));
+            }
+            blocks.calculateDiscounts(block);
+
+            for (int i = 0; i < block.size(); i++) {
+                ShipmentResultFormatter expected = sequential.calculateDiscount(shipments.get(from + i));
+                assertEquals(expected.getOriginalPriceCents(), block.getOriginalPrices()[i]);
+                assertEquals(expected.getFinalPriceCents(), block.getFinalPrices()[i]);
+                assertEquals(expected.getDiscountCents(), block.getDiscounts()[i]);
+            }
+        }
+
+        assertArrayEquals(sequentialTracker.getOpenMonthKeys(), blockTracker.getOpenMonthKeys());
+        for (int month : sequentialTracker.getOpenMonthKeys()) {
+            assertEquals(sequentialTracker.getTotalMonthDiscountCents(month), blockTracker.getTotalMonthDiscountCents(month));
+            assertArrayEquals(sequentialTracker.getCounts(month), blockTracker.getCounts(month));
+            assertArrayEquals(sequentialTracker.getAppliedFlags(month), blockTracker.getAppliedFlags(month));
+        }
+    }
+
+    /**
+     * Tests the metrics recorded while calculating discounts.
+     * Verifies that every rule evaluation and pipeline stage is timed and that
+     * a discount cut short by the monthly cap is counted as truncated, both
+     * shipment by shipment and in blocks.
+     */
+    @Test
+    public void testPipelineMetrics() {
+        List<DiscountContractRule> rules = List.of(new MockDiscountRule(true, 4.0), new MockDiscountRule(true, 0.0));
+        PipelineMetrics metrics = new PipelineMetrics(rules);
+        ShipmentDiscountCalculator calculator = new ShipmentDiscountCalculator(new MockPriceProvider(),
+                new DiscountStateTracker(10.0), rules, metrics);
+
+        for (int i = 0; i < 4; i++) {
+            calculator.calculateDiscount(new Shipment("2023-01-15", "S", "LP"));
+        }
+        ShipmentBlock block = new ShipmentBlock(8);
+        for (int i = 0; i < 4; i++) {
+            block.add(new Shipment("2023-02-15", "S", "LP"));
+        }
+        calculator.calculateDiscounts(block);
+
+        PipelineMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals("0 MockDiscountRule", snapshot.getRuleName(0));
+        assertEquals(6, snapshot.getFired(0));
+        assertEquals(2000, snapshot.getGrantedCents(0));
+        assertEquals(2, snapshot.getTruncated(0));
+        assertEquals(0, snapshot.getFired(1));
+        assertEquals(3 + 1 + 3, snapshot.getRuleLatency(0).getCount());
+        assertEquals(4 + 1, snapshot.getStageLatency(PipelineMetrics.Stage.PRICE).getCount());
+        assertEquals(4 + 1, snapshot.getStageLatency(PipelineMetrics.Stage.DISCOUNT).getCount());
+    }
+
     /**
      * Mock implementation of DiscountContractRule for testing.
      * Can be configured to apply or not apply, and returns a fixed discount.
@@ -136,4 +297,33 @@ public class ShipmentDiscountCalculatorTest {
             return discount;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Mock rule with a declared scope that returns a fixed discount.
+     * Fails if asked whether it applies, since the scope decides that.
+     */
+    private static class ScopedMockRule implements DiscountContractRule {
+        private final RuleScope scope;
+        private final double discount;
+
+        public ScopedMockRule(RuleScope scope, double discount) {
+            this.scope = scope;
+            this.discount = discount;
+        }
+
+        @Override
+        public boolean applies(Shipment shipment) {
+            throw new AssertionError("applies called on a scoped rule");
+        }
+
+        @Override
+        public RuleScope getScope() {
+            return scope;
+        }
+
+        @Override
+        public double calculateDiscount(Shipment shipment, double originalPrice, DiscountStateTracker discountStateTracker) {
+            return discount;
+        }
+    }
+}
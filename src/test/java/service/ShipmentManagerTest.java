@@ -2,12 +2,28 @@ package service;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import discountRules.SmallestPackageRule;
+import discountRules.ThirdLargeLPFreeRule;
+import inputAndOutput.DiscountCheckpointStore;
+import inputAndOutput.FileReader;
+import inputAndOutput.ListResultSink;
+import inputAndOutput.ResumableShipmentInput;
+import inputAndOutput.ShipmentResult;
 import inputAndOutput.ShipmentResultFormatter;
+import inputAndOutput.TextShipmentInput;
 import shipmentModel.BasicShipment;
 import shipmentModel.Shipment;
 import org.junit.Test;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 public class ShipmentManagerTest {
 
@@ -34,6 +50,240 @@ public class ShipmentManagerTest {
         assertEquals("Mock Result", results.get(1));
     }
 
+    /**
+     * Tests the streaming overload of manageShipments.
+     * Verifies that every shipment result is written to the sink in order.
+     */
+    @Test
+    public void testManageShipmentsStream() {
+        MockDiscountCalculator calculator = new MockDiscountCalculator();
+        ShipmentManager manager = new ShipmentManager(calculator);
+
+        Stream<BasicShipment> shipments = Stream.of(
+                new Shipment("2023-01-15", "S", "LP"),
+                new BasicShipment("2023-01-16", "MR"));
+
+        ListResultSink sink = new ListResultSink();
+        manager.manageShipments(shipments, sink);
+        List<String> results = sink.getLines();
+
+        assertEquals(2, results.size());
+        assertEquals("Mock Result", results.get(0));
+        assertEquals("Mock Result", results.get(1));
+    }
+
+    /**
+     * Tests month-partitioned processing.
+     * Verifies that results over several interleaved months, with unsized
+     * shipments mixed in, equal those of sequential processing, both for a
+     * list and for a stream split into batches, including a batch that
+     * grows its buffers past their initial size.
+     */
+    @Test
+    public void testManageShipmentsByMonthMatchesSequential() {
+        List<BasicShipment> shipments = new ArrayList<>();
+        String[] sizes = {"S", "M", "L"};
+        String[] providers = {"LP", "MR"};
+        for (int i = 0; i < 2000; i++) {
+            String date = String.format("%d-%02d-%02d", 2020 + i % 3, 1 + i % 12, 1 + i % 28);
+            if (i % 97 == 0) {
+                shipments.add(new BasicShipment(date, "CUSPS"));
+            } else {
+                shipments.add(new Shipment(date, sizes[i % 3], providers[i / 3 % 2]));
+            }
+        }
+
+        List<String> expected = new ShipmentManager(newCalculator()).manageShipments(shipments);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertEquals(expected, new ShipmentManager(newCalculator()).manageShipmentsByMonth(shipments, pool));
+
+            ListResultSink sink = new ListResultSink();
+            new ShipmentManager(newCalculator()).manageShipmentsByMonth(shipments.stream(), sink, pool, 300);
+            assertEquals(expected, sink.getLines());
+
+            ListResultSink growingSink = new ListResultSink();
+            new ShipmentManager(newCalculator()).manageShipmentsByMonth(shipments.stream(), growingSink, pool, 5000);
+            assertEquals(expected, growingSink.getLines());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Tests the staged pipeline against the streaming path.
+     * Verifies, with batches much smaller than the input so that every stage
+     * waits on the others, that the results come out the same and in input
+     * order, skipping lines the parser rejects.
+     */
+    @Test
+    public void testManageShipmentsPipelinedMatchesSequential() throws IOException {
+        FileReader fileReader = new FileReader();
+        List<String> lines = new ArrayList<>();
+        String[] sizes = {"S", "M", "L"};
+        String[] providers = {"LP", "MR"};
+        for (int i = 0; i < 2000; i++) {
+            String date = String.format("2021-%02d-%02d", 1 + i / 170, 1 + i % 28);
+            if (i % 97 == 0) {
+                lines.add(date + " CUSPS");
+            } else if (i % 101 == 0) {
+                lines.add("unparsable");
+            } else {
+                lines.add(date + " " + sizes[i % 3] + " " + providers[i / 3 % 2]);
+            }
+        }
+
+        ListResultSink expected = new ListResultSink();
+        new ShipmentManager(newCalculator()).manageShipments(lines.stream().map(fileReader::parseLine)
+                .filter(Objects::nonNull), expected);
+        ListResultSink sink = new ListResultSink();
+        new ShipmentManager(newCalculator()).manageShipmentsPipelined(lines.stream(), fileReader::parseLine, sink, 64, 3);
+        assertEquals(expected.getLines(), sink.getLines());
+    }
+
+    /**
+     * Tests the pipeline with a ring of two single-line batches.
+     * Verifies that no stage stops early when the reader refills a batch it
+     * has just handed on, so every record reaches the sink.
+     */
+    @Test(timeout = 60_000)
+    public void testManageShipmentsPipelinedKeepsAllBatches() throws IOException {
+        FileReader fileReader = new FileReader();
+        for (int run = 0; run < 20; run++) {
+            ListResultSink sink = new ListResultSink();
+            new ShipmentManager(newCalculator()).manageShipmentsPipelined(
+                    Stream.generate(() -> "2021-01-01 M MR").limit(1000), fileReader::parseLine, sink, 1, 2);
+            assertEquals(1000, sink.getLines().size());
+        }
+    }
+
+    /**
+     * Tests a failure in a pipeline stage.
+     * Verifies that the exception reaches the caller instead of the pipeline hanging.
+     */
+    @Test
+    public void testManageShipmentsPipelinedFailure() {
+        Stream<String> lines = Stream.generate(() -> "2021-01-01 S LP").limit(10_000);
+        ShipmentManager shipmentManager = new ShipmentManager(newCalculator());
+        IllegalStateException failure = assertThrows(IllegalStateException.class,
+                () -> shipmentManager.manageShipmentsPipelined(lines, line -> {
+                    throw new IllegalStateException("broken parser");
+                }, new ListResultSink(), 64, 3));
+        assertEquals("broken parser", failure.getMessage());
+    }
+
+    /**
+     * Tests resuming a checkpointed run.
+     * Verifies that a run over part of the input followed by a run over the
+     * whole input with a new calculator gives the results of one sequential run.
+     */
+    @Test
+    public void testManageShipmentsResumesFromCheckpoint() throws IOException {
+        List<BasicShipment> shipments = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            String date = String.format("2023-%02d-%02d", 1 + i / 100, 1 + i % 28);
+            shipments.add(new Shipment(date, i % 2 == 0 ? "S" : "L", i % 3 == 0 ? "MR" : "LP"));
+        }
+        List<String> expected = new ShipmentManager(newCalculator()).manageShipments(shipments);
+
+        Path directory = Files.createTempDirectory("checkpoint");
+        directory.toFile().deleteOnExit();
+        ListResultSink sink = new ListResultSink();
+        try (DiscountCheckpointStore store = new DiscountCheckpointStore(directory)) {
+            new ShipmentManager(newCalculator()).manageShipments(ResumableShipmentInput.of(shipments.subList(0, 333).stream()), sink, store, 100);
+        }
+        try (DiscountCheckpointStore store = new DiscountCheckpointStore(directory)) {
+            new ShipmentManager(newCalculator()).manageShipments(ResumableShipmentInput.of(shipments.stream()), sink, store, 100);
+        }
+
+        assertEquals(expected, sink.getLines());
+    }
+
+    /**
+     * Tests resuming a checkpointed run that died between log entries.
+     * Verifies that the results written after the last log entry are
+     * dropped from the sink and that the resumed run completes the results
+     * of one sequential run.
+     */
+    @Test
+    public void testManageShipmentsResumesAfterCrash() throws IOException {
+        List<BasicShipment> shipments = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            String date = String.format("2023-%02d-%02d", 1 + i / 100, 1 + i % 28);
+            shipments.add(new Shipment(date, i % 2 == 0 ? "S" : "L", i % 3 == 0 ? "MR" : "LP"));
+        }
+        List<String> expected = new ShipmentManager(newCalculator()).manageShipments(shipments);
+
+        Path directory = Files.createTempDirectory("checkpoint");
+        directory.toFile().deleteOnExit();
+        ListResultSink sink = new ListResultSink();
+        try (DiscountCheckpointStore store = new DiscountCheckpointStore(directory)) {
+            Stream<BasicShipment> dying = shipments.stream().limit(275).map(shipment -> {
+                if (shipment == shipments.get(274)) {
+                    throw new IllegalStateException("job died");
+                }
+                return shipment;
+            });
+            assertThrows(IllegalStateException.class,
+                    () -> new ShipmentManager(newCalculator()).manageShipments(ResumableShipmentInput.of(dying), sink, store, 100, 50));
+        }
+        assertEquals(274, sink.getLines().size());
+
+        try (DiscountCheckpointStore store = new DiscountCheckpointStore(directory)) {
+            new ShipmentManager(newCalculator()).manageShipments(ResumableShipmentInput.of(shipments.stream()), sink, store, 100, 50);
+        }
+
+        assertEquals(expected, sink.getLines());
+    }
+
+    /**
+     * Tests resuming a checkpointed run over a text file that has grown.
+     * Verifies that the resumed run continues reading at the byte offset
+     * recorded in the store, parsing only the lines after it, and completes
+     * the results of one sequential run.
+     */
+    @Test
+    public void testManageShipmentsResumesTextFileAtOffset() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            lines.add(String.format("2023-%02d-%02d %s %s", 1 + i / 100, 1 + i % 28, i % 2 == 0 ? "S" : "L", i % 3 == 0 ? "MR" : "LP"));
+        }
+        FileReader fileReader = new FileReader();
+        List<String> expected = new ShipmentManager(newCalculator()).manageShipments(fileReader.createShipments(lines));
+
+        Path file = Files.createTempFile("shipments", ".txt");
+        file.toFile().deleteOnExit();
+        Files.write(file, lines.subList(0, 333));
+        Path directory = Files.createTempDirectory("checkpoint");
+        directory.toFile().deleteOnExit();
+        ListResultSink sink = new ListResultSink();
+        try (DiscountCheckpointStore store = new DiscountCheckpointStore(directory);
+             TextShipmentInput input = new TextShipmentInput(file, fileReader::parseLine)) {
+            new ShipmentManager(newCalculator()).manageShipments(input, sink, store, 100);
+        }
+
+        Files.write(file, lines.subList(333, 500), StandardOpenOption.APPEND);
+        AtomicInteger parsed = new AtomicInteger();
+        try (DiscountCheckpointStore store = new DiscountCheckpointStore(directory);
+             TextShipmentInput input = new TextShipmentInput(file, line -> {
+                 parsed.incrementAndGet();
+                 return fileReader.parseLine(line);
+             })) {
+            new ShipmentManager(newCalculator()).manageShipments(input, sink, store, 100);
+        }
+
+        assertEquals(167, parsed.get());
+        assertEquals(expected, sink.getLines());
+    }
+
+    private static ShipmentDiscountCalculator newCalculator() {
+        ShipmentPriceService priceService = new ShipmentPriceService();
+        priceService.addProviderAndPrices("LP", new ShippingProviderPricing(1.5, 4.9, 6.9));
+        priceService.addProviderAndPrices("MR", new ShippingProviderPricing(2.0, 3.0, 4.0));
+        List<DiscountContractRule> rules = List.of(new SmallestPackageRule(priceService), new ThirdLargeLPFreeRule());
+        return new ShipmentDiscountCalculator(priceService, new DiscountStateTracker(10.0), rules);
+    }
+
     /**
      * Mock implementation of ShipmentDiscountCalculator for testing.
      * Always returns a MockResultFormatter object.
@@ -47,11 +297,32 @@ public class ShipmentManagerTest {
         public ShipmentResultFormatter calculateDiscount(BasicShipment basicShipment) {
             return new MockResultFormatter();
         }
+
+        @Override
+        public ShipmentResult calculateDiscount(BasicShipment basicShipment, ShipmentResult result) {
+            return new MockResult();
+        }
+    }
+
+    /**
+     * Mock implementation of ShipmentResult for testing.
+     * Always returns "Mock Result" from toString() and formatTo().
+     */
+    private static class MockResult extends ShipmentResult {
+        @Override
+        public String toString() {
+            return "Mock Result";
+        }
+
+        @Override
+        public StringBuilder formatTo(StringBuilder out) {
+            return out.append("Mock Result");
+        }
     }
 
     /**
      * Mock implementation of ShipmentResultFormatter for testing.
-     * Always returns "Mock Result" from toString().
+     * Always returns "Mock Result" from toString() and formatTo().
      */
     private static class MockResultFormatter extends ShipmentResultFormatter {
         public MockResultFormatter() {
@@ -62,5 +333,10 @@ public class ShipmentManagerTest {
         public String toString() {
             return "Mock Result";
         }
+
+        @Override
+        public StringBuilder formatTo(StringBuilder out) {
+            return out.append("Mock Result");
+        }
     }
 }
\ No newline at end of file
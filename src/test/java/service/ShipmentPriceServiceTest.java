@@ -3,7 +3,19 @@ package service;
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.Test;
 
+import shipmentModel.PackageSize;
+import shipmentModel.ProviderRegistry;
+import shipmentModel.ShipmentDates;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
 import java.util.Optional;
+import java.util.OptionalDouble;
 
 public class ShipmentPriceServiceTest {
 
@@ -63,4 +75,138 @@ public class ShipmentPriceServiceTest {
 
         assertEquals(lpPricing, service.getProviderPrice("LP"));
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests the primitive lookups by provider id and package size.
+     * Verifies prices, the cached lowest price and that unknown
+     * providers and sizes have no price.
+     */
+    @Test
+    public void testPrimitiveLookups() {
+        ShipmentPriceService service = new ShipmentPriceService();
+        service.addProviderAndPrices("LP", new ShippingProviderPricing(1.5, 4.0, 6.5));
+        service.addProviderAndPrices("MR", new ShippingProviderPricing(2.0, 3.0, 4.0));
+
+        assertEquals(6.5, service.getPrice(ProviderRegistry.idOf("LP"), PackageSize.L), 0.001);
+        assertEquals(3.0, service.getPrice(ProviderRegistry.idOf("MR"), PackageSize.M), 0.001);
+        assertEquals(-1, service.getPrice(ProviderRegistry.idOf("XX"), PackageSize.S), 0.001);
+        assertEquals(-1, service.getPrice("LP", "XL"), 0.001);
+
+        OptionalDouble lowestSmall = service.getLowestPrice(PackageSize.S);
+        assertTrue(lowestSmall.isPresent());
+        assertEquals(1.5, lowestSmall.getAsDouble(), 0.001);
+        assertFalse(new ShipmentPriceService().getLowestPrice(PackageSize.S).isPresent());
+    }
+
+    /**
+     * Tests that cached prices follow changes to the providers.
+     * Verifies that adding a provider and replacing all prices both
+     * update the prices and the lowest prices.
+     */
+    @Test
+    public void testPriceChangesReplaceSnapshot() {
+        ShipmentPriceService service = new ShipmentPriceService();
+        service.addProviderAndPrices("LP", new ShippingProviderPricing(1.5, 4.0, 6.5));
+        assertEquals(1.5, service.getLowestPrice(PackageSize.S).getAsDouble(), 0.001);
+
+        service.addProviderAndPrices("MR", new ShippingProviderPricing(1.0, 3.0, 4.0));
+        assertEquals(1.0, service.getLowestPrice(PackageSize.S).getAsDouble(), 0.001);
+        assertEquals(Optional.of(3.0), service.getLowestPrice("M"));
+
+        Map<String, ShippingProviderPricing> newPrices = new HashMap<>();
+        newPrices.put("LP", new ShippingProviderPricing(2.5, 5.0, 7.0));
+        service.replacePrices(newPrices);
+        assertEquals(2.5, service.getPrice("LP", "S"), 0.001);
+        assertEquals(-1, service.getPrice("MR", "S"), 0.001);
+        assertNull(service.getProviderPrice("MR"));
+        assertEquals(2.5, service.getLowestPrice(PackageSize.S).getAsDouble(), 0.001);
+    }
+
+    /**
+     * Tests that dated lookups use the price version in force on the date.
+     * Verifies prices and lowest prices before, on and after an effective
+     * date, and that dates before the first version have no price.
+     */
+    @Test
+    public void testPriceHistory() {
+        Map<String, ShippingProviderPricing> before = new HashMap<>();
+        before.put("LP", new ShippingProviderPricing(1.5, 4.9, 6.9));
+        Map<String, ShippingProviderPricing> after = new HashMap<>();
+        after.put("LP", new ShippingProviderPricing(1.6, 4.9, 6.9));
+        after.put("MR", new ShippingProviderPricing(2.0, 3.0, 4.0));
+        NavigableMap<Integer, Map<String, ShippingProviderPricing>> history = new TreeMap<>();
+        history.put(ShipmentDates.parse("2015-01-01"), before);
+        history.put(ShipmentDates.parse("2016-03-01"), after);
+
+        ShipmentPriceService service = new ShipmentPriceService();
+        service.replacePriceHistory(history);
+        int lp = ProviderRegistry.idOf("LP");
+        int mr = ProviderRegistry.idOf("MR");
+
+        assertEquals(-1, service.getPriceCents(lp, PackageSize.S, ShipmentDates.parse("2014-12-31")));
+        assertEquals(-1, service.getLowestPriceCents(PackageSize.S, ShipmentDates.parse("2014-12-31")));
+        assertEquals(150, service.getPriceCents(lp, PackageSize.S, ShipmentDates.parse("2016-02-29")));
+        assertEquals(-1, service.getPriceCents(mr, PackageSize.M, ShipmentDates.parse("2016-02-29")));
+        assertEquals(160, service.getPriceCents(lp, PackageSize.S, ShipmentDates.parse("2016-03-01")));
+        assertEquals(300, service.getPriceCents(mr, PackageSize.M, ShipmentDates.parse("2017-01-01")));
+        assertEquals(150, service.getLowestPriceCents(PackageSize.S, ShipmentDates.parse("2015-06-01")));
+        assertEquals(160, service.getLowestPriceCents(PackageSize.S, ShipmentDates.parse("2016-06-01")));
+        assertEquals(1.6, service.getPrice("LP", "S"), 0.001);
+    }
+
+    /**
+     * Tests lookups without a shipment date.
+     * Verifies that they use the version in force on the date of the service
+     * clock when the prices were replaced.
+     */
+    @Test
+    public void testUndatedLookupsUseClockDate() {
+        Map<String, ShippingProviderPricing> before = new HashMap<>();
+        before.put("LP", new ShippingProviderPricing(1.5, 4.9, 6.9));
+        Map<String, ShippingProviderPricing> after = new HashMap<>();
+        after.put("LP", new ShippingProviderPricing(1.6, 4.9, 6.9));
+        NavigableMap<Integer, Map<String, ShippingProviderPricing>> history = new TreeMap<>();
+        history.put(ShipmentDates.parse("2015-01-01"), before);
+        history.put(ShipmentDates.parse("2016-03-01"), after);
+
+        ShipmentPriceService early = new ShipmentPriceService(fixedClock("2016-02-29"));
+        early.replacePriceHistory(history);
+        assertEquals(1.5, early.getPrice("LP", "S"), 0.001);
+        assertEquals(150, early.getLowestPriceCents(PackageSize.S));
+
+        ShipmentPriceService late = new ShipmentPriceService(fixedClock("2016-03-01"));
+        late.replacePriceHistory(history);
+        assertEquals(1.6, late.getPrice("LP", "S"), 0.001);
+        assertEquals(160, late.getLowestPriceCents(PackageSize.S));
+    }
+
+    private static Clock fixedClock(String date) {
+        return Clock.fixed(LocalDate.parse(date).atStartOfDay(ZoneOffset.UTC).toInstant(), ZoneOffset.UTC);
+    }
+
+    /**
+     * Tests prices for a size tier that only some providers offer.
+     * Verifies that providers without the tier have no price for it and
+     * that the lowest price only considers providers that offer it.
+     */
+    @Test
+    public void testOpenSizeCatalogue() {
+        PackageSize tier = PackageSize.register("XXXL");
+        Map<PackageSize, Double> lpPrices = new HashMap<>();
+        lpPrices.put(PackageSize.S, 1.5);
+        lpPrices.put(tier, 15.0);
+        Map<PackageSize, Double> mrPrices = new HashMap<>();
+        mrPrices.put(PackageSize.S, 1.0);
+
+        ShipmentPriceService service = new ShipmentPriceService();
+        service.addProviderAndPrices("LP", new ShippingProviderPricing(lpPrices));
+        service.addProviderAndPrices("MR", new ShippingProviderPricing(mrPrices));
+
+        assertEquals(1500, service.getPriceCents(ProviderRegistry.idOf("LP"), tier));
+        assertEquals(-1, service.getPriceCents(ProviderRegistry.idOf("MR"), tier));
+        assertEquals(-1, service.getPrice("MR", "M"), 0.001);
+        assertEquals(1500, service.getLowestPriceCents(tier));
+        assertEquals(100, service.getLowestPriceCents(PackageSize.S));
+        assertFalse(service.getLowestPrice(PackageSize.M).isPresent());
+    }
+}
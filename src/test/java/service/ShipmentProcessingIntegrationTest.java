@@ -4,14 +4,22 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import discountRules.SmallestPackageRule;
 import discountRules.ThirdLargeLPFreeRule;
+import inputAndOutput.FileReader;
+import inputAndOutput.PricingFileReader;
+import inputAndOutput.ShipmentArchiveWriter;
 import org.junit.Test;
 import service.*;
 import shipmentModel.BasicShipment;
 import shipmentModel.Shipment;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Integration test for the end-to-end shipment discount processing.
@@ -117,4 +125,68 @@ public class ShipmentProcessingIntegrationTest {
         assertTrue(tracker.getTotalMonthDiscount("2023-02") < 10.0);
         assertTrue(tracker.getRemainingDiscount("2023-02") > 0.0);
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests the output for input lines with an unknown size or provider.
+     * Verifies that both are reported as ignored with the original text,
+     * instead of being priced at zero.
+     */
+    @Test
+    public void testUnknownSizeAndProviderAreIgnored() {
+        ShipmentPriceService priceService = new ShipmentPriceService();
+        priceService.addProviderAndPrices("LP", new ShippingProviderPricing(1.5, 4.9, 6.9));
+        ShipmentDiscountCalculator calculator = new ShipmentDiscountCalculator(
+                priceService, new DiscountStateTracker(10.0), new ArrayList<>());
+        FileReader fileReader = new FileReader(priceService);
+
+        List<BasicShipment> shipments = Arrays.asList(
+                fileReader.parseLine("2015-02-01 S LP"),
+                fileReader.parseLine("2015-02-01 JUMBO LP"),
+                fileReader.parseLine("2015-02-01 S ZQ"));
+        List<String> results = new ShipmentManager(calculator).manageShipments(shipments);
+
+        assertEquals(Arrays.asList(
+                "2015-02-01 S LP 1.50 -",
+                "2015-02-01 JUMBO LP Ignored",
+                "2015-02-01 S ZQ Ignored"), results);
+    }
+
+    /**
+     * Tests archive input priced by a pricing file that lacks one of its providers.
+     * Verifies that shipments of the unpriced provider are reported as ignored,
+     * exactly as for the same text input, instead of being priced at zero.
+     */
+    @Test
+    public void testArchiveWithUnpricedProviderMatchesText() throws IOException {
+        Path pricingFile = Files.createTempFile("pricing", ".txt");
+        pricingFile.toFile().deleteOnExit();
+        Files.write(pricingFile, Arrays.asList("LP S 1.50", "LP M 4.90", "LP L 6.90"));
+        Path inputFile = Files.createTempFile("input", ".txt");
+        inputFile.toFile().deleteOnExit();
+        Files.write(inputFile, Arrays.asList("2015-02-01 S MR", "2015-02-01 S LP", "2015-02-02 M MR"));
+        Path archiveFile = Files.createTempFile("input", ShipmentArchiveWriter.FILE_EXTENSION);
+        archiveFile.toFile().deleteOnExit();
+        assertTrue(new FileReader().convertToArchive(inputFile.toString(), archiveFile.toString()));
+
+        ShipmentPriceService priceService = new ShipmentPriceService();
+        priceService.replacePriceHistory(new PricingFileReader().readPricing(pricingFile));
+        FileReader fileReader = new FileReader(priceService);
+
+        List<String> textResults;
+        try (Stream<BasicShipment> shipments = fileReader.streamShipments(inputFile.toString())) {
+            textResults = new ShipmentManager(new ShipmentDiscountCalculator(priceService,
+                    new DiscountStateTracker(10.0), new ArrayList<>())).manageShipments(shipments.collect(Collectors.toList()));
+        }
+        List<String> archiveResults;
+        try (Stream<BasicShipment> shipments = fileReader.streamArchive(archiveFile.toString())) {
+            archiveResults = new ShipmentManager(new ShipmentDiscountCalculator(priceService,
+                    new DiscountStateTracker(10.0), new ArrayList<>())).manageShipments(shipments.collect(Collectors.toList()));
+        }
+
+        assertEquals(Arrays.asList(
+                "2015-02-01 S MR Ignored",
+                "2015-02-01 S LP 1.50 -",
+                "2015-02-02 M MR Ignored"), textResults);
+        assertEquals(textResults, archiveResults);
+    }
+}
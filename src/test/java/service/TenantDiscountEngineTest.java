@@ -0,0 +1,243 @@
+package service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import discountRules.SmallestPackageRule;
+import discountRules.ThirdLargeLPFreeRule;
+import inputAndOutput.ShipmentResult;
+import inputAndOutput.ShipmentResultBuffer;
+import inputAndOutput.ShipmentResultFormatter;
+import org.junit.Test;
+import shipmentModel.BasicShipment;
+import shipmentModel.Shipment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+
+public class TenantDiscountEngineTest {
+
+    /**
+     * Tests that tenants are isolated from each other.
+     * Verifies that two tenants with different caps and interleaved
+     * shipments get the same results as their own sequential calculators.
+     */
+    @Test
+    public void testTenantsMatchSequentialCalculators() {
+        List<BasicShipment> shipments = new ArrayList<>();
+        for (int day = 1; day <= 28; day++) {
+            String date = String.format("2023-01-%02d", day);
+            shipments.add(new Shipment(date, "S", "MR"));
+            shipments.add(new Shipment(date, "L", "LP"));
+        }
+
+        List<String> expectedA = sequentialResults(shipments, 10.0);
+        List<String> expectedB = sequentialResults(shipments, 2.0);
+
+        try (TenantDiscountEngine engine = new TenantDiscountEngine(3)) {
+            ShipmentPriceService priceService = newPriceService();
+            engine.registerTenant("a", priceService, rules(priceService), 10.0);
+            engine.registerTenant("b", priceService, rules(priceService), 2.0);
+
+            List<CompletableFuture<ShipmentResultFormatter>> resultsA = new ArrayList<>();
+            List<CompletableFuture<ShipmentResultFormatter>> resultsB = new ArrayList<>();
+            for (BasicShipment shipment : shipments) {
+                resultsA.add(engine.submit("a", shipment));
+                resultsB.add(engine.submit("b", shipment));
+            }
+
+            assertEquals(expectedA, format(resultsA));
+            assertEquals(expectedB, format(resultsB));
+            assertNotEquals(expectedA, expectedB);
+        }
+    }
+
+    /**
+     * Tests batch submission.
+     * Verifies that batches of interleaved tenants, each reusing its result
+     * buffer, give the same results as sequential calculators.
+     */
+    @Test
+    public void testBatchesMatchSequentialCalculators() {
+        List<BasicShipment> shipments = new ArrayList<>();
+        for (int day = 1; day <= 28; day++) {
+            String date = String.format("2023-02-%02d", day);
+            shipments.add(new Shipment(date, "S", "MR"));
+            shipments.add(new Shipment(date, "L", "LP"));
+            shipments.add(new BasicShipment(date, "CUSPS"));
+        }
+
+        List<String> expectedA = sequentialResults(shipments, 10.0);
+        List<String> expectedB = sequentialResults(shipments, 2.0);
+
+        try (TenantDiscountEngine engine = new TenantDiscountEngine(2)) {
+            ShipmentPriceService priceService = newPriceService();
+            engine.registerTenant("a", priceService, rules(priceService), 10.0);
+            engine.registerTenant("b", priceService, rules(priceService), 2.0);
+
+            ShipmentResultBuffer bufferA = new ShipmentResultBuffer(10);
+            ShipmentResultBuffer bufferB = new ShipmentResultBuffer(10);
+            List<String> resultsA = new ArrayList<>();
+            List<String> resultsB = new ArrayList<>();
+            for (int start = 0; start < shipments.size(); start += 10) {
+                List<BasicShipment> batch = shipments.subList(start, Math.min(start + 10, shipments.size()));
+                CompletableFuture<ShipmentResultBuffer> batchA = engine.submitBatch("a", batch, bufferA);
+                CompletableFuture<ShipmentResultBuffer> batchB = engine.submitBatch("b", batch, bufferB);
+                format(batch, batchA.join(), resultsA);
+                format(batch, batchB.join(), resultsB);
+            }
+
+            assertEquals(expectedA, resultsA);
+            assertEquals(expectedB, resultsB);
+            assertThrows(IllegalArgumentException.class,
+                    () -> engine.submitBatch("a", shipments, bufferA));
+        }
+    }
+
+    /**
+     * Tests that tenants cannot share discount state.
+     * Verifies that registering a second tenant with another tenant's
+     * calculator is rejected, while re-registering the same tenant is not.
+     */
+    @Test
+    public void testSharedTrackerIsRejected() {
+        try (TenantDiscountEngine engine = new TenantDiscountEngine(1)) {
+            ShipmentPriceService priceService = newPriceService();
+            ShipmentDiscountCalculator calculator = new ShipmentDiscountCalculator(priceService,
+                    new DiscountStateTracker(10.0), rules(priceService));
+            engine.registerTenant("a", calculator);
+            engine.registerTenant("a", calculator);
+            assertThrows(IllegalArgumentException.class, () -> engine.registerTenant("b", calculator));
+            assertFalse(engine.hasTenant("b"));
+        }
+    }
+
+    /**
+     * Tests that providers are resolved against each tenant's own prices.
+     * Verifies that a provider priced by one tenant is ignored for a tenant
+     * without prices for it.
+     */
+    @Test
+    public void testProvidersArePricedPerTenant() {
+        try (TenantDiscountEngine engine = new TenantDiscountEngine(1)) {
+            ShipmentPriceService priceServiceA = newPriceService();
+            priceServiceA.addProviderAndPrices("TQ", new ShippingProviderPricing(1.0, 2.0, 3.0));
+            ShipmentPriceService priceServiceB = newPriceService();
+            engine.registerTenant("a", priceServiceA, rules(priceServiceA), 10.0);
+            engine.registerTenant("b", priceServiceB, rules(priceServiceB), 10.0);
+
+            Shipment shipment = new Shipment("2023-03-01", "M", "TQ");
+            assertEquals(200, engine.submit("a", shipment).join().getOriginalPriceCents());
+            assertEquals(0, engine.submit("b", shipment).join().getOriginalPriceCents());
+        }
+    }
+
+    /**
+     * Tests closing an engine whose worker does not finish in time.
+     * Verifies that shipments still queued are cancelled instead of their
+     * futures never completing.
+     */
+    @Test(timeout = 10_000)
+    public void testCloseCancelsQueuedShipments() {
+        CountDownLatch started = new CountDownLatch(1);
+        ShipmentPriceService priceService = newPriceService();
+        ShipmentDiscountCalculator blocking = new ShipmentDiscountCalculator(priceService,
+                new DiscountStateTracker(10.0), rules(priceService)) {
+            @Override
+            public ShipmentResult calculateDiscount(BasicShipment basicShipment, ShipmentResult result) {
+                started.countDown();
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.calculateDiscount(basicShipment, result);
+            }
+        };
+
+        TenantDiscountEngine engine = new TenantDiscountEngine(1, 100);
+        engine.registerTenant("a", blocking);
+        CompletableFuture<ShipmentResultFormatter> running = engine.submit("a", new Shipment("2023-01-01", "S", "LP"));
+        CompletableFuture<ShipmentResultFormatter> queued = engine.submit("a", new Shipment("2023-01-02", "S", "LP"));
+        try {
+            started.await();
+        } catch (InterruptedException e) {
+            fail(e);
+        }
+        engine.close();
+
+        assertThrows(CancellationException.class, queued::join);
+        assertEquals("2023-01-01 S LP 1.50 -", running.join().toString());
+    }
+
+    /**
+     * Tests a calculation that fails with an Error.
+     * Verifies that the future completes exceptionally instead of never completing.
+     */
+    @Test(timeout = 10_000)
+    public void testErrorCompletesFuture() {
+        ShipmentPriceService priceService = newPriceService();
+        ShipmentDiscountCalculator failing = new ShipmentDiscountCalculator(priceService,
+                new DiscountStateTracker(10.0), rules(priceService)) {
+            @Override
+            public ShipmentResult calculateDiscount(BasicShipment basicShipment, ShipmentResult result) {
+                throw new StackOverflowError();
+            }
+        };
+
+        try (TenantDiscountEngine engine = new TenantDiscountEngine(1)) {
+            engine.registerTenant("a", failing);
+            CompletableFuture<ShipmentResultFormatter> result = engine.submit("a", new Shipment("2023-01-01", "S", "LP"));
+            CompletionException failure = assertThrows(CompletionException.class, result::join);
+            assertInstanceOf(StackOverflowError.class, failure.getCause());
+        }
+    }
+
+    /**
+     * Tests that shipments of an unregistered tenant are rejected.
+     */
+    @Test
+    public void testUnknownTenant() {
+        try (TenantDiscountEngine engine = new TenantDiscountEngine(1)) {
+            assertFalse(engine.hasTenant("x"));
+            assertThrows(IllegalArgumentException.class,
+                    () -> engine.submit("x", new Shipment("2023-01-01", "S", "LP")));
+        }
+    }
+
+    private static List<String> sequentialResults(List<BasicShipment> shipments, double cap) {
+        ShipmentPriceService priceService = newPriceService();
+        ShipmentManager manager = new ShipmentManager(
+                new ShipmentDiscountCalculator(priceService, new DiscountStateTracker(cap), rules(priceService)));
+        return manager.manageShipments(shipments);
+    }
+
+    private static List<String> format(List<CompletableFuture<ShipmentResultFormatter>> results) {
+        List<String> formatted = new ArrayList<>();
+        for (CompletableFuture<ShipmentResultFormatter> result : results) {
+            formatted.add(result.join().toString());
+        }
+        return formatted;
+    }
+
+    private static void format(List<BasicShipment> batch, ShipmentResultBuffer buffer, List<String> formatted) {
+        ShipmentResult result = new ShipmentResult();
+        for (int i = 0; i < batch.size(); i++) {
+            formatted.add(buffer.get(i, batch.get(i), result).toString());
+        }
+    }
+
+    private static ShipmentPriceService newPriceService() {
+        ShipmentPriceService priceService = new ShipmentPriceService();
+        priceService.addProviderAndPrices("LP", new ShippingProviderPricing(1.5, 4.9, 6.9));
+        priceService.addProviderAndPrices("MR", new ShippingProviderPricing(2.0, 3.0, 4.0));
+        return priceService;
+    }
+
+    private static List<DiscountContractRule> rules(ShipmentPriceService priceService) {
+        return List.of(new SmallestPackageRule(priceService), new ThirdLargeLPFreeRule());
+    }
+}
@@ -0,0 +1,36 @@
+package shipmentModel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.Test;
+
+public class PackageSizeTest {
+
+    /**
+     * Tests that the standard sizes are always in the catalogue with fixed ids.
+     */
+    @Test
+    public void testStandardSizes() {
+        assertSame(PackageSize.S, PackageSize.fromCode("S"));
+        assertSame(PackageSize.M, PackageSize.fromCode('M'));
+        assertSame(PackageSize.L, PackageSize.fromId(2));
+        assertEquals(0, PackageSize.S.getId());
+        assertEquals("L", PackageSize.L.getCode());
+    }
+
+    /**
+     * Tests that registering a size tier assigns the next dense id once
+     * and makes the code known to every lookup.
+     */
+    @Test
+    public void testRegisterSizeTier() {
+        assertNull(PackageSize.fromCode("Q"));
+
+        PackageSize tier = PackageSize.register("Q");
+        assertSame(tier, PackageSize.register("Q"));
+        assertSame(tier, PackageSize.fromCode("Q"));
+        assertSame(tier, PackageSize.fromCode('Q'));
+        assertSame(tier, PackageSize.fromId(tier.getId()));
+        assertTrue(tier.getId() >= 3 && tier.getId() < PackageSize.count());
+    }
+}
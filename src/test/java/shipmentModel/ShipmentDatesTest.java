@@ -0,0 +1,71 @@
+package shipmentModel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.Test;
+
+public class ShipmentDatesTest {
+
+    /**
+     * Tests that valid dates are parsed into packed dates and formatted back.
+     * Verifies the year, month and day accessors of the packed value.
+     */
+    @Test
+    public void testParseAndFormat() {
+        int date = ShipmentDates.parse("2016-02-29");
+        assertEquals(20160229, date);
+        assertEquals(2016, ShipmentDates.year(date));
+        assertEquals(2, ShipmentDates.month(date));
+        assertEquals(29, ShipmentDates.day(date));
+        assertEquals("2016-02-29", ShipmentDates.format(date));
+    }
+
+    /**
+     * Tests that malformed and non-existent dates are rejected.
+     * Verifies that parse returns INVALID for each of them.
+     */
+    @Test
+    public void testParseRejectsInvalidDates() {
+        assertEquals(ShipmentDates.INVALID, ShipmentDates.parse("2015-02-29"));
+        assertEquals(ShipmentDates.INVALID, ShipmentDates.parse("2015-13-01"));
+        assertEquals(ShipmentDates.INVALID, ShipmentDates.parse("2015-1-01"));
+        assertEquals(ShipmentDates.INVALID, ShipmentDates.parse("2015/01/01"));
+        assertEquals(ShipmentDates.INVALID, ShipmentDates.parse("CUSPS"));
+    }
+
+    /**
+     * Tests that month keys are consecutive across a year boundary
+     * and that their labels match the YYYY-MM prefix of the date.
+     */
+    @Test
+    public void testMonthKeyAndLabel() {
+        int december = ShipmentDates.monthKey(ShipmentDates.parse("2015-12-31"));
+        int january = ShipmentDates.monthKey(ShipmentDates.parse("2016-01-01"));
+        assertEquals(december + 1, january);
+        assertEquals("2015-12", ShipmentDates.monthLabel(december));
+        assertEquals("2016-01", ShipmentDates.monthLabel(january));
+    }
+
+    /**
+     * Tests parsing a YYYY-MM month.
+     * Verifies that it gives the month key of the dates in that month
+     * and INVALID for malformed months.
+     */
+    @Test
+    public void testParseMonth() {
+        assertEquals(ShipmentDates.monthKey(ShipmentDates.parse("2015-12-31")), ShipmentDates.parseMonth("2015-12"));
+        assertEquals(ShipmentDates.INVALID, ShipmentDates.parseMonth("2015-13"));
+        assertEquals(ShipmentDates.INVALID, ShipmentDates.parseMonth("2015-1"));
+        assertEquals(ShipmentDates.INVALID, ShipmentDates.parseMonth("2015-12-01"));
+    }
+
+    /**
+     * Tests that packed dates convert to epoch days and back unchanged.
+     */
+    @Test
+    public void testEpochDayRoundTrip() {
+        int date = ShipmentDates.parse("2023-07-04");
+        assertEquals(date, ShipmentDates.fromEpochDay(ShipmentDates.toEpochDay(date)));
+        assertEquals(0, ShipmentDates.toEpochDay(ShipmentDates.parse("1970-01-01")));
+    }
+}
@@ -19,4 +19,29 @@ public class ShipmentTest {
         assertEquals("LP", shipment.getShippingProvider());
         assertEquals("S", shipment.getSize());
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that the primitive fields are decoded from the text constructor.
+     * Verifies the packed date, month key, package size and that equal
+     * provider codes share one provider id.
+     */
+    @Test
+    public void testPrimitiveFields() {
+        Shipment shipment = new Shipment("2023-01-15", "L", "LP");
+        assertEquals(20230115, shipment.getPackedDate());
+        assertEquals(ShipmentDates.monthKey(20230115), shipment.getMonthKey());
+        assertEquals(PackageSize.L, shipment.getPackageSize());
+        assertEquals(ProviderRegistry.idOf("LP"), shipment.getProviderId());
+        assertEquals(shipment.getProviderId(), new Shipment("2023-02-01", "S", "LP").getProviderId());
+    }
+
+    /**
+     * Tests that invalid dates and sizes are rejected.
+     * Verifies that an IllegalArgumentException is thrown.
+     */
+    @Test
+    public void testInvalidFieldsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new Shipment("2015-02-29", "S", "LP"));
+        assertThrows(IllegalArgumentException.class, () -> new Shipment("2023-01-15", "XL", "LP"));
+    }
+}